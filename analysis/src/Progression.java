@@ -1,21 +1,24 @@
 package me.hex539.analysis;
 
 import com.google.protobuf.Duration;
+import com.google.protobuf.util.Durations;
 import edu.clics.proto.ClicsProto.*;
-import java.util.function.Function;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.concurrent.TimeUnit;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.stream.LongStream;
-import java.util.TreeMap;
 import me.hex539.contest.ContestConfig;
 import me.hex539.contest.ContestDownloader;
-import me.hex539.contest.JudgementDispatcher;
 import me.hex539.contest.MissingJudgements;
+import me.hex539.contest.ScoreboardHistory;
 import me.hex539.contest.ScoreboardModel;
 import me.hex539.contest.ScoreboardModelImpl;
-import me.hex539.contest.model.Problems;
 import org.apache.commons.lang3.StringEscapeUtils;
 import org.jtwig.environment.EnvironmentConfiguration;
 import org.jtwig.environment.EnvironmentConfigurationBuilder;
@@ -40,50 +43,9 @@ public class Progression {
         .filterGroups(Analyser.getGroupPredicate(invocation, entireContest))
         .filterTooLateSubmissions()
         .build();
-    ScoreboardModelImpl model = ScoreboardModelImpl.newBuilder(entireContest)
-        .filterGroups(Analyser.getGroupPredicate(invocation, entireContest))
-        .withEmptyScoreboard()
-        .filterSubmissions(x -> false)
-        .build();
-//      fullModel.toBuilder()
-//        .withEmptyScoreboard()
-//        .filterSubmissions(x -> false)
-//        .build();
-    JudgementDispatcher dispatcher = new JudgementDispatcher(model);
-    dispatcher.observers.add(model);
-
-    final Map<String, TeamProgression> teams = new HashMap<>();
-    model.getTeamsModel().getTeams().forEach(
-        team -> teams.put(team.getId(), new TeamProgression(team, model.getProblemsModel())));
-
-    final Map<String, Judgement> judgementsMap = fullModel.getJudgeModel().getJudgements()
-        .stream()
-        .collect(Collectors.toMap(
-            Judgement::getSubmissionId,
-            Function.identity(),
-            (a, b) -> b));
-
-    for (Submission submission : fullModel.getJudgeModel().getSubmissions()) {
-      try {
-        model.getSubmission(submission.getId());
-      } catch (Exception e) {
-        if (!dispatcher.notifySubmission(submission)) {
-          continue;
-        }
-      }
-
-      ScoreboardProblem verdict = dispatcher.notifyJudgement(judgementsMap.get(submission.getId()));
-      if (verdict == null || !verdict.getSolved()) {
-        continue;
-      }
-      teams.get(submission.getTeamId()).problemAttempted(verdict);
-
-      for (ScoreboardRow row : model.getRanklistModel().getRows()) {
-        if (row.getScore().getNumSolved() > 0) {
-          teams.get(row.getTeamId()).rankChanged(submission.getContestTime(), row.getRank());
-        }
-      }
-    }
+    final ScoreboardHistory history = ScoreboardHistory.of(entireContest, fullModel);
+    final List<ScoreboardRow> finalRows =
+        history.getRowsAt(fullModel.getContest().getContestDuration());
 
     EnvironmentConfiguration configuration =
         EnvironmentConfigurationBuilder.configuration()
@@ -113,100 +75,116 @@ public class Progression {
         JtwigModel.newModel()
             .with(
                 "teams",
-                model.getRanklistModel().getRows().stream()
-                    .map(row -> teams.get(row.getTeamId()).finalise(row, model))
+                finalRows.stream()
+                    .map(row -> new TeamProgression(
+                        fullModel.getTeamsModel().getTeam(row.getTeamId()),
+                        row,
+                        fullModel,
+                        history))
                     .collect(Collectors.toList()))
             .with(
                 "problems",
-                model.getProblemsModel().getProblems())
+                fullModel.getProblemsModel().getProblems())
             .with(
                 "contest",
-                model.getContest())
+                fullModel.getContest())
             .with(
                 "contest_minutes",
-                model.getContest().getContestDuration().getSeconds() / 60),
+                fullModel.getContest().getContestDuration().getSeconds() / 60),
         System.out);
   }
 
   private static class TeamProgression {
+    /** Minutes either side of each point that {@link #xToY} averages over. */
+    private static final int WINDOW = 4;
+
+    /** Weight of a point {@code d} minutes away from the middle of the window. */
+    private static final double[] WEIGHTS = new double[WINDOW + 1];
+    static {
+      for (int d = 0; d <= WINDOW; d++) {
+        WEIGHTS[d] = Math.pow(Math.sqrt(2), -d);
+      }
+    }
+
     public final Team team;
-    public final TreeMap<Long, Long> rankProgression = new TreeMap<>();
-    public final Map<String, TreeMap<Long, ScoreboardProblem>> problemScoreProgression = new HashMap<>();
     public final Map<String, Long> solvedAt = new HashMap<>();
 
-    public ScoreboardRow row;
-    public ScoreboardModel model;
+    public final ScoreboardRow row;
+    public final ScoreboardModel model;
 
-    public TeamProgression(Team team, Problems problems) {
-      this.team = team;
-      problems.getProblems().forEach(
-          p -> problemScoreProgression.put(p.getId(), new TreeMap<Long, ScoreboardProblem>()));
-    }
+    /**
+     * Rank (or -1 before the first solve) and number solved at the end of each minute, from
+     * {@link #WINDOW} minutes before the start to {@link #WINDOW} minutes after the end.
+     */
+    private final int[] rankByMinute;
+    private final int[] solvedByMinute;
 
-    public TeamProgression finalise(ScoreboardRow row, ScoreboardModel model) {
+    private final Map<Long, Double> xToY;
+
+    public TeamProgression(
+        Team team,
+        ScoreboardRow row,
+        ScoreboardModel model,
+        ScoreboardHistory history) {
+      this.team = team;
       this.row = row;
       this.model = model;
-      return this;
-    }
-
-    public void rankChanged(Duration time, long rank) {
-      final long minute = time.getSeconds() / 60;
-      if (rankProgression.isEmpty()
-          || rankProgression.get(rankProgression.lastKey()) != rank) {
-        rankProgression.put(minute, rank);
+      for (ScoreboardProblem problem : row.getProblemsList()) {
+        if (problem.getSolved()) {
+          solvedAt.put(problem.getProblemId(), problem.getTime());
+        }
       }
-    }
 
-    public void problemAttempted(ScoreboardProblem verdict) {
-      if (solvedAt.containsKey(verdict.getProblemId())) {
-        return;
+      final int minutes = (int) (model.getContest().getContestDuration().getSeconds() / 60);
+      rankByMinute = new int[minutes + 1 + 2 * WINDOW];
+      solvedByMinute = new int[rankByMinute.length];
+      for (int i = 0; i < rankByMinute.length; i++) {
+        final long minute = i - WINDOW;
+        final Duration time = Durations.fromNanos(TimeUnit.MINUTES.toNanos(minute + 1) - 1);
+        rankByMinute[i] = history.getScoreAt(team, time).getNumSolved() > 0
+            ? history.getRankAt(team, time)
+            : -1;
       }
-      if (!verdict.getSolved()) {
-        return;
+      for (long when : solvedAt.values()) {
+        final long i = Math.max(0, when + WINDOW);
+        if (i < solvedByMinute.length) {
+          solvedByMinute[(int) i]++;
+        }
       }
-      problemScoreProgression.get(verdict.getProblemId()).put(
-          verdict.getTime(),
-          verdict);
-      solvedAt.put(verdict.getProblemId(), verdict.getTime());
-    }
-
-    private long rankAt(final long minute) {
-      if (rankProgression.isEmpty() || rankProgression.firstKey() > minute) {
-        return -1;
+      for (int i = 1; i < solvedByMinute.length; i++) {
+        solvedByMinute[i] += solvedByMinute[i - 1];
       }
-      return rankProgression.floorEntry(minute).getValue();
+      xToY = new MinuteSeries(smooth(minutes));
     }
 
-    private long scoreAt(final long minute) {
-      long res = 0;
-      for (long when : solvedAt.values()) {
-        if (when <= minute) {
-          res++;
+    /**
+     * Weighted average of each minute's rank with the ranks around it, for as long as the number
+     * solved stays the same. Minutes before the first solve are left as NaN.
+     */
+    private double[] smooth(int minutes) {
+      final double[] res = new double[minutes + 1];
+      for (int minute = 0; minute <= minutes; minute++) {
+        final int mid = minute + WINDOW;
+        if (rankByMinute[mid] <= 0) {
+          res[minute] = Double.NaN;
+          continue;
+        }
+        double avg = 0, total = 0;
+        for (int i = mid - WINDOW; i <= mid + WINDOW; i++) {
+          if (rankByMinute[i] > 0 && solvedByMinute[i] == solvedByMinute[mid]) {
+            final double weight = WEIGHTS[Math.abs(i - mid)];
+            avg += rankByMinute[i] * weight;
+            total += weight;
+          }
         }
+        res[minute] = avg / total;
       }
       return res;
     }
 
-    public TreeMap<Long, Double> xToY() {
-      return LongStream.rangeClosed(0, model.getContest().getContestDuration().getSeconds() / 60)
-          .filter(minute -> rankAt(minute) > 0)
-          .boxed()
-          .collect(Collectors.toMap(
-              Function.identity(),
-              minute -> {
-                double avg = 0, total = 0;
-                for (long i = minute - 4; i <= minute + 4; i++) {
-                  if (rankAt(i) > 0 && scoreAt(i) == scoreAt(minute)) {
-                    final double weight= Math.pow(Math.sqrt(2), -Math.abs(i - minute));
-                    avg += rankAt(i) * weight;
-                    total += weight;
-                  }
-                }
-                avg /= total;
-                return avg;
-              },
-              (k1, k2) -> {throw new AssertionError("IntStream should not have identical values");},
-              TreeMap<Long, Double>::new));
+    /** @return smoothed rank for every minute from the first solve onwards, in order. */
+    public Map<Long, Double> xToY() {
+      return xToY;
     }
 
     public String citation() {
@@ -250,4 +228,77 @@ public class Progression {
 
     return (rgb[0] + rgb[1] * 3 + rgb[2] * 2) < 0x200;
   }
+
+  /** Read-only map from minute to value, backed by an array where NaN means no value. */
+  private static final class MinuteSeries extends AbstractMap<Long, Double> {
+    private final double[] values;
+    private final int size;
+
+    MinuteSeries(double[] values) {
+      this.values = values;
+      int size = 0;
+      for (double value : values) {
+        if (!Double.isNaN(value)) {
+          size++;
+        }
+      }
+      this.size = size;
+    }
+
+    @Override
+    public Double get(Object key) {
+      if (!(key instanceof Number)) {
+        return null;
+      }
+      final long minute = ((Number) key).longValue();
+      if (minute < 0 || minute >= values.length || Double.isNaN(values[(int) minute])) {
+        return null;
+      }
+      return values[(int) minute];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return get(key) != null;
+    }
+
+    @Override
+    public Set<Map.Entry<Long, Double>> entrySet() {
+      return new AbstractSet<Map.Entry<Long, Double>>() {
+        @Override
+        public int size() {
+          return size;
+        }
+
+        @Override
+        public Iterator<Map.Entry<Long, Double>> iterator() {
+          return new Iterator<Map.Entry<Long, Double>>() {
+            private int next = skip(0);
+
+            private int skip(int i) {
+              while (i < values.length && Double.isNaN(values[i])) {
+                i++;
+              }
+              return i;
+            }
+
+            @Override
+            public boolean hasNext() {
+              return next < values.length;
+            }
+
+            @Override
+            public Map.Entry<Long, Double> next() {
+              if (!hasNext()) {
+                throw new NoSuchElementException();
+              }
+              final int minute = next;
+              next = skip(next + 1);
+              return new SimpleImmutableEntry<>((long) minute, values[minute]);
+            }
+          };
+        }
+      };
+    }
+  }
 }
@@ -5,14 +5,17 @@ import static com.google.common.base.CaseFormat.LOWER_UNDERSCORE;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
 import com.google.gson.protobuf.ProtoTypeAdapter;
-import com.google.protobuf.AbstractMessage;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.google.protobuf.Annotations;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -22,8 +25,8 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 import edu.clics.proto.ClicsProto;
 import edu.clics.proto.ClicsProto.*;
@@ -64,7 +67,7 @@ public class ClicsRest extends RestClient<ClicsRest> {
   }
 
   public List<Contest> getContests() throws Exception {
-    return getListFrom("/contests", Contest[].class);
+    return getListFrom("/contests", Contest.class);
   }
 
   public ClicsContest downloadPublicContest(Contest contest) throws IOException {
@@ -107,38 +110,38 @@ public class ClicsRest extends RestClient<ClicsRest> {
             executor),
 //        TODO: Not implemented by DOMjudge (2018-11).
 //        CompletableFuture.runAsync(() -> b.putAllAwards(
-//            getMapFrom(path + "/awards", Award[].class, Award::getId)),
+//            getMapFrom(path + "/awards", Award.class, Award::getId)),
 //            executor),
         CompletableFuture.runAsync(() -> b.addAllScoreboard(
             requestFrom(path + "/scoreboard", this::parseScoreboard).getRowsList()),
             executor),
         CompletableFuture.runAsync(() -> b.putAllJudgementTypes(
-            getMapFrom(path + "/judgement-types", JudgementType[].class, JudgementType::getId)),
+            getMapFrom(path + "/judgement-types", JudgementType.class, JudgementType::getId)),
             executor),
         CompletableFuture.runAsync(() -> b.putAllLanguages(
-            getMapFrom(path + "/languages", Language[].class, Language::getId)),
+            getMapFrom(path + "/languages", Language.class, Language::getId)),
             executor),
         CompletableFuture.runAsync(() -> b.putAllProblems(
-            getMapFrom(path + "/problems", Problem[].class, Problem::getId)),
+            getMapFrom(path + "/problems", Problem.class, Problem::getId)),
             executor),
         CompletableFuture.runAsync(() -> b.putAllGroups(
-            getMapFrom(path + "/groups", Group[].class, Group::getId)),
+            getMapFrom(path + "/groups", Group.class, Group::getId)),
             executor),
         CompletableFuture.runAsync(() -> b.putAllOrganizations(
-            getMapFrom(path + "/organizations", Organization[].class, Organization::getId)),
+            getMapFrom(path + "/organizations", Organization.class, Organization::getId)),
             executor),
         CompletableFuture.runAsync(() -> b.putAllTeams(
-            getMapFrom(path + "/teams", Team[].class, Team::getId)),
+            getMapFrom(path + "/teams", Team.class, Team::getId)),
             executor),
 //        TODO: Not implemented by DOMjudge (2018-11).
 //        CompletableFuture.runAsync(() -> b.putAllTeamMembers(
-//            getMapFrom(path + "/team-members", TeamMember[].class, TeamMember::getId)),
+//            getMapFrom(path + "/team-members", TeamMember.class, TeamMember::getId)),
 //            executor),
         CompletableFuture.runAsync(() -> b.putAllSubmissions(
-            getMapFrom(path + "/submissions", Submission[].class, Submission::getId)),
+            getMapFrom(path + "/submissions", Submission.class, Submission::getId)),
             executor),
         CompletableFuture.runAsync(() -> b.putAllJudgements(
-            getMapFrom(path + "/judgements", Judgement[].class, Judgement::getId)),
+            getMapFrom(path + "/judgements", Judgement.class, Judgement::getId)),
             executor))
         .thenApplyAsync(ignore -> b)
         .join();
@@ -149,22 +152,53 @@ public class ClicsRest extends RestClient<ClicsRest> {
     final String path = getContestPath(contest);
     return buildPublicContest(contest)
         .putAllRuns(
-            getMapFrom(path + "/runs", Run[].class, Run::getId))
+            getMapFrom(path + "/runs", Run.class, Run::getId))
         .putAllClarifications(
-            getMapFrom(path + "/clarifications", Clarification[].class, Clarification::getId));
+            getMapFrom(path + "/clarifications", Clarification.class, Clarification::getId));
   }
 
-  protected <T, K> Map<K, T> getMapFrom(String endpoint, Class<T[]> c, Function<T, K> m)
+  protected <T, K> Map<K, T> getMapFrom(String endpoint, Class<T> c, Function<T, K> m)
       throws CompletionException {
-    return getListFrom(endpoint, c).stream()
-//        .filter(x -> m.apply(x) != null)
-        .collect(Collectors.toMap(m, Function.identity(), (a, b) -> a));
+    final Map<K, T> res = new HashMap<>();
+    forEachFrom(endpoint, c, x -> res.putIfAbsent(m.apply(x), x));
+    return res;
   }
 
-  protected <T> List<T> getListFrom(String endpoint, Class<T[]> c) throws CompletionException {
-    return requestFrom(endpoint, b -> b.map(body -> gson.get().fromJson(body, c)))
-        .map(Arrays::asList)
-        .orElseGet(Collections::emptyList);
+  protected <T> List<T> getListFrom(String endpoint, Class<T> c) throws CompletionException {
+    final List<T> res = new ArrayList<>();
+    forEachFrom(endpoint, c, res::add);
+    return res;
+  }
+
+  /**
+   * Decodes the JSON array at {@param endpoint} one element at a time, straight off the wire, and
+   * hands each one to {@param consumer} before reading the next. A missing or empty body counts
+   * as an empty array.
+   */
+  protected <T> void forEachFrom(String endpoint, Class<T> c, Consumer<? super T> consumer)
+      throws CompletionException {
+    readFrom(endpoint, b -> {
+      if (!b.isPresent()) {
+        return null;
+      }
+      final TypeAdapter<T> adapter = gson.get().getAdapter(c);
+      final JsonReader reader = new JsonReader(b.get());
+      reader.setLenient(true);
+      try {
+        if (reader.peek() == JsonToken.NULL) {
+          reader.nextNull();
+          return null;
+        }
+      } catch (EOFException e) {
+        return null;
+      }
+      reader.beginArray();
+      while (reader.hasNext()) {
+        consumer.accept(adapter.read(reader));
+      }
+      reader.endArray();
+      return null;
+    });
   }
 
   protected <T> Optional<T> getFrom(String endpoint, Class<T> c) throws CompletionException {
@@ -218,6 +252,9 @@ public class ClicsRest extends RestClient<ClicsRest> {
           .build();
 
       GsonBuilder gsonBuilder = new GsonBuilder();
+      // Registered first so that the adapters below win: Gson tries later registrations first,
+      // and the one for EventFeedItem delegates to this one.
+      gsonBuilder.registerTypeAdapterFactory(adapter.newFactory(ClicsProto.class));
       gsonBuilder.registerTypeAdapter(
           com.google.protobuf.Timestamp.class,
           new Deserializers.TimestampDeserializer());
@@ -226,19 +263,7 @@ public class ClicsRest extends RestClient<ClicsRest> {
           new Deserializers.DurationDeserializer());
       gsonBuilder.registerTypeAdapterFactory(
           new Deserializers.EventFeedItemTypeAdapterFactory());
-      addMessagesFromClass(gsonBuilder, adapter, ClicsProto.class);
       return gsonBuilder.create();
     }
-
-    protected static void addMessagesFromClass(
-        GsonBuilder builder,
-        ProtoTypeAdapter adapter,
-        Class c) {
-      for (Class subClass : c.getDeclaredClasses()) {
-        if (AbstractMessage.class.isAssignableFrom(subClass)) {
-          builder.registerTypeHierarchyAdapter(subClass, adapter);
-        }
-      }
-    }
   }
 }
@@ -93,24 +93,159 @@ class Deserializers {
       JsonPrimitive primitive = json.getAsJsonPrimitive();
       if (primitive.isString()) {
         try {
-          // Workaround for servers with date strings that don't zero-pad the seconds or include
-          // TZ minutes, for example "2021-03-27T09:24:1.482+00"
-          //              instead of "2021-03-27T09:24:01.482+00:00"
-          final Instant instant = OffsetDateTime.parse(
-              primitive.getAsString()
-                  .replaceAll(":([0-9])\\.", ":0$1.")
-                  .replaceAll("\\+0+$", "+00:00"))
-              .toInstant();
-          return Timestamp.newBuilder()
-              .setSeconds(instant.getEpochSecond())
-              .setNanos(instant.getNano())
-              .build();
+          return parseTimestamp(primitive.getAsString());
         } catch (DateTimeParseException e) {
           throw new JsonParseException("Invalid timestamp string: " + primitive.getAsString(), e);
         }
       }
       throw new JsonParseException("Invalid timestamp value: " + primitive);
     }
+
+    static Timestamp parseTimestamp(String s) throws DateTimeParseException {
+      final Timestamp res = parseTimestampFast(s);
+      return res != null ? res : parseTimestampSlow(s);
+    }
+
+    /**
+     * Single pass over the usual shape of timestamp, "2021-03-27T09:24:01.482+00:00", without
+     * allocating anything but the result. Also takes the same shortcuts as
+     * {@link #parseTimestampSlow}: unpadded seconds before a fraction, and "+00" as an offset.
+     *
+     * @return null for anything else, including out-of-range dates and times, so that
+     *         {@link #parseTimestampSlow} can deal with it or throw the usual exception.
+     */
+    static Timestamp parseTimestampFast(String s) {
+      final int n = s.length();
+      if (n < 18
+          || s.charAt(4) != '-'
+          || s.charAt(7) != '-'
+          || s.charAt(10) != 'T'
+          || s.charAt(13) != ':'
+          || s.charAt(16) != ':') {
+        return null;
+      }
+      final int year = digits(s, 0, 4);
+      final int month = digits(s, 5, 7);
+      final int day = digits(s, 8, 10);
+      final int hour = digits(s, 11, 13);
+      final int minute = digits(s, 14, 16);
+
+      int p = 17;
+      final int second;
+      if (p + 1 < n && isDigit(s.charAt(p)) && isDigit(s.charAt(p + 1))) {
+        second = digits(s, p, p + 2);
+        p += 2;
+      } else if (p + 1 < n && isDigit(s.charAt(p)) && s.charAt(p + 1) == '.') {
+        second = s.charAt(p) - '0';
+        p += 1;
+      } else {
+        return null;
+      }
+
+      int nanos = 0;
+      if (p < n && s.charAt(p) == '.') {
+        final int start = ++p;
+        while (p < n && isDigit(s.charAt(p))) {
+          nanos = nanos * 10 + (s.charAt(p++) - '0');
+        }
+        if (p == start || p - start > 9) {
+          return null;
+        }
+        for (int i = p - start; i < 9; i++) {
+          nanos *= 10;
+        }
+      }
+
+      final int offset;
+      if (p == n) {
+        return null;
+      } else if (s.charAt(p) == 'Z' && p + 1 == n) {
+        offset = 0;
+      } else if (s.charAt(p) == '+' && isZeroes(s, p + 1, n)) {
+        offset = 0;
+      } else if ((s.charAt(p) == '+' || s.charAt(p) == '-')
+          && p + 6 == n
+          && s.charAt(p + 3) == ':') {
+        final int hours = digits(s, p + 1, p + 3);
+        final int minutes = digits(s, p + 4, p + 6);
+        if (hours < 0 || minutes < 0 || minutes > 59 || hours * 60 + minutes > 18 * 60) {
+          return null;
+        }
+        offset = (s.charAt(p) == '+' ? +1 : -1) * (hours * 3600 + minutes * 60);
+        if (offset == 0 && s.charAt(p) == '-') {
+          return null;
+        }
+      } else {
+        return null;
+      }
+
+      if (year < 0
+          || month < 1 || month > 12
+          || day < 1 || day > daysInMonth(year, month)
+          || hour < 0 || hour > 23
+          || minute < 0 || minute > 59
+          || second < 0 || second > 59) {
+        return null;
+      }
+      return Timestamp.newBuilder()
+          .setSeconds(epochDay(year, month, day) * 86400L
+              + hour * 3600 + minute * 60 + second
+              - offset)
+          .setNanos(nanos)
+          .build();
+    }
+
+    /** The original parser, for everything {@link #parseTimestampFast} does not handle. */
+    static Timestamp parseTimestampSlow(String s) throws DateTimeParseException {
+      // Workaround for servers with date strings that don't zero-pad the seconds or include
+      // TZ minutes, for example "2021-03-27T09:24:1.482+00"
+      //              instead of "2021-03-27T09:24:01.482+00:00"
+      final Instant instant = OffsetDateTime.parse(
+          s.replaceAll(":([0-9])\\.", ":0$1.")
+              .replaceAll("\\+0+$", "+00:00"))
+          .toInstant();
+      return Timestamp.newBuilder()
+          .setSeconds(instant.getEpochSecond())
+          .setNanos(instant.getNano())
+          .build();
+    }
+
+    private static boolean isZeroes(String s, int from, int to) {
+      if (from == to) {
+        return false;
+      }
+      for (int i = from; i < to; i++) {
+        if (s.charAt(i) != '0') {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private static int daysInMonth(int year, int month) {
+      switch (month) {
+        case 2:
+          final boolean leap = (year % 4 == 0) && (year % 100 != 0 || year % 400 == 0);
+          return leap ? 29 : 28;
+        case 4:
+        case 6:
+        case 9:
+        case 11:
+          return 30;
+        default:
+          return 31;
+      }
+    }
+
+    /** Same as {@link java.time.LocalDate#toEpochDay}, for a date that is known to be valid. */
+    private static long epochDay(int year, int month, int day) {
+      long total = 365L * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+      total += (367 * month - 362) / 12 + day - 1;
+      if (month > 2) {
+        total -= daysInMonth(year, 2) == 29 ? 1 : 2;
+      }
+      return total - 719528;
+    }
   }
 
   static class DurationDeserializer implements JsonDeserializer<Duration> {
@@ -128,13 +263,86 @@ class Deserializers {
       throw new JsonParseException("Invalid duration value: " + primitive);
     }
 
+    static Duration parseIcpcDuration(String s) throws DateTimeParseException {
+      final Duration res = parseIcpcDurationFast(s);
+      return res != null ? res : parseIcpcDurationSlow(s);
+    }
+
+    /**
+     * Single pass over the usual shape of duration, "[-]h:mm:ss[.uuu]", without allocating
+     * anything but the result.
+     *
+     * @return null for anything else, so that {@link #parseIcpcDurationSlow} can deal with it or
+     *         throw the usual exception.
+     */
+    static Duration parseIcpcDurationFast(String s) {
+      final int n = s.length();
+      int p = 0;
+      boolean negative = false;
+      if (p < n && (s.charAt(p) == '-' || s.charAt(p) == '+')) {
+        negative = (s.charAt(p++) == '-');
+      }
+
+      final int hoursStart = p;
+      while (p < n && isDigit(s.charAt(p))) {
+        p++;
+      }
+      if (p == hoursStart || p - hoursStart > 9 || p + 5 > n || s.charAt(p) != ':') {
+        return null;
+      }
+      final long hours = digits(s, hoursStart, p);
+
+      final int minutesEnd = isDigit(s.charAt(p + 2)) ? p + 3 : p + 2;
+      if (minutesEnd >= n || s.charAt(minutesEnd) != ':') {
+        return null;
+      }
+      final int minutes = digits(s, p + 1, minutesEnd);
+      p = minutesEnd + 1;
+      if (p == n) {
+        return null;
+      }
+
+      final int secondsEnd = p + 1 < n && isDigit(s.charAt(p + 1)) ? p + 2 : p + 1;
+      final int seconds = digits(s, p, secondsEnd);
+      p = secondsEnd;
+      if (minutes < 0 || seconds < 0) {
+        return null;
+      }
+
+      int nanos = 0;
+      if (p < n) {
+        if (s.charAt(p) != '.') {
+          return null;
+        }
+        final int start = ++p;
+        while (p < n && isDigit(s.charAt(p))) {
+          if (p - start < 9) {
+            nanos = nanos * 10 + (s.charAt(p) - '0');
+          }
+          p++;
+        }
+        if (p == start || p != n) {
+          return null;
+        }
+        for (int i = p - start; i < 9; i++) {
+          nanos *= 10;
+        }
+      }
+
+      final long total = hours * 3600 + minutes * 60 + seconds;
+      return Duration.newBuilder()
+          .setSeconds(negative ? -total : total)
+          .setNanos(negative ? -nanos : nanos)
+          .build();
+    }
+
     /**
      * LocalTime.parse() won't work for the following because CLICS uses a "slight modification of
      * ISO 8601" with the slight modification being that the first digit of the hour may be dropped.
      *
      * This fails java.time's validation checks so we need to do it by hand instead.
      */
-    private static Duration parseIcpcDuration(String s) throws DateTimeParseException {
+    static Duration parseIcpcDurationSlow(String s) throws DateTimeParseException {
       String[] elements = s.split("\\.|:");
       if (elements.length == 3 || elements.length == 4) {
         try {
@@ -146,7 +354,8 @@ class Deserializers {
             res = res.plusNanos(Long.parseLong((elements[3] + "000000000").substring(0, 9)));
           }
 
-          final boolean positive = Long.parseLong(elements[0]) >= 0;
+          // Going by the sign character rather than the value, so that "-0:05:00" is negative.
+          final boolean positive = !elements[0].startsWith("-");
           return Duration.newBuilder()
               .setSeconds(res.getSeconds() * (positive ? +1 : -1))
               .setNanos(res.getNano() * (positive ? +1 : -1))
@@ -160,4 +369,21 @@ class Deserializers {
       }
     }
   }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  /** @return the number written in {@param s}[from, to), or -1 if that is not all digits. */
+  private static int digits(String s, int from, int to) {
+    int res = 0;
+    for (int i = from; i < to; i++) {
+      final char c = s.charAt(i);
+      if (!isDigit(c)) {
+        return -1;
+      }
+      res = res * 10 + (c - '0');
+    }
+    return res;
+  }
 }
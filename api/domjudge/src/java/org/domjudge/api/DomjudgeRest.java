@@ -6,7 +6,6 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.protobuf.ProtoTypeAdapter;
 import com.google.gson.reflect.TypeToken;
-import com.google.protobuf.AbstractMessage;
 
 import me.hex539.api.RestClient;
 
@@ -209,21 +208,11 @@ public class DomjudgeRest extends RestClient<DomjudgeRest> {
           .build();
 
       GsonBuilder gsonBuilder = new GsonBuilder();
+      // Registered first so that the adapters below win: Gson tries later registrations first.
+      gsonBuilder.registerTypeAdapterFactory(adapter.newFactory(DomjudgeProto.class));
       gsonBuilder.registerTypeAdapter(Boolean.class, new SloppyBooleanDeserializer());
       gsonBuilder.registerTypeAdapterFactory(new Deserializers.WellKnownTypeAdapterFactory());
-      addMessagesFromClass(gsonBuilder, adapter, DomjudgeProto.class);
       return gsonBuilder.create();
     }
-
-    protected static void addMessagesFromClass(
-        GsonBuilder builder,
-        ProtoTypeAdapter adapter,
-        Class c) {
-      for (Class subClass : c.getDeclaredClasses()) {
-        if (AbstractMessage.class.isAssignableFrom(subClass)) {
-          builder.registerTypeHierarchyAdapter(subClass, adapter);
-        }
-      }
-    }
   }
 }
@@ -2,6 +2,7 @@ package me.hex539.api;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.Reader;
 import java.util.Optional;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletionException;
@@ -11,6 +12,7 @@ import java.util.concurrent.TimeUnit;
 import okhttp3.Credentials;
 import okhttp3.OkHttpClient;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
 import okhttp3.Request;
 
 public class RestClient<Self extends RestClient> {
@@ -54,15 +56,42 @@ public class RestClient<Self extends RestClient> {
       String endpoint,
       ResponseHandler<? super String, T> handler,
       boolean tolerant) throws CompletionException {
+    return request(endpoint, handler, ResponseBody::string, tolerant);
+  }
+
+  /**
+   * Like {@link #requestFrom} but hands over the body as a stream, so that large responses can
+   * be decoded as they arrive instead of being read into memory in one piece first. The reader
+   * is only valid until {@param handler} returns.
+   */
+  public <T> T readFrom(String endpoint, ResponseHandler<? super Reader, T> handler)
+      throws CompletionException {
+    return request(endpoint, handler, ResponseBody::charStream, /* tolerant= */ false);
+  }
+
+  @FunctionalInterface
+  private interface BodyReader<B> {
+    B read(ResponseBody body) throws IOException;
+  }
+
+  private <B, T> T request(
+      String endpoint,
+      ResponseHandler<? super B, T> handler,
+      BodyReader<B> bodyReader,
+      boolean tolerant) throws CompletionException {
     try (Response response = client.newCall(buildRequest(endpoint).build()).execute()) {
       switch  (response.code()) {
         case 200:
           // OK
-          final String body = response.body().string();
+          final B body = bodyReader.read(response.body());
           try {
             return handler.apply(Optional.ofNullable(body));
           } catch (Exception e) {
-            System.err.println("Failed on response body:\n" + body);
+            if (body instanceof String) {
+              System.err.println("Failed on response body:\n" + body);
+            } else {
+              System.err.println("Failed midway through response body of " + endpoint);
+            }
             throw e;
           }
 
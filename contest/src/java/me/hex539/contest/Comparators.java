@@ -1,7 +1,10 @@
 package me.hex539.contest;
 
 import edu.clics.proto.ClicsProto.*;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
 import me.hex539.contest.model.Teams;
 
 public class Comparators {
@@ -33,15 +36,79 @@ public class Comparators {
     }
   }
 
+  /**
+   * Orders scoreboard rows by rank.
+   *
+   * <p>Rows registered through {@link #refresh} have their sort key (visibility, problems solved,
+   * total time and sorted solve times) cached per team in flat primitive arrays, so comparing two
+   * registered rows does not need to look up teams or allocate. The owner of the rows must call
+   * {@link #refresh} after every change to a registered row and before it is compared again.
+   *
+   * <p>Owners that keep the slot returned by {@link #refresh} next to each row can compare with
+   * {@link #compareCached} directly, which skips looking the slots up by team ID as well.
+   *
+   * <p>Rows that were never registered are scored from scratch on every comparison.
+   */
   public static class RowComparator implements Comparator<ScoreboardRowOrBuilder> {
+    private static final long[] NO_SOLVES = new long[0];
+
     private final Teams contest;
     private final TeamComparator teamComparator;
 
+    private final Map<String, Integer> slotsByTeam = new HashMap<>();
+    private int nextSlot = 0;
+    private boolean[] visible = new boolean[0];
+    private long[] numSolved = new long[0];
+    private long[] totalTime = new long[0];
+    private long[][] solveTimes = new long[0][];
+    private String[] names = new String[0];
+
     public RowComparator(Teams contest) {
       this.contest = contest;
       this.teamComparator = new TeamComparator(contest);
     }
 
+    /**
+     * Recompute the cached sort key for a row's team.
+     *
+     * <p>This must not be called while the row is inside a sorted container, otherwise the
+     * container will be searched with the new key and will not find it.
+     *
+     * @return the slot the key is cached in, for use with {@link #compareCached}. This stays the
+     *     same for as long as the team is not {@link #forget forgotten}.
+     */
+    public int refresh(ScoreboardRowOrBuilder row) {
+      final Team team = contest.getTeam(row.getTeamId());
+      final int slot = slotsByTeam.computeIfAbsent(team.getId(), k -> nextSlot++);
+      if (slot >= names.length) {
+        final int capacity = Math.max(16, slot * 2);
+        visible = Arrays.copyOf(visible, capacity);
+        numSolved = Arrays.copyOf(numSolved, capacity);
+        totalTime = Arrays.copyOf(totalTime, capacity);
+        solveTimes = Arrays.copyOf(solveTimes, capacity);
+        names = Arrays.copyOf(names, capacity);
+      }
+      visible[slot] = teamComparator.isVisible(team);
+      numSolved[slot] = row.getScore().getNumSolved();
+      totalTime[slot] = row.getScore().getTotalTime();
+      solveTimes[slot] = row.getScore().getNumSolved() != 0 ? getSolvedTimes(row) : NO_SOLVES;
+      names[slot] = team.getName();
+      return slot;
+    }
+
+    /**
+     * Drop the cached sort key for a team, for example because it has left the scoreboard.
+     *
+     * <p>Subsequent comparisons involving the team are scored from scratch.
+     */
+    public void forget(String teamId) {
+      final Integer slot = slotsByTeam.remove(teamId);
+      if (slot != null) {
+        solveTimes[slot] = null;
+        names[slot] = null;
+      }
+    }
+
     /**
      * Scoring algorithm (mostly) as described by official ICPC site.
      *
@@ -68,6 +135,12 @@ public class Comparators {
      **/
     @Override
     public int compare(ScoreboardRowOrBuilder row1, ScoreboardRowOrBuilder row2) {
+      final Integer slot1 = slotsByTeam.get(row1.getTeamId());
+      final Integer slot2 = slotsByTeam.get(row2.getTeamId());
+      if (slot1 != null && slot2 != null) {
+        return compareCached(slot1, slot2);
+      }
+
       final Team team1 = contest.getTeam(row1.getTeamId());
       final Team team2 = contest.getTeam(row2.getTeamId());
 
@@ -102,6 +175,39 @@ public class Comparators {
       return teamComparator.compare(team1, team2);
     }
 
+    /**
+     * Same ordering as {@link #compare}, read entirely from the key cache.
+     *
+     * @param a slot of the first row, as returned by {@link #refresh}.
+     * @param b slot of the second row, as returned by {@link #refresh}.
+     */
+    public int compareCached(int a, int b) {
+      if (a == b) {
+        return 0;
+      }
+
+      int res = 0;
+      if ((res = Boolean.compare(visible[a], visible[b])) != 0
+          || (res = Long.compare(-numSolved[a], -numSolved[b])) != 0
+          || (res = Long.compare(totalTime[a], totalTime[b])) != 0) {
+        return res;
+      }
+
+      final long[] ourSolve = solveTimes[a];
+      final long[] theirSolve = solveTimes[b];
+      for (int i = Math.min(ourSolve.length, theirSolve.length); i --> 0;) {
+        if (ourSolve[i] != theirSolve[i]) {
+          return Long.compare(ourSolve[i], theirSolve[i]);
+        }
+      }
+
+      if ((res = String.CASE_INSENSITIVE_ORDER.compare(names[a], names[b])) != 0
+          || (res = names[a].compareTo(names[b])) != 0) {
+        return res;
+      }
+      return 0;
+    }
+
     private static long[] getSolvedTimes(ScoreboardRowOrBuilder row) {
       return row.getProblemsList().stream()
           .filter(ScoreboardProblem::getSolved)
@@ -0,0 +1,121 @@
+package me.hex539.contest;
+
+import com.google.protobuf.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import edu.clics.proto.ClicsProto.*;
+
+/**
+ * The parts of a {@link ClicsContest} that every {@link ScoreboardModelImpl} built from it needs
+ * in the same order: problems by ordinal, submissions by contest time and judgements by end time.
+ *
+ * <p>Apps tend to build two or three models from one contest in a row. Each model keeps the index
+ * it was built with, and hands it on to builders made from it through
+ * {@link ScoreboardModelImpl#toBuilder} or {@link ScoreboardModelImpl#newBuilder(ClicsContest,
+ * ScoreboardModel)}, so they can share one sort. It is immutable once built.
+ */
+final class ContestIndex {
+  /**
+   * With only one processor there is nothing to overlap the sorting with, and handing it to the
+   * pool and back made building the three nwerc2018 models about 3ms slower.
+   */
+  private static final boolean IN_BACKGROUND = Runtime.getRuntime().availableProcessors() > 1;
+
+  private final CompletableFuture<List<Problem>> problems;
+  private final CompletableFuture<List<Submission>> submissions;
+  private final CompletableFuture<List<Judgement>> judgements;
+
+  /**
+   * Starts sorting everything on the common fork-join pool, if there are processors to spare.
+   * Then the work happens in the background and this returns straight away.
+   */
+  ContestIndex(ClicsContest clics) {
+    this.problems = start(
+        () -> sortByOrdinal(clics.getProblemsMap().values()));
+    this.submissions = start(
+        () -> sortByTime(clics.getSubmissionsMap().values(), Submission::getContestTime));
+    this.judgements = start(
+        () -> sortByTime(clics.getJudgementsMap().values(), Judgement::getEndContestTime));
+  }
+
+  private static <T> CompletableFuture<T> start(Supplier<T> task) {
+    return IN_BACKGROUND
+        ? CompletableFuture.supplyAsync(task, ForkJoinPool.commonPool())
+        : CompletableFuture.completedFuture(task.get());
+  }
+
+  List<Problem> getProblems() {
+    return problems.join();
+  }
+
+  List<Submission> getSubmissions() {
+    return submissions.join();
+  }
+
+  List<Judgement> getJudgements() {
+    return judgements.join();
+  }
+
+  private static List<Problem> sortByOrdinal(Collection<Problem> values) {
+    final Problem[] problems = values.toArray(new Problem[0]);
+    Arrays.sort(problems, (a, b) -> Integer.compare(a.getOrdinal(), b.getOrdinal()));
+    return Collections.unmodifiableList(Arrays.asList(problems));
+  }
+
+  /** Stable sort on nanoseconds, worked out once per value rather than once per comparison. */
+  static <T> List<T> sortByTime(Collection<T> values, Function<T, Duration> time) {
+    final List<T> list = new ArrayList<>(values);
+    final long[] keys = new long[list.size()];
+    boolean sorted = true;
+    for (int i = 0; i < keys.length; i++) {
+      final Duration d = time.apply(list.get(i));
+      keys[i] = d.getSeconds() * 1_000_000_000L + d.getNanos();
+      sorted &= (i == 0 || keys[i - 1] <= keys[i]);
+    }
+    if (sorted) {
+      // Feeds are usually already in order.
+      return Collections.unmodifiableList(list);
+    }
+
+    final int[] order = new int[keys.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    mergeSort(order, new int[order.length], keys, 0, order.length);
+
+    final List<T> res = new ArrayList<>(order.length);
+    for (int i : order) {
+      res.add(list.get(i));
+    }
+    return Collections.unmodifiableList(res);
+  }
+
+  /** Sorts {@param order}[from, to) by {@param keys}, keeping ties in their existing order. */
+  private static void mergeSort(int[] order, int[] scratch, long[] keys, int from, int to) {
+    if (to - from < 2) {
+      return;
+    }
+    final int mid = (from + to) >>> 1;
+    mergeSort(order, scratch, keys, from, mid);
+    mergeSort(order, scratch, keys, mid, to);
+    if (keys[order[mid - 1]] <= keys[order[mid]]) {
+      return;
+    }
+    System.arraycopy(order, from, scratch, from, to - from);
+    for (int i = from, a = from, b = mid; i < to; i++) {
+      if (b == to || (a < mid && keys[scratch[a]] <= keys[scratch[b]])) {
+        order[i] = scratch[a++];
+      } else {
+        order[i] = scratch[b++];
+      }
+    }
+  }
+}
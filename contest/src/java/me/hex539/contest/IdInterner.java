@@ -0,0 +1,102 @@
+package me.hex539.contest;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Assigns dense, stable integer indices to string IDs in the order they are first seen.
+ *
+ * <p>Lookups go through an open-addressing table keyed directly by the strings, so there are no
+ * boxed entries and {@link String#hashCode()} is only ever computed once per ID object. Indices
+ * are never reused, which makes them safe to use as array offsets for the lifetime of a model.
+ */
+public final class IdInterner {
+  private static final int MIN_CAPACITY = 16;
+
+  private String[] keys;
+  private int[] slots;
+  private String[] ids;
+  private int size;
+
+  public IdInterner() {
+    this(0);
+  }
+
+  public IdInterner(int expectedSize) {
+    int capacity = MIN_CAPACITY;
+    while (capacity < expectedSize * 2) {
+      capacity <<= 1;
+    }
+    keys = new String[capacity];
+    slots = new int[capacity];
+    ids = new String[Math.max(expectedSize, MIN_CAPACITY)];
+  }
+
+  /** @return the index of {@param id}, assigning the next free one if it has not been seen. */
+  public int intern(String id) {
+    int pos = find(id);
+    if (keys[pos] != null) {
+      return slots[pos];
+    }
+    if ((size + 1) * 2 > keys.length) {
+      rehash(keys.length * 2);
+      pos = find(id);
+    }
+    if (size == ids.length) {
+      ids = Arrays.copyOf(ids, size * 2);
+    }
+    keys[pos] = id;
+    slots[pos] = size;
+    ids[size] = id;
+    return size++;
+  }
+
+  /** @return the index of {@param id}, or -1 if it has never been interned. */
+  public int indexOf(String id) {
+    final int pos = find(id);
+    return keys[pos] != null ? slots[pos] : -1;
+  }
+
+  public boolean contains(String id) {
+    return indexOf(id) != -1;
+  }
+
+  /** @return the ID that was given {@param index}. */
+  public String get(int index) throws NoSuchElementException {
+    if (index < 0 || index >= size) {
+      throw new NoSuchElementException("No ID with index " + index);
+    }
+    return ids[index];
+  }
+
+  /** @return the number of distinct IDs seen so far, which is also the next index to assign. */
+  public int size() {
+    return size;
+  }
+
+  private int find(String id) {
+    final int mask = keys.length - 1;
+    int pos = mix(id.hashCode()) & mask;
+    for (String k; (k = keys[pos]) != null; pos = (pos + 1) & mask) {
+      if (k == id || k.equals(id)) {
+        break;
+      }
+    }
+    return pos;
+  }
+
+  private void rehash(int capacity) {
+    keys = new String[capacity];
+    slots = new int[capacity];
+    for (int i = 0; i < size; i++) {
+      final int pos = find(ids[i]);
+      keys[pos] = ids[i];
+      slots[pos] = i;
+    }
+  }
+
+  private static int mix(int h) {
+    h *= 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
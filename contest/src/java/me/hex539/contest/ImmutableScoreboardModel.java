@@ -7,12 +7,13 @@ import java.util.List;
 import java.util.Optional;
 
 import com.google.auto.value.AutoValue;
+import com.google.auto.value.extension.memoized.Memoized;
 
 import edu.clics.proto.ClicsProto.*;
+import me.hex539.contest.immutable.IdIndex;
 import me.hex539.contest.immutable.ImmutableProblems;
 import me.hex539.contest.immutable.ImmutableRanklist;
 import me.hex539.contest.immutable.ImmutableTeams;
-import me.hex539.contest.immutable.SortedLists;
 import me.hex539.contest.model.Judge;
 import me.hex539.contest.model.Problems;
 import me.hex539.contest.model.Ranklist;
@@ -23,7 +24,8 @@ import me.hex539.contest.model.Teams;
  *
  * <p>Read-only write-once implementation of a scoreboard which supports
  * fast paths for extracting data -- all methods are either O(1) or
- * O(logN) in the number of teams/groups.
+ * O(logN) in the number of teams/groups. Lookups by ID go through
+ * hash indexes that are built up front by {@link #of}.
  *
  * <p>This is the only scoreboard model that is safe to use from
  * multiple threads. Others do not support simultaneous reads and writes
@@ -34,7 +36,7 @@ import me.hex539.contest.model.Teams;
 public abstract class ImmutableScoreboardModel implements ScoreboardModel, Judge {
 
   public static ImmutableScoreboardModel of(ScoreboardModel model) {
-    return new AutoValue_ImmutableScoreboardModel.Builder()
+    final ImmutableScoreboardModel res = new AutoValue_ImmutableScoreboardModel.Builder()
         .setContest(model.getContest())
         .setTeamsModel(ImmutableTeams.of(model.getTeamsModel()))
         .setProblemsModel(ImmutableProblems.of(model.getProblemsModel()))
@@ -43,6 +45,12 @@ public abstract class ImmutableScoreboardModel implements ScoreboardModel, Judge
         .setJudgements(list(model.getJudgeModel().getJudgements()))
         .setSubmissions(list(model.getJudgeModel().getSubmissions()))
         .build();
+
+    // Build the indexes now rather than on first use, so that readers never have to wait on them.
+    res.judgementTypesById();
+    res.judgementsById();
+    res.submissionsById();
+    return res;
   }
 
   @AutoValue.Builder
@@ -68,9 +76,24 @@ public abstract class ImmutableScoreboardModel implements ScoreboardModel, Judge
     return this;
   }
 
+  @Memoized
+  IdIndex<JudgementType> judgementTypesById() {
+    return IdIndex.of(getJudgementTypes(), JudgementType::getId);
+  }
+
+  @Memoized
+  IdIndex<Judgement> judgementsById() {
+    return IdIndex.of(getJudgements(), Judgement::getId);
+  }
+
+  @Memoized
+  IdIndex<Submission> submissionsById() {
+    return IdIndex.of(getSubmissions(), Submission::getId);
+  }
+
   @Override
   public Optional<JudgementType> getJudgementTypeOpt(String id) {
-    return SortedLists.binarySearch(getJudgementTypes(), type -> id.compareTo(type.getId()));
+    return judgementTypesById().getOpt(id);
   }
 
   // Widening return types of inherited functions.
@@ -82,9 +105,14 @@ public abstract class ImmutableScoreboardModel implements ScoreboardModel, Judge
   @Override public abstract List<Judgement> getJudgements();
   @Override public abstract List<Submission> getSubmissions();
 
+  @Override
+  public Optional<Judgement> getJudgementOpt(String id) {
+    return judgementsById().getOpt(id);
+  }
+
   @Override
   public Optional<Submission> getSubmissionOpt(String id) {
-    return SortedLists.binarySearch(getSubmissions(), sub -> id.compareTo(sub.getId()));
+    return submissionsById().getOpt(id);
   }
 
   private static <T> List<T> list(Collection<T> list) {
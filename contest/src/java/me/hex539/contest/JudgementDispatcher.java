@@ -1,9 +1,11 @@
 package me.hex539.contest;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -34,9 +36,22 @@ public class JudgementDispatcher {
   private final Logger warn = (DEBUG ? System.err::println : s -> {});
   private final Logger info = (VERBOSE ? System.err::println : s -> {});
 
-  private final Map<String, Integer> submissionOrder = new HashMap<>();
-  private final Map<String, Map<String, List<Submission>>> teamSubmissions = new HashMap<>();
-  private final Map<String, Map<String, List<Judgement>>> teamJudgements = new HashMap<>();
+  /**
+   * Dense indices for every ID the dispatcher has seen. Submission indices double as the order
+   * submissions arrived in, which is the order verdicts are scored in.
+   */
+  private final IdInterner teamIds;
+  private final IdInterner problemIds;
+  private final IdInterner submissionIds;
+  private final IdInterner judgementTypeIds = new IdInterner();
+
+  private JudgementType[] judgementTypes = new JudgementType[0];
+
+  /** Scoring state, indexed by team and then by problem. */
+  private Cell[][] cells = new Cell[0][];
+
+  /** Position of each submission within its cell, indexed by submission, or -1 if unknown. */
+  private int[] cellPositions = new int[0];
 
   public JudgementDispatcher(final ScoreboardModel model) {
     this(model, true);
@@ -59,26 +74,52 @@ public class JudgementDispatcher {
     this.showCompileErrors = showCompileErrors;
     this.rowComparator = rowComparator;
 
-    for (Submission s : judge.getSubmissions()) {
-      submissionOrder.put(s.getId(), submissionOrder.size());
+    final List<Submission> allSubmissions = judge.getSubmissions();
+    this.teamIds = new IdInterner(teams.getTeams().size());
+    this.problemIds = new IdInterner(problems.getProblemsCount());
+    this.submissionIds = new IdInterner(allSubmissions.size());
+
+    // Bulk load: place every submission in its cell, keep only the latest verdict for each one,
+    // and then total up each cell in one go. Replaying them one by one instead would send any
+    // cell with a rejudging or out-of-order verdicts down the slow path for no reason.
+    final Cell[] cellOf = new Cell[allSubmissions.size()];
+    for (Submission s : allSubmissions) {
+      final int index = submissionIds.intern(s.getId());
       Team team = teams.getTeam(s.getTeamId());
       Problem problem = problems.getProblem(s.getProblemId());
-      getSubmissions(team, problem).add(s);
+      cellOf[index] = getCell(team, problem);
+      getPosition(cellOf[index], s);
     }
+
+    final byte[] verdicts = new byte[cellOf.length];
     for (Judgement j : judge.getJudgements()) {
-      Submission s = judge.getSubmission(j.getSubmissionId());
-      Team team = teams.getTeam(s.getTeamId());
-      Problem problem = problems.getProblem(s.getProblemId());
-      getJudgements(team, problem).removeIf(x -> x.getSubmissionId().equals(j.getSubmissionId()));
-      getJudgements(team, problem).add(j);
+      final int index = submissionIds.indexOf(j.getSubmissionId());
+      if (index == -1) {
+        throw new NoSuchElementException("No submission " + j.getSubmissionId());
+      }
+      // Judgements come in order of when they finished, so later ones overrule earlier ones.
+      verdicts[index] = getVerdictFlags(j);
+    }
+    for (int i = 0; i < verdicts.length; i++) {
+      if (verdicts[i] != 0) {
+        cellOf[i].loadVerdict(cellPositions[i], verdicts[i]);
+      }
+    }
+    for (Cell[] row : cells) {
+      for (int p = 0; row != null && p < row.length; p++) {
+        if (row[p] != null) {
+          row[p].recount();
+        }
+      }
     }
   }
 
   public boolean notifySubmission(final Submission submission) {
-    if (submissionOrder.putIfAbsent(submission.getId(), submissionOrder.size()) != null) {
+    if (submissionIds.contains(submission.getId())) {
       warn.log("Submission " + submission.getId() + " already exists");
       return false;
     }
+    submissionIds.intern(submission.getId());
 
     final Team team;
     final Problem problem;
@@ -88,12 +129,10 @@ public class JudgementDispatcher {
     } catch (NoSuchElementException e) {
       return false;
     }
-    getSubmissions(team, problem).add(submission);
+    final Cell cell = getCell(team, problem);
+    getPosition(cell, submission);
 
-    final ScoreboardProblem attempts = scoreProblem(
-        problem,
-        getJudgements(team, problem),
-        getSubmissions(team, problem));
+    final ScoreboardProblem attempts = cell.score(problem, showCompileErrors);
     for (ScoreboardModel.Observer x : observers) {
       x.onProblemSubmitted(team, submission);
       x.onProblemScoreChanged(team, attempts);
@@ -110,7 +149,7 @@ public class JudgementDispatcher {
       warn.log("Ignoring judgement " + j.getId() + " with no judgement type");
       return null;
     }
-    final JudgementType type = judge.getJudgementType(j.getJudgementTypeId());
+    final byte verdict = getVerdictFlags(j);
 
     final Submission submission;
     final Team team;
@@ -123,46 +162,24 @@ public class JudgementDispatcher {
       return null;
     }
 
-    final List<Submission> submissions = getSubmissions(team, problem);
-    final List<Judgement> verdicts = getJudgements(team, problem);
+    final Cell cell = getCell(team, problem);
+    final int position = getPosition(cell, submission);
 
-    long[] oldPenaltyCount = {0};
-    final ScoreboardProblem oldAttempts =
-        scoreProblem(problem, verdicts, submissions, oldPenaltyCount);
+    final long oldPenaltyCount = cell.getPenaltyCount();
+    final ScoreboardProblem oldAttempts = cell.score(problem, showCompileErrors);
 
-    // Insert the new submission.
-    boolean rejudge = false;
-    for (int i = 0; i < verdicts.size(); i++) {
-      if (verdicts.get(i).getSubmissionId().equals(j.getSubmissionId())) {
-        verdicts.set(i, j);
-        rejudge = true;
-      }
-    }
-    if (!rejudge) {
-      verdicts.add(j);
-    }
-    Collections.sort(verdicts, (a, b) -> Integer.compare(
-        submissionOrder.get(a.getSubmissionId()),
-        submissionOrder.get(b.getSubmissionId())));
+    // Apply the new verdict, or replace the old one if this is a rejudging.
+    cell.putVerdict(position, verdict);
 
-    long[] newPenaltyCount = {0};
-    final ScoreboardProblem attempts =
-        scoreProblem(problem, verdicts, submissions, newPenaltyCount);
+    final long newPenaltyCount = cell.getPenaltyCount();
+    final ScoreboardProblem attempts = cell.score(problem, showCompileErrors);
 
     final ScoreboardScore oldScore = model.getRanklistModel().getScore(team);
     final boolean attemptsChanged = !attempts.equals(oldAttempts);
 
     final ScoreboardScore newScore = !attemptsChanged
         ? oldScore
-        : ScoreboardScore.newBuilder()
-            .setNumSolved(oldScore.getNumSolved()
-                + (attempts.getSolved() ? 1 : 0)
-                - (oldAttempts.getSolved() ? 1 : 0))
-            .setTotalTime(oldScore.getTotalTime()
-                + (attempts.getSolved() ? attempts.getTime() : 0)
-                - (oldAttempts.getSolved() ? oldAttempts.getTime() : 0)
-                + (newPenaltyCount[0] - oldPenaltyCount[0]) * model.getContest().getPenaltyTime())
-            .build();
+        : addScore(oldScore, oldAttempts, attempts, newPenaltyCount - oldPenaltyCount);
 
     final boolean scoreChanged = attemptsChanged && !newScore.equals(oldScore);
 
@@ -192,72 +209,403 @@ public class JudgementDispatcher {
     return attempts;
   }
 
-  private ScoreboardProblem scoreProblem(
-      Problem problem,
-      List<Judgement> verdicts,
-      List<Submission> submissions) {
-    return scoreProblem(problem, verdicts, submissions, new long[1]);
-  }
+  /**
+   * Apply many judgements at once, for example when replaying a contest or catching up on a
+   * backlog.
+   *
+   * <p>Every verdict is applied before anyone is told about it. Each team is then reported once
+   * with its net changes: plain observers get {@link ScoreboardModel.Observer#onSubmissionJudged}
+   * for each judgement, one {@link ScoreboardModel.Observer#onTeamScoreChanged} and one
+   * {@link ScoreboardModel.Observer#onTeamRankChanged} from the rank before the batch to the rank
+   * after it. {@link ScoreboardModel.BatchObserver}s get all of that as a single change set
+   * instead, once the plain observers have been updated.
+   *
+   * @return the net change for every team with at least one valid judgement in the batch.
+   */
+  public List<ScoreboardModel.TeamChange> notifyJudgements(Collection<Judgement> judgements) {
+    final Map<String, PendingChange> pending = new LinkedHashMap<>();
+    for (Judgement j : judgements) {
+      if (j == null) {
+        warn.log("Missing judgement " + j);
+        continue;
+      }
+      if (j.getJudgementTypeId() == null || "".equals(j.getJudgementTypeId())) {
+        warn.log("Ignoring judgement " + j.getId() + " with no judgement type");
+        continue;
+      }
+      final byte verdict = getVerdictFlags(j);
+
+      final Submission submission;
+      final Team team;
+      final Problem problem;
+      try {
+        submission = judge.getSubmission(j.getSubmissionId());
+        team = teams.getTeam(submission.getTeamId());
+        problem = problems.getProblem(submission.getProblemId());
+      } catch (NoSuchElementException e) {
+        continue;
+      }
+
+      final PendingChange change = pending.computeIfAbsent(team.getId(), k -> new PendingChange(
+          team,
+          model.getRanklistModel().getScore(team),
+          (int) model.getRanklistModel().getRank(team)));
+      final Cell cell = getCell(team, problem);
+      change.cells.computeIfAbsent(problem.getId(), k -> new PendingCell(
+          problem,
+          cell,
+          cell.score(problem, showCompileErrors),
+          cell.getPenaltyCount()));
+      change.judgements.add(j);
+      cell.putVerdict(getPosition(cell, submission), verdict);
+    }
 
-  private ScoreboardProblem scoreProblem(
-      Problem problem,
-      List<Judgement> verdicts,
-      List<Submission> submissions,
-      long[] penalty) {
-    if (submissions.size() < verdicts.size()) {
-      throw new Error("More verdicts than submissions for team");
-    }
-    int penaltyCount = 0;
-    int attemptsToSolve = 0;
-    Judgement solvedAt = null;
-
-    for (Judgement j : verdicts) {
-      JudgementType t = judge.getJudgementType(j.getJudgementTypeId());
-      attemptsToSolve++;
-      if (t.getPenalty()) {
-        penaltyCount++;
+    // Work out each team's net change before telling anyone, while the old scores still stand.
+    for (PendingChange change : pending.values()) {
+      change.newScore = change.oldScore;
+      for (PendingCell c : change.cells.values()) {
+        final ScoreboardProblem attempts = c.cell.score(c.problem, showCompileErrors);
+        if (!attempts.equals(c.oldAttempts)) {
+          change.problems.add(attempts);
+          change.newScore = addScore(
+              change.newScore,
+              c.oldAttempts,
+              attempts,
+              c.cell.getPenaltyCount() - c.oldPenaltyCount);
+        }
       }
-      if (t.getSolved()) {
-        solvedAt = j;
-        break;
+    }
+
+    for (PendingChange change : pending.values()) {
+      final boolean scoreChanged = !change.newScore.equals(change.oldScore);
+      for (ScoreboardModel.Observer x : observers) {
+        if (x instanceof ScoreboardModel.BatchObserver) {
+          continue;
+        }
+        change.judgements.forEach(j -> x.onSubmissionJudged(change.team, j));
+        if (scoreChanged) {
+          x.onTeamScoreChanged(change.team, change.problems, change.newScore);
+        } else {
+          change.problems.forEach(attempts -> x.onProblemScoreChanged(change.team, attempts));
+        }
       }
     }
 
-    if (solvedAt != null) {
-      penalty[0] = penaltyCount;
-      return ScoreboardProblem.newBuilder()
-          .setProblemId(problem.getId())
-          .setNumJudged(penaltyCount + 1)
-          .setNumPending(0)
-          .setSolved(true)
-          .setTime(
-              judge.getSubmission(solvedAt.getSubmissionId()).getContestTime().getSeconds() / 60)
-          .build();
-    } else {
-      // Show submissions with only compiler error as -1, to be consistent with real scoreboards
-      // and to show a more reasonable fiction when resolving where pending submissions don't
-      // disappear into nothingness if they're all CE.
-      penalty[0] = 0;
-      return ScoreboardProblem.newBuilder()
-          .setProblemId(problem.getId())
-          .setNumJudged(attemptsToSolve == 0
-              ? 0
-              : Math.max(showCompileErrors ? 1 : 0, penaltyCount))
-          .setNumPending(submissions.size() - verdicts.size())
-          .setSolved(false)
-          .build();
+    final List<ScoreboardModel.TeamChange> res = new ArrayList<>(pending.size());
+    for (PendingChange change : pending.values()) {
+      final int newRank = (int) model.getRanklistModel().getRank(change.team);
+      if (change.oldRank != newRank && !change.newScore.equals(change.oldScore)) {
+        info.log("Team rank " + change.oldRank + " -> " + newRank + " for " + change.team.getName());
+        for (ScoreboardModel.Observer x : observers) {
+          if (!(x instanceof ScoreboardModel.BatchObserver)) {
+            x.onTeamRankChanged(change.team, change.oldRank, newRank);
+          }
+        }
+      }
+      res.add(ScoreboardModel.TeamChange.create(
+          change.team,
+          Collections.unmodifiableList(change.judgements),
+          Collections.unmodifiableList(change.problems),
+          change.oldScore,
+          change.newScore,
+          change.oldRank,
+          newRank));
+    }
+
+    final List<ScoreboardModel.TeamChange> changes = Collections.unmodifiableList(res);
+    for (ScoreboardModel.Observer x : observers) {
+      if (x instanceof ScoreboardModel.BatchObserver) {
+        ((ScoreboardModel.BatchObserver) x).onTeamsChanged(changes);
+      }
+    }
+    return changes;
+  }
+
+  /** Everything a batch has done to one team so far. */
+  private static final class PendingChange {
+    final Team team;
+    final ScoreboardScore oldScore;
+    final int oldRank;
+    final List<Judgement> judgements = new ArrayList<>();
+    final Map<String, PendingCell> cells = new LinkedHashMap<>();
+
+    final List<ScoreboardProblem> problems = new ArrayList<>();
+    ScoreboardScore newScore;
+
+    PendingChange(Team team, ScoreboardScore oldScore, int oldRank) {
+      this.team = team;
+      this.oldScore = oldScore;
+      this.oldRank = oldRank;
+    }
+  }
+
+  /** A cell touched by a batch, along with how it was scored beforehand. */
+  private static final class PendingCell {
+    final Problem problem;
+    final Cell cell;
+    final ScoreboardProblem oldAttempts;
+    final long oldPenaltyCount;
+
+    PendingCell(Problem problem, Cell cell, ScoreboardProblem oldAttempts, long oldPenaltyCount) {
+      this.problem = problem;
+      this.cell = cell;
+      this.oldAttempts = oldAttempts;
+      this.oldPenaltyCount = oldPenaltyCount;
+    }
+  }
+
+  /** @return {@param score} with one problem's contribution swapped for a new one. */
+  private ScoreboardScore addScore(
+      ScoreboardScore score,
+      ScoreboardProblem oldAttempts,
+      ScoreboardProblem attempts,
+      long penaltyDelta) {
+    return ScoreboardScore.newBuilder()
+        .setNumSolved(score.getNumSolved()
+            + (attempts.getSolved() ? 1 : 0)
+            - (oldAttempts.getSolved() ? 1 : 0))
+        .setTotalTime(score.getTotalTime()
+            + (attempts.getSolved() ? attempts.getTime() : 0)
+            - (oldAttempts.getSolved() ? oldAttempts.getTime() : 0)
+            + penaltyDelta * model.getContest().getPenaltyTime())
+        .build();
+  }
+
+  private JudgementType getJudgementType(String id) throws NoSuchElementException {
+    final int index = judgementTypeIds.intern(id);
+    if (index >= judgementTypes.length) {
+      judgementTypes = Arrays.copyOf(judgementTypes, Math.max(index + 1, judgementTypes.length * 2));
+    }
+    if (judgementTypes[index] == null) {
+      judgementTypes[index] = judge.getJudgementType(id);
+    }
+    return judgementTypes[index];
+  }
+
+  private byte getVerdictFlags(Judgement j) throws NoSuchElementException {
+    final JudgementType type = getJudgementType(j.getJudgementTypeId());
+    return (byte) (Cell.JUDGED
+        | (type.getPenalty() ? Cell.PENALTY : 0)
+        | (type.getSolved() ? Cell.SOLVED : 0));
+  }
+
+  /** @return where a submission sits in its cell, adding it to the end if it is not there yet. */
+  private int getPosition(Cell cell, Submission submission) {
+    final int index = submissionIds.intern(submission.getId());
+    if (index >= cellPositions.length) {
+      final int oldLength = cellPositions.length;
+      cellPositions = Arrays.copyOf(cellPositions, Math.max(index + 1, oldLength * 2));
+      Arrays.fill(cellPositions, oldLength, cellPositions.length, -1);
+    }
+    if (cellPositions[index] == -1) {
+      cellPositions[index] = cell.addSubmission(submission.getContestTime().getSeconds() / 60);
     }
+    return cellPositions[index];
   }
 
-  private List<Submission> getSubmissions(Team team, Problem problem) {
-    return teamSubmissions
-        .computeIfAbsent(team.getId(), k -> new HashMap<>())
-        .computeIfAbsent(problem.getId(), k -> new ArrayList<>());
+  private Cell getCell(Team team, Problem problem) {
+    final int t = teamIds.intern(team.getId());
+    final int p = problemIds.intern(problem.getId());
+    if (t >= cells.length) {
+      cells = Arrays.copyOf(cells, Math.max(t + 1, cells.length * 2));
+    }
+    if (cells[t] == null || p >= cells[t].length) {
+      cells[t] = Arrays.copyOf(
+          cells[t] != null ? cells[t] : new Cell[0],
+          Math.max(p + 1, problems.getProblemsCount()));
+    }
+    if (cells[t][p] == null) {
+      cells[t][p] = new Cell();
+    }
+    return cells[t][p];
   }
 
-  private List<Judgement> getJudgements(Team team, Problem problem) {
-    return teamJudgements
-        .computeIfAbsent(team.getId(), k -> new HashMap<>())
-        .computeIfAbsent(problem.getId(), k -> new ArrayList<>());
+  /**
+   * Scoring state for one team on one problem.
+   *
+   * Submissions are numbered in the order they arrived, and each one holds at most one verdict.
+   * The score only depends on the first solving verdict and on how many penalties come before
+   * it, so rather than rescanning every verdict we keep running totals.
+   *
+   * Verdicts for a later submission than any judged so far, which is almost all of them, update
+   * the totals in O(1). The first verdict that lands anywhere else (a rejudging, or judgements
+   * arriving out of order) switches the cell over to Fenwick trees of its penalty and solved
+   * flags, after which every verdict costs O(log k) in the number of submissions k.
+   */
+  private static final class Cell {
+    static final byte JUDGED = 1;
+    static final byte PENALTY = 2;
+    static final byte SOLVED = 4;
+
+    private int submissions = 0;
+    private long[] minutes = new long[2];
+    private byte[] flags = new byte[2];
+
+    private int judged = 0;
+    private int penalties = 0;
+    private int lastJudged = -1;
+    private int firstSolved = -1;
+    private int penaltiesToSolve = 0;
+
+    /** Only built once verdicts stop arriving in order. Both are 1-indexed. */
+    private int[] penaltyTree = null;
+    private int[] solvedTree = null;
+
+    /** @return the position of the new submission. */
+    int addSubmission(long contestMinutes) {
+      if (submissions == flags.length) {
+        minutes = Arrays.copyOf(minutes, submissions * 2);
+        flags = Arrays.copyOf(flags, submissions * 2);
+        if (penaltyTree != null) {
+          buildTrees();
+        }
+      }
+      minutes[submissions] = contestMinutes;
+      return submissions++;
+    }
+
+    void putVerdict(int position, byte verdict) {
+      final byte old = flags[position];
+      if (old == verdict) {
+        return;
+      }
+
+      if (old == 0 && position > lastJudged && penaltyTree == null) {
+        // Fast path: nothing judged after this yet, so it can only extend the totals.
+        flags[position] = verdict;
+        judged++;
+        lastJudged = position;
+        if ((verdict & PENALTY) != 0) {
+          penalties++;
+        }
+        if (firstSolved == -1 && (verdict & SOLVED) != 0) {
+          firstSolved = position;
+          penaltiesToSolve = penalties;
+        }
+        return;
+      }
+
+      if (penaltyTree == null) {
+        buildTrees();
+      }
+      flags[position] = verdict;
+      if (old == 0) {
+        judged++;
+        lastJudged = Math.max(lastJudged, position);
+      }
+      final int penaltyDelta = bit(verdict, PENALTY) - bit(old, PENALTY);
+      if (penaltyDelta != 0) {
+        penalties += penaltyDelta;
+        add(penaltyTree, position, penaltyDelta);
+      }
+      final int solvedDelta = bit(verdict, SOLVED) - bit(old, SOLVED);
+      if (solvedDelta != 0) {
+        add(solvedTree, position, solvedDelta);
+      }
+      firstSolved = findFirst(solvedTree);
+      penaltiesToSolve = firstSolved != -1 ? sum(penaltyTree, firstSolved) : 0;
+    }
+
+    /** Sets a verdict without updating any totals. Call {@link #recount()} afterwards. */
+    void loadVerdict(int position, byte verdict) {
+      flags[position] = verdict;
+    }
+
+    /** Works out all of the totals again from scratch in one pass over the verdicts. */
+    void recount() {
+      judged = 0;
+      penalties = 0;
+      lastJudged = -1;
+      firstSolved = -1;
+      penaltiesToSolve = 0;
+      for (int i = 0; i < submissions; i++) {
+        if (flags[i] == 0) {
+          continue;
+        }
+        judged++;
+        lastJudged = i;
+        if ((flags[i] & PENALTY) != 0) {
+          penalties++;
+        }
+        if (firstSolved == -1 && (flags[i] & SOLVED) != 0) {
+          firstSolved = i;
+          penaltiesToSolve = penalties;
+        }
+      }
+      if (penaltyTree != null) {
+        buildTrees();
+      }
+    }
+
+    /** @return the number of penalties that count towards total time. */
+    long getPenaltyCount() {
+      return firstSolved != -1 ? penaltiesToSolve : 0;
+    }
+
+    ScoreboardProblem score(Problem problem, boolean showCompileErrors) {
+      if (firstSolved != -1) {
+        return ScoreboardProblem.newBuilder()
+            .setProblemId(problem.getId())
+            .setNumJudged(penaltiesToSolve + 1)
+            .setNumPending(0)
+            .setSolved(true)
+            .setTime(minutes[firstSolved])
+            .build();
+      } else {
+        // Show submissions with only compiler error as -1, to be consistent with real scoreboards
+        // and to show a more reasonable fiction when resolving where pending submissions don't
+        // disappear into nothingness if they're all CE.
+        return ScoreboardProblem.newBuilder()
+            .setProblemId(problem.getId())
+            .setNumJudged(judged == 0 ? 0 : Math.max(showCompileErrors ? 1 : 0, penalties))
+            .setNumPending(submissions - judged)
+            .setSolved(false)
+            .build();
+      }
+    }
+
+    private void buildTrees() {
+      penaltyTree = new int[flags.length + 1];
+      solvedTree = new int[flags.length + 1];
+      for (int i = 1; i < penaltyTree.length; i++) {
+        penaltyTree[i] += bit(flags[i - 1], PENALTY);
+        solvedTree[i] += bit(flags[i - 1], SOLVED);
+        final int parent = i + (i & -i);
+        if (parent < penaltyTree.length) {
+          penaltyTree[parent] += penaltyTree[i];
+          solvedTree[parent] += solvedTree[i];
+        }
+      }
+    }
+
+    private static int bit(byte verdict, byte flag) {
+      return (verdict & flag) != 0 ? 1 : 0;
+    }
+
+    private static void add(int[] tree, int position, int delta) {
+      for (int i = position + 1; i < tree.length; i += i & -i) {
+        tree[i] += delta;
+      }
+    }
+
+    /** @return the sum of positions up to and including {@param position}. */
+    private static int sum(int[] tree, int position) {
+      int res = 0;
+      for (int i = position + 1; i > 0; i -= i & -i) {
+        res += tree[i];
+      }
+      return res;
+    }
+
+    /** @return the first position with a non-zero entry, or -1 if there is none. */
+    private static int findFirst(int[] tree) {
+      int pos = 0;
+      for (int step = Integer.highestOneBit(tree.length - 1); step != 0; step >>= 1) {
+        if (pos + step < tree.length && tree[pos + step] == 0) {
+          pos += step;
+        }
+      }
+      return pos < tree.length - 1 ? pos : -1;
+    }
   }
 }
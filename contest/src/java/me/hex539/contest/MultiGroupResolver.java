@@ -0,0 +1,310 @@
+package me.hex539.contest;
+
+import com.google.protobuf.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import edu.clics.proto.ClicsProto.*;
+import me.hex539.contest.ResolverController.Resolution;
+import me.hex539.contest.model.Judge;
+import me.hex539.contest.model.Ranklist;
+
+/**
+ * Computes the resolutions of several groups of one contest in a single pass.
+ *
+ * <p>Running one {@link ResolverController} per group judges every submission once per group.
+ * However, what a judgement does to a team's score only depends on that team, and the order in
+ * which a team's frozen problems are revealed is the same in every group. So this judges every
+ * frozen submission exactly once, keeping the events for each reveal. Each group then only has to
+ * walk its own ranklist and reorder it as its teams' reveals are replayed.
+ *
+ * <p>If no team is in more than one of the groups, those ranklists are all
+ * {@link me.hex539.contest.mutable.RanklistMutable#getGroupView views} of one shared ranklist,
+ * since replaying one group's reveals never touches another group's teams. Otherwise, or if a
+ * group is past the first 64 that a ranklist keeps statistics for, every group gets a model of
+ * its own. The result is the same either way, only slower to build.
+ *
+ * <p>The result for each group is exactly the {@link ResolutionScript} that a
+ * {@link ResolverController} for a model filtered to that group would have produced.
+ */
+public final class MultiGroupResolver {
+
+  /** Events for revealing one frozen problem of one team, minus any rank changes. */
+  private static final class Reveal {
+    final Problem problem;
+    final List<ScoreboardEvent> events = new ArrayList<>();
+    boolean solved;
+
+    Reveal(Problem problem) {
+      this.problem = problem;
+    }
+  }
+
+  private static final GroupStream[] NO_STREAMS = new GroupStream[0];
+
+  private final ClicsContest contest;
+  private final ScoreboardModel sourceModel;
+  private final ScoreboardModelImpl model;
+  private final JudgementDispatcher dispatcher;
+
+  /** Scoreboard that every group's ranklist is a view of, or null if they each have their own. */
+  private final ScoreboardModelImpl sharedModel;
+
+  private final List<GroupStream> streams = new ArrayList<>();
+  private final Map<String, GroupStream[]> streamsForTeam = new HashMap<>();
+  private final Map<String, List<Reveal>> reveals = new HashMap<>();
+
+  /** Where events from the dispatcher are going right now. */
+  private Reveal currentReveal = null;
+
+  private MultiGroupResolver(
+      ClicsContest contest,
+      ScoreboardModel sourceModel,
+      Collection<Group> groups,
+      boolean showCompileErrors) {
+    final Set<String> groupIds = groups.stream().map(Group::getId).collect(Collectors.toSet());
+    this.contest = MissingJudgements.ensureJudgements(contest);
+    this.sourceModel = sourceModel;
+    this.model = emptyModel(groupIds);
+
+    this.dispatcher = new JudgementDispatcher(model, showCompileErrors);
+    this.dispatcher.observers.add(model);
+    this.dispatcher.observers.add(ScoreboardEvent.recorder(this::onEvent));
+
+    final boolean disjoint = model.getTeamsModel().getTeams().stream()
+        .allMatch(t -> t.getGroupIdsList().stream().filter(groupIds::contains).count() <= 1);
+    final ScoreboardModelImpl shared = disjoint ? emptyModel(groupIds) : null;
+    this.sharedModel = shared != null
+        && groups.stream().allMatch(shared.getRanklistModel()::hasGroupView)
+            ? shared
+            : null;
+  }
+
+  private ScoreboardModelImpl emptyModel(Set<String> groupIds) {
+    return ScoreboardModelImpl.newBuilder(contest, sourceModel)
+        .filterGroups(g -> groupIds.contains(g.getId()))
+        .withEmptyScoreboard()
+        .filterSubmissions(s -> false)
+        .build();
+  }
+
+  /**
+   * @param sourceModel final scoreboard covering at least every team in {@param groups}.
+   * @return a script for each group, keyed by group ID, in the same order as {@param groups}.
+   */
+  public static Map<String, ResolutionScript> compile(
+      ClicsContest contest,
+      ScoreboardModel sourceModel,
+      Collection<Group> groups,
+      boolean showCompileErrors) {
+    final MultiGroupResolver resolver =
+        new MultiGroupResolver(contest, sourceModel, groups, showCompileErrors);
+    for (Group group : groups) {
+      resolver.addGroup(group);
+    }
+    resolver.createSubmissions();
+
+    final Map<String, ResolutionScript> result = new LinkedHashMap<>();
+    for (GroupStream stream : resolver.streams) {
+      result.put(stream.groupId, stream.resolve());
+    }
+    return result;
+  }
+
+  private void addGroup(Group group) {
+    final GroupStream stream = new GroupStream(group);
+    streams.add(stream);
+    for (Team team : model.getTeamsModel().getTeams()) {
+      if (!team.getGroupIdsList().contains(group.getId())) {
+        continue;
+      }
+      final GroupStream[] old = streamsForTeam.getOrDefault(team.getId(), NO_STREAMS);
+      final GroupStream[] now = Arrays.copyOf(old, old.length + 1);
+      now[old.length] = stream;
+      streamsForTeam.put(team.getId(), now);
+    }
+  }
+
+  private void onEvent(ScoreboardEvent event) {
+    if (event instanceof ScoreboardEvent.TeamRankChanged) {
+      // Ranks are per group, so every group works them out for itself.
+      return;
+    }
+    if (currentReveal != null) {
+      currentReveal.events.add(event);
+      return;
+    }
+    for (GroupStream stream : streamsForTeam.getOrDefault(event.getTeam().getId(), NO_STREAMS)) {
+      stream.show(event);
+    }
+  }
+
+  /** The shared part of {@link ResolverController}'s setup, done once for every group. */
+  private void createSubmissions() {
+    final Judge judge = sourceModel.getJudgeModel();
+    final Duration endTime = ResolverController.getEndTime(contest);
+    final Duration freezeTime = ResolverController.getFreezeTime(contest);
+
+    final List<Submission> preFreeze =
+        judge.getSubmissionsBetween(null, freezeTime != null ? freezeTime : endTime);
+    final List<Submission> postFreeze = freezeTime != null
+        ? judge.getSubmissionsBetween(freezeTime, endTime)
+        : Collections.emptyList();
+    preFreeze.forEach(dispatcher::notifySubmission);
+    postFreeze.forEach(dispatcher::notifySubmission);
+
+    final Map<String, Judgement> judgementsForSubmissions = new HashMap<>();
+    for (Judgement j : contest.getJudgementsMap().values()) {
+      judgementsForSubmissions.put(j.getSubmissionId(), j);
+    }
+
+    for (Submission s : preFreeze) {
+      judge(s, judgementsForSubmissions);
+    }
+
+    final Map<String, SortedMap<Integer, List<Submission>>> pending = new HashMap<>();
+    for (Submission s : postFreeze) {
+      final Problem problem = model.getProblemsModel().getProblem(s.getProblemId());
+      final Optional<Team> team = model.getTeamsModel().getTeamOpt(s.getTeamId());
+      if (!team.isPresent()) {
+        continue;
+      }
+      if (model.getRanklistModel().getAttempts(team.get(), problem).getSolved()) {
+        continue;
+      }
+      pending
+          .computeIfAbsent(team.get().getId(), k -> new TreeMap<>())
+          .computeIfAbsent(problem.getOrdinal(), k -> new ArrayList<>())
+          .add(s);
+    }
+
+    for (GroupStream stream : streams) {
+      stream.script.addStep(Resolution.STARTED);
+    }
+
+    // Every team's frozen problems are always revealed in order, so the reveals can be worked
+    // out up front without knowing anything about the group they are being revealed in.
+    for (Map.Entry<String, SortedMap<Integer, List<Submission>>> e : pending.entrySet()) {
+      final List<Reveal> teamReveals = new ArrayList<>();
+      for (List<Submission> attempts : e.getValue().values()) {
+        currentReveal = new Reveal(contest.getProblemsOrThrow(attempts.get(0).getProblemId()));
+        for (Submission s : attempts) {
+          final Optional<ScoreboardProblem> result = judge(s, judgementsForSubmissions);
+          if (result.filter(ScoreboardProblem::getSolved).isPresent()) {
+            currentReveal.solved = true;
+          }
+        }
+        teamReveals.add(currentReveal);
+        currentReveal = null;
+      }
+      reveals.put(e.getKey(), teamReveals);
+    }
+  }
+
+  private Optional<ScoreboardProblem> judge(
+      Submission submission,
+      Map<String, Judgement> judgementsForSubmissions) {
+    return Optional.ofNullable(judgementsForSubmissions.get(submission.getId()))
+        .map(dispatcher::notifyJudgement);
+  }
+
+  /** The resolution as seen by one group. */
+  private final class GroupStream {
+    final String groupId;
+    final ScoreboardModelImpl model;
+    final Ranklist ranklist;
+    final ResolutionScript.Builder script = new ResolutionScript.Builder();
+
+    /** Team of the last {@link ScoreboardEvent.ProblemScoreChanged} shown, and its rank before. */
+    private Team changedTeam;
+    private int changedTeamRank;
+
+    GroupStream(Group group) {
+      this.groupId = group.getId();
+      if (sharedModel != null) {
+        this.model = sharedModel;
+        this.ranklist = sharedModel.getRanklistModel().getGroupView(group);
+      } else {
+        this.model = emptyModel(Collections.singleton(groupId));
+        this.ranklist = model.getRanklistModel();
+      }
+    }
+
+    /** Adds {@param event} to the script, along with any rank change it causes in this group. */
+    void show(ScoreboardEvent event) {
+      if (event instanceof ScoreboardEvent.ScoreChanged) {
+        final Team team = event.getTeam();
+        // The problem score may already have moved the team on a tie-break, so its rank has to be
+        // taken from before that to match what JudgementDispatcher reports.
+        final int oldRank = changedTeam != null && changedTeam.getId().equals(team.getId())
+            ? changedTeamRank
+            : (int) ranklist.getRank(team);
+        changedTeam = null;
+        event.dispatch(model);
+        script.addEvent(event);
+
+        final int newRank = (int) ranklist.getRank(team);
+        if (oldRank != newRank) {
+          script.addEvent(ScoreboardEvent.TeamRankChanged.create(team, oldRank, newRank));
+        }
+      } else {
+        if (event instanceof ScoreboardEvent.ProblemScoreChanged) {
+          changedTeam = event.getTeam();
+          changedTeamRank = (int) ranklist.getRank(changedTeam);
+          event.dispatch(model);
+        }
+        script.addEvent(event);
+      }
+    }
+
+    /** Same as {@link ResolverController}'s resolution loop, but with the reveals precomputed. */
+    ResolutionScript resolve() {
+      final Map<String, Integer> revealed = new HashMap<>();
+
+      Team currentTeam = null;
+      Team prevTeam = null;
+      for (int currentRank = ranklist.getRows().size(); currentRank > 0; prevTeam = currentTeam) {
+        currentTeam = model.getTeamsModel().getTeam(ranklist.getRow(currentRank - 1).getTeamId());
+        if (currentTeam != prevTeam) {
+          focus(currentTeam, null);
+        }
+
+        final List<Reveal> teamReveals = reveals.get(currentTeam.getId());
+        final int next = revealed.getOrDefault(currentTeam.getId(), 0);
+        if (teamReveals == null || next == teamReveals.size()) {
+          script.addEvent(ScoreboardEvent.TeamRankFinalised.create(currentTeam, currentRank));
+          script.addStep(Resolution.FINALISED_RANK);
+          currentRank--;
+          continue;
+        }
+
+        final Reveal reveal = teamReveals.get(next);
+        revealed.put(currentTeam.getId(), next + 1);
+        focus(currentTeam, reveal.problem);
+        reveal.events.forEach(this::show);
+        script.addStep(reveal.solved ? Resolution.SOLVED_PROBLEM : Resolution.FAILED_PROBLEM);
+      }
+
+      focus(null, null);
+      return script.build();
+    }
+
+    private void focus(Team team, Problem problem) {
+      script.addEvent(ScoreboardEvent.ProblemFocused.create(team, problem));
+      script.addStep(problem != null ? Resolution.FOCUSED_PROBLEM
+          : team != null ? Resolution.FOCUSED_TEAM
+          : Resolution.FINISHED);
+    }
+  }
+}
@@ -0,0 +1,300 @@
+package me.hex539.contest;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import edu.clics.proto.ClicsProto.*;
+import me.hex539.contest.ResolverController.Resolution;
+import me.hex539.contest.model.Problems;
+import me.hex539.contest.model.Teams;
+
+/**
+ * A whole scoreboard resolution, computed up front.
+ *
+ * <p>The script is a flat list of {@link ScoreboardEvent}s cut into steps. Each step is what one
+ * call to {@link ResolverController#advance()} shows: the events since the previous step,
+ * followed by the {@link Resolution} that advance() returns. Step 0 is always
+ * {@link Resolution#STARTED} and the last step is always {@link Resolution#FINISHED}.
+ *
+ * <p>Play a script back with {@link ResolverController#ResolverController(ClicsContest,
+ * ScoreboardModel, ResolutionScript)}, which can also seek around in it.
+ */
+public final class ResolutionScript {
+  private static final int MAGIC = 0x52534331; // "RSC1"
+
+  private final List<ScoreboardEvent> events;
+  private final Resolution[] resolutions;
+  private final int[] stepEnds;
+
+  private ResolutionScript(List<ScoreboardEvent> events, Resolution[] resolutions, int[] stepEnds) {
+    this.events = events;
+    this.resolutions = resolutions;
+    this.stepEnds = stepEnds;
+  }
+
+  /** Runs a resolution to completion, the same as {@link ResolverController} would live. */
+  public static ResolutionScript compile(
+      ClicsContest contest,
+      ScoreboardModel sourceModel,
+      boolean showCompileErrors) {
+    final ResolverController live = ResolverController.newBuilder(contest, sourceModel)
+        .setShowCompileErrors(showCompileErrors)
+        .computeOnCallerThread()
+        .build();
+
+    final Builder builder = new Builder();
+    try {
+      for (Object next; (next = live.takeNext()) != null;) {
+        if (next instanceof ScoreboardEvent) {
+          builder.addEvent((ScoreboardEvent) next);
+        } else {
+          builder.addStep((Resolution) next);
+        }
+      }
+    } catch (InterruptedException e) {
+      throw new IllegalStateException("Interrupted while compiling resolution", e);
+    }
+    return builder.build();
+  }
+
+  /** @return the number of steps, including the first and last ones. */
+  public int size() {
+    return resolutions.length;
+  }
+
+  public Resolution getResolution(int step) {
+    return resolutions[step];
+  }
+
+  /** @return the events to show before stopping at {@param step}. */
+  public List<ScoreboardEvent> getEvents(int step) {
+    return events.subList(step > 0 ? stepEnds[step - 1] : 0, stepEnds[step]);
+  }
+
+  /**
+   * Writes the script in a compact binary form. Teams and problems are only stored by ID, so the
+   * same contest needs to be passed to {@link #readFrom} when loading it again.
+   */
+  public void writeTo(OutputStream output) throws IOException {
+    final IdInterner teamIds = new IdInterner();
+    final IdInterner problemIds = new IdInterner();
+    for (ScoreboardEvent event : events) {
+      if (event.getTeam() != null) {
+        teamIds.intern(event.getTeam().getId());
+      }
+      if (event instanceof ScoreboardEvent.ProblemFocused) {
+        final Problem problem = ((ScoreboardEvent.ProblemFocused) event).getProblem();
+        if (problem != null) {
+          problemIds.intern(problem.getId());
+        }
+      }
+    }
+
+    final DataOutputStream out = new DataOutputStream(output);
+    out.writeInt(MAGIC);
+    writeIds(out, teamIds);
+    writeIds(out, problemIds);
+
+    out.writeInt(resolutions.length);
+    for (int i = 0; i < resolutions.length; i++) {
+      out.writeByte(resolutions[i].ordinal());
+      out.writeInt(stepEnds[i]);
+    }
+
+    out.writeInt(events.size());
+    for (ScoreboardEvent event : events) {
+      final EventType type = EventType.of(event);
+      final Team team = event.getTeam();
+      out.writeByte(type.ordinal());
+      out.writeInt(team != null ? teamIds.indexOf(team.getId()) : -1);
+
+      switch (type) {
+        case PROBLEM_SUBMITTED:
+          ((ScoreboardEvent.ProblemSubmitted) event).getSubmission().writeDelimitedTo(out);
+          break;
+        case SUBMISSION_JUDGED:
+          ((ScoreboardEvent.SubmissionJudged) event).getJudgement().writeDelimitedTo(out);
+          break;
+        case PROBLEM_SCORE_CHANGED:
+          ((ScoreboardEvent.ProblemScoreChanged) event).getProblem().writeDelimitedTo(out);
+          break;
+        case SCORE_CHANGED:
+          ((ScoreboardEvent.ScoreChanged) event).getScore().writeDelimitedTo(out);
+          break;
+        case TEAM_RANK_CHANGED:
+          out.writeInt(((ScoreboardEvent.TeamRankChanged) event).getOldRank());
+          out.writeInt(((ScoreboardEvent.TeamRankChanged) event).getNewRank());
+          break;
+        case TEAM_SCORE_CHANGED: {
+          final ScoreboardEvent.TeamScoreChanged e = (ScoreboardEvent.TeamScoreChanged) event;
+          out.writeInt(e.getProblems().size());
+          for (ScoreboardProblem problem : e.getProblems()) {
+            problem.writeDelimitedTo(out);
+          }
+          e.getScore().writeDelimitedTo(out);
+          break;
+        }
+        case PROBLEM_FOCUSED: {
+          final Problem problem = ((ScoreboardEvent.ProblemFocused) event).getProblem();
+          out.writeInt(problem != null ? problemIds.indexOf(problem.getId()) : -1);
+          break;
+        }
+        case TEAM_RANK_FINALISED:
+          out.writeInt(((ScoreboardEvent.TeamRankFinalised) event).getRank());
+          break;
+        case TEAM_RANK_UNFINALISED:
+          out.writeInt(((ScoreboardEvent.TeamRankUnfinalised) event).getRank());
+          break;
+      }
+    }
+    out.flush();
+  }
+
+  /** Loads a script saved by {@link #writeTo}, looking up its teams and problems by ID. */
+  public static ResolutionScript readFrom(
+      InputStream input,
+      Teams teamsModel,
+      Problems problemsModel) throws IOException {
+    final DataInputStream in = new DataInputStream(input);
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Not a resolution script");
+    }
+
+    final Team[] teams = new Team[in.readInt()];
+    for (int i = 0; i < teams.length; i++) {
+      teams[i] = teamsModel.getTeam(in.readUTF());
+    }
+    final Problem[] problems = new Problem[in.readInt()];
+    for (int i = 0; i < problems.length; i++) {
+      problems[i] = problemsModel.getProblem(in.readUTF());
+    }
+
+    final Resolution[] resolutions = new Resolution[in.readInt()];
+    final int[] stepEnds = new int[resolutions.length];
+    for (int i = 0; i < resolutions.length; i++) {
+      resolutions[i] = Resolution.values()[in.readUnsignedByte()];
+      stepEnds[i] = in.readInt();
+    }
+
+    final int eventCount = in.readInt();
+    final List<ScoreboardEvent> events = new ArrayList<>(eventCount);
+    for (int i = 0; i < eventCount; i++) {
+      final EventType type = EventType.values()[in.readUnsignedByte()];
+      final int teamIndex = in.readInt();
+      final Team team = teamIndex != -1 ? teams[teamIndex] : null;
+
+      switch (type) {
+        case PROBLEM_SUBMITTED:
+          events.add(ScoreboardEvent.ProblemSubmitted.create(
+              team, Submission.parseDelimitedFrom(in)));
+          break;
+        case SUBMISSION_JUDGED:
+          events.add(ScoreboardEvent.SubmissionJudged.create(
+              team, Judgement.parseDelimitedFrom(in)));
+          break;
+        case PROBLEM_SCORE_CHANGED:
+          events.add(ScoreboardEvent.ProblemScoreChanged.create(
+              team, ScoreboardProblem.parseDelimitedFrom(in)));
+          break;
+        case SCORE_CHANGED:
+          events.add(ScoreboardEvent.ScoreChanged.create(
+              team, ScoreboardScore.parseDelimitedFrom(in)));
+          break;
+        case TEAM_RANK_CHANGED:
+          events.add(ScoreboardEvent.TeamRankChanged.create(team, in.readInt(), in.readInt()));
+          break;
+        case TEAM_SCORE_CHANGED: {
+          final ScoreboardProblem[] changed = new ScoreboardProblem[in.readInt()];
+          for (int j = 0; j < changed.length; j++) {
+            changed[j] = ScoreboardProblem.parseDelimitedFrom(in);
+          }
+          events.add(ScoreboardEvent.TeamScoreChanged.create(
+              team, Arrays.asList(changed), ScoreboardScore.parseDelimitedFrom(in)));
+          break;
+        }
+        case PROBLEM_FOCUSED: {
+          final int problemIndex = in.readInt();
+          events.add(ScoreboardEvent.ProblemFocused.create(
+              team, problemIndex != -1 ? problems[problemIndex] : null));
+          break;
+        }
+        case TEAM_RANK_FINALISED:
+          events.add(ScoreboardEvent.TeamRankFinalised.create(team, in.readInt()));
+          break;
+        case TEAM_RANK_UNFINALISED:
+          events.add(ScoreboardEvent.TeamRankUnfinalised.create(team, in.readInt()));
+          break;
+      }
+    }
+    return new ResolutionScript(Collections.unmodifiableList(events), resolutions, stepEnds);
+  }
+
+  private static void writeIds(DataOutputStream out, IdInterner ids) throws IOException {
+    out.writeInt(ids.size());
+    for (int i = 0; i < ids.size(); i++) {
+      out.writeUTF(ids.get(i));
+    }
+  }
+
+  /** Tags for the serialised form. Append only. */
+  private enum EventType {
+    PROBLEM_SUBMITTED(ScoreboardEvent.ProblemSubmitted.class),
+    SUBMISSION_JUDGED(ScoreboardEvent.SubmissionJudged.class),
+    PROBLEM_SCORE_CHANGED(ScoreboardEvent.ProblemScoreChanged.class),
+    SCORE_CHANGED(ScoreboardEvent.ScoreChanged.class),
+    TEAM_RANK_CHANGED(ScoreboardEvent.TeamRankChanged.class),
+    TEAM_SCORE_CHANGED(ScoreboardEvent.TeamScoreChanged.class),
+    PROBLEM_FOCUSED(ScoreboardEvent.ProblemFocused.class),
+    TEAM_RANK_FINALISED(ScoreboardEvent.TeamRankFinalised.class),
+    TEAM_RANK_UNFINALISED(ScoreboardEvent.TeamRankUnfinalised.class);
+
+    private final Class<? extends ScoreboardEvent> type;
+
+    EventType(Class<? extends ScoreboardEvent> type) {
+      this.type = type;
+    }
+
+    static EventType of(ScoreboardEvent event) {
+      for (EventType t : values()) {
+        if (t.type.isInstance(event)) {
+          return t;
+        }
+      }
+      throw new IllegalArgumentException("Unknown event " + event);
+    }
+  }
+
+  static class Builder {
+    private final List<ScoreboardEvent> events = new ArrayList<>();
+    private final List<Resolution> resolutions = new ArrayList<>();
+    private int[] stepEnds = new int[16];
+
+    Builder addEvent(ScoreboardEvent event) {
+      events.add(event);
+      return this;
+    }
+
+    Builder addStep(Resolution resolution) {
+      if (resolutions.size() == stepEnds.length) {
+        stepEnds = Arrays.copyOf(stepEnds, stepEnds.length * 2);
+      }
+      stepEnds[resolutions.size()] = events.size();
+      resolutions.add(resolution);
+      return this;
+    }
+
+    ResolutionScript build() {
+      return new ResolutionScript(
+          Collections.unmodifiableList(new ArrayList<>(events)),
+          resolutions.toArray(new Resolution[0]),
+          Arrays.copyOf(stepEnds, resolutions.size()));
+    }
+  }
+}
@@ -1,13 +1,9 @@
 package me.hex539.contest;
 
-import com.google.auto.value.AutoValue;
-import com.google.common.base.Preconditions;
 import com.google.protobuf.Duration;
-import com.google.protobuf.Timestamp;
 import com.google.protobuf.util.Durations;
-import com.google.protobuf.util.Timestamps;
-import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -16,19 +12,27 @@ import java.util.HashSet;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.function.Consumer;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 import edu.clics.proto.ClicsProto.*;
+import me.hex539.contest.model.Judge;
 import me.hex539.contest.model.Problems;
 import me.hex539.contest.model.Ranklist;
 import me.hex539.contest.model.Teams;
+import me.hex539.contest.mutable.RanklistMutable;
+import me.hex539.contest.mutable.TeamsMutable;
 
-public class ResolverController {
+public class ResolverController implements AutoCloseable {
 
   /** Number of events we'll try to stay ahead by. Zero or negative means no limit. */
   private static final int DEFAULT_BUFFER_AHEAD = 256;
 
+  /** Most users advance at human speed, so the resolution thread should not hog a core. */
+  private static final SpscRingBuffer.WaitStrategy DEFAULT_WAIT_STRATEGY =
+      SpscRingBuffer.WaitStrategy.PARK;
+
   /**
    * Something that shows the scoreboard resolution.
    *
@@ -45,12 +49,13 @@ public class ResolverController {
   public interface Observer extends ScoreboardModel.Observer {
     default void onProblemFocused(Team team, Problem problem) {}
     default void onTeamRankFinalised(Team team, int rank) {}
+
+    /** Undoes {@link #onTeamRankFinalised} after seeking back through a {@link ResolutionScript}. */
+    default void onTeamRankUnfinalised(Team team, int rank) {}
   }
 
-  private final ScoreboardModel.Observer proxyObserver = ObserverCapturer.captivate(
-      new ScoreboardModel.Observer() {},
-      ScoreboardModel.Observer.class,
-      this::addScoreboardEvent);
+  private final ScoreboardModel.Observer eventRecorder =
+      ScoreboardEvent.recorder(this::addEvent);
 
   public enum Resolution {
     FAILED_PROBLEM,
@@ -64,48 +69,26 @@ public class ResolverController {
   }
 
   /**
-   * Another cheap reimplementation of Either to handle messages. Good candidate for replacement
-   * by protobuf+grpc later on to support working as a client/server for other scoreboard replay
-   * tools in future.
+   * Messages passed from the resolution thread to the client are either a {@link ScoreboardEvent}
+   * to show, or a {@link Resolution} step to stop at. Both go into the same buffer as they are so
+   * that nothing needs to be wrapped per message.
    */
-  @AutoValue
-  abstract static class Advancer {
-    @Nullable public abstract Consumer<Observer> focus();
-    @Nullable public abstract Consumer<ScoreboardModel.Observer> scoreboard();
-    @Nullable public abstract Resolution resolution();
-
-    public static Advancer focus(Consumer<Observer> focus) {
-      return new AutoValue_ResolverController_Advancer(
-          /* focus= */ Preconditions.checkNotNull(focus),
-          /* scoreboard= */ null,
-          /* resolution= */ null);
-    }
-
-    public static Advancer scoreboard(Consumer<ScoreboardModel.Observer> scoreboard) {
-      return new AutoValue_ResolverController_Advancer(
-          /* focus= */ null,
-          /* scoreboard= */ Preconditions.checkNotNull(scoreboard),
-          /* resolution= */ null);
-    }
-
-    public static Advancer resolution(Resolution resolution) {
-      return new AutoValue_ResolverController_Advancer(
-          /* focus= */ null,
-          /* scoreboard= */ null,
-          /* resolution= */ Preconditions.checkNotNull(resolution));
-    }
-  }
-
-  private void addFocusEvent(Consumer<Observer> focus) {
-    try {pendingActions.put(Advancer.focus(focus));} catch (InterruptedException e) {}
+  private void addEvent(ScoreboardEvent event) {
+    put(event);
   }
 
-  private void addScoreboardEvent(Consumer<ScoreboardModel.Observer> scoreboard) {
-    try {pendingActions.put(Advancer.scoreboard(scoreboard));} catch (InterruptedException e) {}
+  private void addResolution(Resolution resolution) {
+    put(resolution);
   }
 
-  private void addResolution(Resolution resolution) {
-    try {pendingActions.put(Advancer.resolution(resolution));} catch (InterruptedException e) {}
+  private void put(Object action) {
+    try {
+      pendingActions.put(action);
+    } catch (InterruptedException e) {
+      // The resolution can't go on with a gap in it, so stop it altogether.
+      Thread.currentThread().interrupt();
+      close();
+    }
   }
 
   private final ClicsContest contest;
@@ -114,12 +97,22 @@ public class ResolverController {
   private final Ranklist ranklist;
   private final Teams teams;
   private final JudgementDispatcher dispatcher;
-  private final Thread resolutionThread;
+  private final boolean computeOnDemand;
+  private volatile boolean closed = false;
+
+  /** Set if computing the resolution in the background threw, before it closes the buffer. */
+  private volatile RuntimeException failure = null;
+
+  /** Where the resolution is up to. Only touched by whichever thread computes it. */
+  private ScoreboardModel sourceModel;
+  private int currentRank = -1;
+  private Team currentTeam = null;
+  private boolean resolved = false;
 
   private final Map<String, SortedMap<Integer, List<Submission>>> teamSubmissions = new HashMap<>();
   private final Map<String, Judgement> judgementsForSubmissions = new HashMap<>();
 
-  private final LinkedBlockingQueue<Advancer> pendingActions;
+  private final SpscRingBuffer<Object> pendingActions;
   private final Client client;
 
   public ResolverController(ClicsContest contest) {
@@ -142,31 +135,196 @@ public class ResolverController {
       ScoreboardModel sourceModel,
       boolean showCompileErrors,
       int bufferAhead) {
-    this.contest = MissingJudgements.ensureJudgements(contest);
-    this.model =
-      ScoreboardModelImpl.newBuilder(contest, sourceModel)
-        .withEmptyScoreboard()
-        .filterSubmissions(s -> false)
-        .build();
+    this(contest, sourceModel, showCompileErrors, bufferAhead, DEFAULT_WAIT_STRATEGY);
+  }
+
+  /**
+   * @param bufferAhead number of events the resolution thread may run ahead of {@link #advance}.
+   *                    Zero or negative means no limit.
+   * @param waitStrategy how both threads wait for each other when the buffer is full or empty.
+   */
+  public ResolverController(
+      ClicsContest contest,
+      ScoreboardModel sourceModel,
+      boolean showCompileErrors,
+      int bufferAhead,
+      SpscRingBuffer.WaitStrategy waitStrategy) {
+    this(newBuilder(contest, sourceModel)
+        .setShowCompileErrors(showCompileErrors)
+        .setBufferAhead(bufferAhead)
+        .setWaitStrategy(waitStrategy));
+  }
+
+  private ResolverController(Builder builder) {
+    this.contest = MissingJudgements.ensureJudgements(builder.contest);
+    this.model = emptyModel(builder.contest, builder.sourceModel);
 
     this.problems = this.model.getProblemsModel();
     this.teams = this.model.getTeamsModel();
     this.ranklist = this.model.getRanklistModel();
 
-    this.dispatcher = new JudgementDispatcher(model, showCompileErrors);
+    this.dispatcher = new JudgementDispatcher(model, builder.showCompileErrors);
     this.dispatcher.observers.add(this.model);
-    this.dispatcher.observers.add(this.proxyObserver);
+    this.dispatcher.observers.add(this.eventRecorder);
+
+    this.sourceModel = builder.sourceModel;
+    this.client = new LiveClient(this::takeNext);
+
+    if (builder.onCallerThread) {
+      this.pendingActions = new SpscRingBuffer<>(0, builder.waitStrategy);
+      this.computeOnDemand = true;
+    } else {
+      this.pendingActions = new SpscRingBuffer<>(builder.bufferAhead, builder.waitStrategy);
+      this.computeOnDemand = false;
+      builder.getExecutor().execute(() -> {
+        try {
+          while (!closed && computeNext()) {}
+        } catch (CancellationException e) {
+          // Closed while waiting for room in the buffer.
+        } catch (RuntimeException e) {
+          failure = e;
+        } finally {
+          // Lets the client take whatever is left and then finish, rather than wait forever.
+          pendingActions.close();
+        }
+      });
+    }
+  }
 
-    this.pendingActions = bufferAhead > 0
-        ? new LinkedBlockingQueue<>(bufferAhead)
-        : new LinkedBlockingQueue<>();
+  public static Builder newBuilder(ClicsContest contest, ScoreboardModel sourceModel) {
+    return new Builder(contest, sourceModel);
+  }
 
-    this.client = new Client(pendingActions);
-    this.resolutionThread = new Thread(() -> {
-      createSubmissions(sourceModel);
-      resolveContest();
-    });
-    this.resolutionThread.start();
+  public static final class Builder {
+    private final ClicsContest contest;
+    private final ScoreboardModel sourceModel;
+
+    private boolean showCompileErrors = true;
+    private int bufferAhead = DEFAULT_BUFFER_AHEAD;
+    private SpscRingBuffer.WaitStrategy waitStrategy = DEFAULT_WAIT_STRATEGY;
+    private Executor executor = null;
+    private boolean onCallerThread = false;
+
+    private Builder(ClicsContest contest, ScoreboardModel sourceModel) {
+      this.contest = contest;
+      this.sourceModel = sourceModel;
+    }
+
+    public Builder setShowCompileErrors(boolean showCompileErrors) {
+      this.showCompileErrors = showCompileErrors;
+      return this;
+    }
+
+    /** Number of events the resolution may run ahead of {@link #advance}. Zero means no limit. */
+    public Builder setBufferAhead(int bufferAhead) {
+      this.bufferAhead = bufferAhead;
+      return this;
+    }
+
+    public Builder setWaitStrategy(SpscRingBuffer.WaitStrategy waitStrategy) {
+      this.waitStrategy = waitStrategy;
+      return this;
+    }
+
+    /**
+     * Runs the resolution as one task on {@param executor} instead of on a dedicated thread. The
+     * task only waits by parking or yielding, so a virtual thread per task executor works well.
+     */
+    public Builder setExecutor(Executor executor) {
+      this.executor = executor;
+      this.onCallerThread = false;
+      return this;
+    }
+
+    /**
+     * Computes the resolution lazily on whichever thread calls {@link #advance}, one step at a
+     * time, without any background thread at all.
+     */
+    public Builder computeOnCallerThread() {
+      this.onCallerThread = true;
+      return this;
+    }
+
+    public ResolverController build() {
+      return new ResolverController(this);
+    }
+
+    private Executor getExecutor() {
+      if (executor != null) {
+        return executor;
+      }
+      return task -> {
+        final Thread thread = new Thread(task, "ResolverController");
+        thread.setDaemon(true);
+        thread.start();
+      };
+    }
+  }
+
+  /**
+   * Plays back a precompiled resolution instead of computing one live. This also enables
+   * {@link #seek}, {@link #seekToRank} and {@link #back}.
+   */
+  public ResolverController(
+      ClicsContest contest,
+      ScoreboardModel sourceModel,
+      ResolutionScript script) {
+    this.contest = contest;
+    this.model = emptyModel(contest, sourceModel);
+
+    this.problems = this.model.getProblemsModel();
+    this.teams = this.model.getTeamsModel();
+    this.ranklist = this.model.getRanklistModel();
+
+    this.dispatcher = null;
+    this.pendingActions = null;
+    this.sourceModel = null;
+    this.computeOnDemand = false;
+    this.client = new ScriptClient(script, model, () -> emptyModel(contest, sourceModel));
+  }
+
+  private static ScoreboardModelImpl emptyModel(ClicsContest contest, ScoreboardModel sourceModel) {
+    return ScoreboardModelImpl.newBuilder(contest, sourceModel)
+        .withEmptyScoreboard()
+        .filterSubmissions(s -> false)
+        .build();
+  }
+
+  /**
+   * @return the next event or {@link Resolution} of a live resolution, or null once it has been
+   *         closed.
+   * @throws RuntimeException whatever computing the resolution in the background threw.
+   */
+  Object takeNext() throws InterruptedException {
+    if (closed) {
+      return null;
+    }
+    if (computeOnDemand) {
+      Object next;
+      while ((next = pendingActions.poll()) == null) {
+        if (closed || !computeNext()) {
+          return null;
+        }
+      }
+      return next;
+    }
+    final Object next = pendingActions.take();
+    if (next == null && failure != null) {
+      throw failure;
+    }
+    return next;
+  }
+
+  /**
+   * Stops computing the resolution. Anything still waiting in the buffer is dropped and
+   * {@link #advance} returns {@link Resolution#FINISHED} from now on.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    if (pendingActions != null) {
+      pendingActions.close();
+    }
   }
 
   public ResolverController addObserver(ScoreboardModel.Observer observer) {
@@ -193,49 +351,380 @@ public class ResolverController {
     }
   }
 
-  private static class Client {
-    private final LinkedBlockingQueue<Advancer> pendingActions;
-    private Resolution lastResolution = null;
+  /**
+   * Jumps straight to {@param step} of a {@link ResolutionScript}, as if {@link #advance} had been
+   * called until it returned that step. Observers are sent whatever events bring them from the
+   * current step to the new one.
+   *
+   * @return the resolution at the new step.
+   */
+  public Resolution seek(int step) {
+    return client.seek(step);
+  }
+
+  /** Seeks to just before the team at {@param rank} is resolved. */
+  public Resolution seekToRank(int rank) {
+    return client.seekToRank(rank);
+  }
+
+  /** Seeks one step backwards. */
+  public Resolution back() {
+    return client.seek(Math.max(client.getStep() - 1, 0));
+  }
+
+  /** @return the number of steps shown so far, minus one. */
+  public int getStep() {
+    return client.getStep();
+  }
+
+  private abstract static class Client {
+    protected Resolution lastResolution = null;
 
     public final Set<ScoreboardModel.Observer> observers = new HashSet<>();
 
-    public Client(LinkedBlockingQueue<Advancer> pendingActions) {
+    public boolean finished() {
+      return lastResolution == Resolution.FINISHED;
+    }
+
+    public abstract Resolution advance();
+    public abstract int getStep();
+
+    public Resolution seek(int step) {
+      throw new UnsupportedOperationException("Seeking needs a ResolutionScript");
+    }
+
+    public Resolution seekToRank(int rank) {
+      throw new UnsupportedOperationException("Seeking needs a ResolutionScript");
+    }
+  }
+
+  private interface ActionSource {
+    /** @return the next event or {@link Resolution}, or null if there will be no more. */
+    Object next() throws InterruptedException;
+  }
+
+  private static class LiveClient extends Client {
+    private final ActionSource pendingActions;
+    private int step = -1;
+
+    public LiveClient(ActionSource pendingActions) {
       this.pendingActions = pendingActions;
     }
 
-    public boolean finished() {
-      return lastResolution == Resolution.FINISHED;
+    @Override
+    public int getStep() {
+      return step;
     }
 
+    @Override
     public Resolution advance() {
       if (finished()) {
         return Resolution.FINISHED;
       }
       try {
-        for (Advancer next; (next = pendingActions.take()) != null;) {
-          if (next.focus() != null) {
+        for (Object next; (next = pendingActions.next()) != null;) {
+          if (next instanceof ScoreboardEvent) {
             for (ScoreboardModel.Observer observer : observers) {
-              if (observer instanceof Observer) {
-                next.focus().accept((Observer) observer);
-              }
+              ((ScoreboardEvent) next).dispatch(observer);
             }
-          } else if (next.scoreboard() != null) {
-            observers.forEach(next.scoreboard());
           } else {
-            return (lastResolution = next.resolution());
+            step++;
+            return (lastResolution = (Resolution) next);
           }
         }
       } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
       }
       return (lastResolution = Resolution.FINISHED);
     }
   }
 
-  private void resolveContest() {
-    Team currentTeam = null;
-    Team prevTeam = null;
+  /**
+   * Plays back a {@link ResolutionScript}.
+   *
+   * <p>The state the observers have been shown is mirrored in a model of our own. Every
+   * {@link #CHECKPOINT_INTERVAL} steps the script's scoreboard is saved, so that seeking anywhere
+   * only takes a diff against the nearest checkpoint plus at most that many steps of replay. The
+   * diff only looks at the teams that the steps in between touched.
+   */
+  private static class ScriptClient extends Client {
+    private static final int CHECKPOINT_INTERVAL = 16;
+
+    /** Scoreboard as of one step, in rank order and by team index in the shown model. */
+    private static final class Checkpoint {
+      final ScoreboardRow[] rows;
+      final int[] positions;
+
+      Checkpoint(List<ScoreboardRow> rows, TeamsMutable teams, int teamIndices) {
+        this.rows = rows.toArray(new ScoreboardRow[0]);
+        this.positions = new int[teamIndices];
+        for (int i = 0; i < this.rows.length; i++) {
+          positions[teams.getTeamIndex(this.rows[i].getTeamId())] = i;
+        }
+      }
+    }
+
+    private final ResolutionScript script;
+    private final ScoreboardModelImpl shown;
+    private final TeamsMutable teams;
+
+    /** One past the highest team index in {@link #teams}, for sizing arrays indexed by team. */
+    private final int teamIndices;
+
+    private final List<Checkpoint> checkpoints = new ArrayList<>();
+
+    /** Scratch space for {@link #restore}, by team index, so that it needn't clear it each time. */
+    private final int[] positionsBefore;
+    private final boolean[] touched;
+    private final Team[] focusedTeams;
+    private final Problem[] focusedProblems;
+
+    /** Lowest rank finalised as of each step, or one past the last rank if there are none yet. */
+    private final int[] finalisedRanks;
+    private final Team[] finalisedTeams;
+
+    private int step = -1;
+
+    public ScriptClient(
+        ResolutionScript script,
+        ScoreboardModelImpl shown,
+        Supplier<ScoreboardModelImpl> emptyModel) {
+      this.script = script;
+      this.shown = shown;
+      this.teams = shown.getTeamsModel();
+
+      final int steps = script.size();
+      final int rows = shown.getRanklistModel().getRows().size();
+      int teamIndices = 0;
+      for (Team team : teams.getTeams()) {
+        teamIndices = Math.max(teamIndices, teams.getTeamIndex(team.getId()) + 1);
+      }
+      this.teamIndices = teamIndices;
+      this.positionsBefore = new int[teamIndices];
+      this.touched = new boolean[teamIndices];
+      this.focusedTeams = new Team[steps];
+      this.focusedProblems = new Problem[steps];
+      this.finalisedRanks = new int[steps];
+      this.finalisedTeams = new Team[rows + 2];
+
+      final ScoreboardModelImpl scratch = emptyModel.get();
+      Team focusedTeam = null;
+      Problem focusedProblem = null;
+      int finalisedRank = rows + 1;
+      for (int i = 0; i < steps; i++) {
+        for (ScoreboardEvent event : script.getEvents(i)) {
+          event.dispatch(scratch);
+          if (event instanceof ScoreboardEvent.ProblemFocused) {
+            focusedTeam = ((ScoreboardEvent.ProblemFocused) event).getTeam();
+            focusedProblem = ((ScoreboardEvent.ProblemFocused) event).getProblem();
+          } else if (event instanceof ScoreboardEvent.TeamRankFinalised) {
+            finalisedRank = ((ScoreboardEvent.TeamRankFinalised) event).getRank();
+            finalisedTeams[finalisedRank] = ((ScoreboardEvent.TeamRankFinalised) event).getTeam();
+          }
+        }
+        focusedTeams[i] = focusedTeam;
+        focusedProblems[i] = focusedProblem;
+        finalisedRanks[i] = finalisedRank;
+        if (i % CHECKPOINT_INTERVAL == 0) {
+          checkpoints.add(
+              new Checkpoint(scratch.getRanklistModel().getRows(), teams, teamIndices));
+        }
+      }
+    }
+
+    @Override
+    public int getStep() {
+      return step;
+    }
+
+    @Override
+    public Resolution advance() {
+      if (step + 1 >= script.size()) {
+        return (lastResolution = Resolution.FINISHED);
+      }
+      return seek(step + 1);
+    }
+
+    @Override
+    public Resolution seek(int target) {
+      if (target < 0 || target >= script.size()) {
+        throw new IndexOutOfBoundsException("No step " + target + " in resolution");
+      }
+      if (step < 0) {
+        // Show the whole lead-up once so that observers see the original submissions.
+        replay(0);
+      }
+      if (target < step || target - step > CHECKPOINT_INTERVAL) {
+        restore(target / CHECKPOINT_INTERVAL * CHECKPOINT_INTERVAL);
+      }
+      replay(target);
+      return (lastResolution = script.getResolution(step));
+    }
+
+    @Override
+    public Resolution seekToRank(int rank) {
+      // Finalised ranks only ever go down, so find the first step that gets far enough.
+      int lo = 0;
+      int hi = script.size() - 1;
+      while (lo < hi) {
+        final int mid = (lo + hi) >>> 1;
+        if (finalisedRanks[mid] <= rank + 1) {
+          hi = mid;
+        } else {
+          lo = mid + 1;
+        }
+      }
+      return seek(lo);
+    }
+
+    /** Shows every step after the current one up to and including {@param target}. */
+    private void replay(int target) {
+      for (; step < target; step++) {
+        for (ScoreboardEvent event : script.getEvents(step + 1)) {
+          emit(event);
+        }
+      }
+    }
+
+    /**
+     * Brings observers from the current step straight to {@param checkpoint}.
+     *
+     * <p>Only teams that some step between the two touched can differ, and every other team
+     * keeps both its row and its place relative to the other untouched teams. So this diffs the
+     * touched teams' rows, and reorders only the window of ranks that those teams move within.
+     */
+    private void restore(int checkpoint) {
+      final RanklistMutable ranklist = shown.getRanklistModel();
+      final Checkpoint target = checkpoints.get(checkpoint / CHECKPOINT_INTERVAL);
+
+      final List<Team> changed =
+          touchedBetween(Math.min(step, checkpoint), Math.max(step, checkpoint));
+      if (changed.isEmpty()) {
+        finishRestore(checkpoint);
+        return;
+      }
+
+      int lo = Integer.MAX_VALUE;
+      int hi = Integer.MIN_VALUE;
+      for (Team team : changed) {
+        final int from = (int) ranklist.getRank(team) - 1;
+        final int to = target.positions[teams.getTeamIndex(team.getId())];
+        lo = Math.min(lo, Math.min(from, to));
+        hi = Math.max(hi, Math.max(from, to));
+      }
+
+      // Where each team in the window is now, before any of the changes below reorder it.
+      final int width = hi - lo + 1;
+      for (int i = 0; i < width; i++) {
+        positionsBefore[teams.getTeamIndex(ranklist.getRow(lo + i).getTeamId())] = i;
+      }
+
+      for (Team team : changed) {
+        final ScoreboardRow row = target.rows[target.positions[teams.getTeamIndex(team.getId())]];
+        final ScoreboardRow current = ranklist.getRow(team);
+        for (int i = 0; i < row.getProblemsCount(); i++) {
+          if (!row.getProblems(i).equals(current.getProblems(i))) {
+            emit(ScoreboardEvent.ProblemScoreChanged.create(team, row.getProblems(i)));
+          }
+        }
+        if (!row.getScore().equals(current.getScore())) {
+          emit(ScoreboardEvent.ScoreChanged.create(team, row.getScore()));
+        }
+      }
+
+      // Move teams one at a time, top first, so that each move is valid on its own. A team that
+      // is not in place yet sits below every team already placed, after however many of the
+      // others were above it to begin with, which a Fenwick tree over the old positions counts.
+      final int[] unplaced = new int[width + 1];
+      for (int i = 1; i <= width; i++) {
+        unplaced[i] += 1;
+        if (i + (i & -i) <= width) {
+          unplaced[i + (i & -i)] += unplaced[i];
+        }
+      }
+      for (int i = 0; i < width; i++) {
+        final String teamId = target.rows[lo + i].getTeamId();
+        final int before = positionsBefore[teams.getTeamIndex(teamId)];
+        int from = i;
+        for (int k = before; k > 0; k -= k & -k) {
+          from += unplaced[k];
+        }
+        for (int k = before + 1; k <= width; k += k & -k) {
+          unplaced[k]--;
+        }
+        if (from != i) {
+          emit(ScoreboardEvent.TeamRankChanged.create(
+              teams.getTeam(teamId), lo + from + 1, lo + i + 1));
+        }
+      }
+
+      finishRestore(checkpoint);
+    }
+
+    /** @return every team whose row any step in ({@param from}, {@param to}] changed. */
+    private List<Team> touchedBetween(int from, int to) {
+      final List<Team> res = new ArrayList<>();
+      for (int i = from + 1; i <= to; i++) {
+        for (ScoreboardEvent event : script.getEvents(i)) {
+          if (event instanceof ScoreboardEvent.ProblemScoreChanged
+              || event instanceof ScoreboardEvent.ScoreChanged
+              || event instanceof ScoreboardEvent.TeamScoreChanged) {
+            final String teamId = event.getTeam().getId();
+            final int index = teams.getTeamIndex(teamId);
+            if (!touched[index]) {
+              touched[index] = true;
+              res.add(teams.getTeam(teamId));
+            }
+          }
+        }
+      }
+      for (Team team : res) {
+        touched[teams.getTeamIndex(team.getId())] = false;
+      }
+      return res;
+    }
+
+    /** Puts finalised ranks and focus back the way they were at {@param checkpoint}. */
+    private void finishRestore(int checkpoint) {
+      final int finalisedNow = finalisedRanks[step];
+      final int finalisedThen = finalisedRanks[checkpoint];
+      for (int rank = finalisedNow; rank < finalisedThen; rank++) {
+        emit(ScoreboardEvent.TeamRankUnfinalised.create(finalisedTeams[rank], rank));
+      }
+      for (int rank = finalisedNow - 1; rank >= finalisedThen; rank--) {
+        emit(ScoreboardEvent.TeamRankFinalised.create(finalisedTeams[rank], rank));
+      }
+
+      emit(ScoreboardEvent.ProblemFocused.create(
+          focusedTeams[checkpoint],
+          focusedProblems[checkpoint]));
+      step = checkpoint;
+    }
+
+    private void emit(ScoreboardEvent event) {
+      event.dispatch(shown);
+      for (ScoreboardModel.Observer observer : observers) {
+        event.dispatch(observer);
+      }
+    }
+  }
+
+  /**
+   * Works out a little more of the resolution: the setup, then one team or problem at a time,
+   * then the end.
+   *
+   * @return false once there is nothing left to compute.
+   */
+  private boolean computeNext() {
+    if (sourceModel != null) {
+      createSubmissions(sourceModel);
+      sourceModel = null;
+      currentRank = model.getRanklistModel().getRows().size();
+      return true;
+    }
 
-    for (int currentRank = model.getRanklistModel().getRows().size(); currentRank > 0; prevTeam = currentTeam) {
+    if (currentRank > 0) {
+      final Team prevTeam = currentTeam;
       currentTeam = getTeamAt(currentRank);
       if (currentTeam != prevTeam) {
         moveToProblem(currentTeam, null);
@@ -244,9 +733,15 @@ public class ResolverController {
         finaliseRank(currentTeam, currentRank);
         currentRank--;
       }
+      return true;
     }
 
-    moveToProblem(null, null);
+    if (!resolved) {
+      moveToProblem(null, null);
+      resolved = true;
+      return true;
+    }
+    return false;
   }
 
   private Team getTeamAt(int rank) {
@@ -254,27 +749,17 @@ public class ResolverController {
   }
 
   private void createSubmissions(ScoreboardModel sourceModel) {
-    final Timestamp endTime = contest.getContest().hasContestDuration()
-        ? Timestamps.add(Timestamp.getDefaultInstance(), contest.getContest().getContestDuration())
-        : null;
-
-    final Timestamp freezeTime = contest.getContest().hasScoreboardFreezeDuration()
-        ? Timestamps.subtract(endTime, contest.getContest().getScoreboardFreezeDuration())
-        : null;
-
-    final List<Submission> postFreeze = new ArrayList<>();
-    final List<Submission> preFreeze = new ArrayList<>();
-
-    for (Submission submission : sourceModel.getJudgeModel().getSubmissions()) {
-      if (isBefore(submission, endTime)) {
-        dispatcher.notifySubmission(submission);
-        if (isBefore(submission, freezeTime)) {
-          preFreeze.add(submission);
-        } else {
-          postFreeze.add(submission);
-        }
-      }
-    }
+    final Judge judge = sourceModel.getJudgeModel();
+    final Duration endTime = getEndTime(contest);
+    final Duration freezeTime = getFreezeTime(contest);
+
+    final List<Submission> preFreeze =
+        judge.getSubmissionsBetween(null, freezeTime != null ? freezeTime : endTime);
+    final List<Submission> postFreeze = freezeTime != null
+        ? judge.getSubmissionsBetween(freezeTime, endTime)
+        : Collections.emptyList();
+    preFreeze.forEach(dispatcher::notifySubmission);
+    postFreeze.forEach(dispatcher::notifySubmission);
 
     for (Judgement j : contest.getJudgementsMap().values()) {
       judgementsForSubmissions.put(j.getSubmissionId(), j);
@@ -285,16 +770,20 @@ public class ResolverController {
     addResolution(Resolution.STARTED);
   }
 
-  private static boolean isBefore(Submission submission, Timestamp endTime) {
-    if (endTime == null) {
-      return true;
-    }
-    final Duration afterEnd = Timestamps.between(
-        endTime,
-        Timestamps.add(
-            Timestamp.getDefaultInstance(),
-            submission.getContestTime()));
-    return Durations.toNanos(afterEnd) < 0;
+  /** @return contest time at which the contest ends, or null if it never does. */
+  static Duration getEndTime(ClicsContest contest) {
+    return contest.getContest().hasContestDuration()
+        ? contest.getContest().getContestDuration()
+        : null;
+  }
+
+  /** @return contest time at which the scoreboard freezes, or null if it never does. */
+  static Duration getFreezeTime(ClicsContest contest) {
+    return contest.getContest().hasScoreboardFreezeDuration()
+        ? Durations.subtract(
+            getEndTime(contest),
+            contest.getContest().getScoreboardFreezeDuration())
+        : null;
   }
 
   private void addPendingSubmission(final Submission submission) {
@@ -350,12 +839,12 @@ public class ResolverController {
   }
 
   private void finaliseRank(Team team, int rank) {
-    addFocusEvent(o -> o.onTeamRankFinalised(team, rank));
+    addEvent(ScoreboardEvent.TeamRankFinalised.create(team, rank));
     addResolution(Resolution.FINALISED_RANK);
   }
 
   private void moveToProblem(final Team team, final Problem problem) {
-    addFocusEvent(o -> o.onProblemFocused(team, problem));
+    addEvent(ScoreboardEvent.ProblemFocused.create(team, problem));
     addResolution(problem != null ? Resolution.FOCUSED_PROBLEM
         : team != null ? Resolution.FOCUSED_TEAM
         : Resolution.FINISHED);
@@ -0,0 +1,226 @@
+package me.hex539.contest;
+
+import com.google.auto.value.AutoValue;
+import java.util.List;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
+
+import edu.clics.proto.ClicsProto.*;
+
+/**
+ * One observer callback, captured as a value so that it can be replayed later, on another thread,
+ * or to a set of observers that hasn't necessarily been computed yet.
+ *
+ * <p>There is one immutable subclass per callback on {@link ScoreboardModel.Observer} and
+ * {@link ResolverController.Observer}. Every field is either a primitive or a protobuf message, so
+ * a stream of these can be written out and read back without any extra bookkeeping.
+ */
+public abstract class ScoreboardEvent {
+
+  /** Closed hierarchy: all implementations live in this file. */
+  ScoreboardEvent() {}
+
+  /** @return the team this event is about, if any. */
+  @Nullable public abstract Team getTeam();
+
+  /** Invokes the callback this event was recorded from on {@param observer}. */
+  public abstract void dispatch(ScoreboardModel.Observer observer);
+
+  /**
+   * Observer that turns every callback it receives into a {@link ScoreboardEvent} and hands it to
+   * {@param destination}.
+   */
+  public static ScoreboardModel.Observer recorder(Consumer<ScoreboardEvent> destination) {
+    return new Recorder(destination);
+  }
+
+  private static final class Recorder implements ScoreboardModel.Observer {
+    private final Consumer<ScoreboardEvent> destination;
+
+    Recorder(Consumer<ScoreboardEvent> destination) {
+      this.destination = destination;
+    }
+
+    @Override
+    public void onProblemSubmitted(Team team, Submission submission) {
+      destination.accept(ProblemSubmitted.create(team, submission));
+    }
+
+    @Override
+    public void onSubmissionJudged(Team team, Judgement judgement) {
+      destination.accept(SubmissionJudged.create(team, judgement));
+    }
+
+    @Override
+    public void onProblemScoreChanged(Team team, ScoreboardProblem problem) {
+      destination.accept(ProblemScoreChanged.create(team, problem));
+    }
+
+    @Override
+    public void onScoreChanged(Team team, ScoreboardScore score) {
+      destination.accept(ScoreChanged.create(team, score));
+    }
+
+    @Override
+    public void onTeamRankChanged(Team team, int oldRank, int newRank) {
+      destination.accept(TeamRankChanged.create(team, oldRank, newRank));
+    }
+
+    @Override
+    public void onTeamScoreChanged(
+        Team team,
+        List<ScoreboardProblem> problems,
+        ScoreboardScore score) {
+      destination.accept(TeamScoreChanged.create(team, problems, score));
+    }
+  }
+
+  @AutoValue
+  public abstract static class ProblemSubmitted extends ScoreboardEvent {
+    public abstract Team getTeam();
+    public abstract Submission getSubmission();
+
+    public static ProblemSubmitted create(Team team, Submission submission) {
+      return new AutoValue_ScoreboardEvent_ProblemSubmitted(team, submission);
+    }
+
+    @Override
+    public void dispatch(ScoreboardModel.Observer observer) {
+      observer.onProblemSubmitted(getTeam(), getSubmission());
+    }
+  }
+
+  @AutoValue
+  public abstract static class SubmissionJudged extends ScoreboardEvent {
+    public abstract Team getTeam();
+    public abstract Judgement getJudgement();
+
+    public static SubmissionJudged create(Team team, Judgement judgement) {
+      return new AutoValue_ScoreboardEvent_SubmissionJudged(team, judgement);
+    }
+
+    @Override
+    public void dispatch(ScoreboardModel.Observer observer) {
+      observer.onSubmissionJudged(getTeam(), getJudgement());
+    }
+  }
+
+  @AutoValue
+  public abstract static class ProblemScoreChanged extends ScoreboardEvent {
+    public abstract Team getTeam();
+    public abstract ScoreboardProblem getProblem();
+
+    public static ProblemScoreChanged create(Team team, ScoreboardProblem problem) {
+      return new AutoValue_ScoreboardEvent_ProblemScoreChanged(team, problem);
+    }
+
+    @Override
+    public void dispatch(ScoreboardModel.Observer observer) {
+      observer.onProblemScoreChanged(getTeam(), getProblem());
+    }
+  }
+
+  @AutoValue
+  public abstract static class ScoreChanged extends ScoreboardEvent {
+    public abstract Team getTeam();
+    public abstract ScoreboardScore getScore();
+
+    public static ScoreChanged create(Team team, ScoreboardScore score) {
+      return new AutoValue_ScoreboardEvent_ScoreChanged(team, score);
+    }
+
+    @Override
+    public void dispatch(ScoreboardModel.Observer observer) {
+      observer.onScoreChanged(getTeam(), getScore());
+    }
+  }
+
+  @AutoValue
+  public abstract static class TeamRankChanged extends ScoreboardEvent {
+    public abstract Team getTeam();
+    public abstract int getOldRank();
+    public abstract int getNewRank();
+
+    public static TeamRankChanged create(Team team, int oldRank, int newRank) {
+      return new AutoValue_ScoreboardEvent_TeamRankChanged(team, oldRank, newRank);
+    }
+
+    @Override
+    public void dispatch(ScoreboardModel.Observer observer) {
+      observer.onTeamRankChanged(getTeam(), getOldRank(), getNewRank());
+    }
+  }
+
+  @AutoValue
+  public abstract static class TeamScoreChanged extends ScoreboardEvent {
+    public abstract Team getTeam();
+    public abstract List<ScoreboardProblem> getProblems();
+    public abstract ScoreboardScore getScore();
+
+    public static TeamScoreChanged create(
+        Team team,
+        List<ScoreboardProblem> problems,
+        ScoreboardScore score) {
+      return new AutoValue_ScoreboardEvent_TeamScoreChanged(team, problems, score);
+    }
+
+    @Override
+    public void dispatch(ScoreboardModel.Observer observer) {
+      observer.onTeamScoreChanged(getTeam(), getProblems(), getScore());
+    }
+  }
+
+  /** Only delivered to {@link ResolverController.Observer}s. */
+  @AutoValue
+  public abstract static class ProblemFocused extends ScoreboardEvent {
+    @Nullable public abstract Team getTeam();
+    @Nullable public abstract Problem getProblem();
+
+    public static ProblemFocused create(@Nullable Team team, @Nullable Problem problem) {
+      return new AutoValue_ScoreboardEvent_ProblemFocused(team, problem);
+    }
+
+    @Override
+    public void dispatch(ScoreboardModel.Observer observer) {
+      if (observer instanceof ResolverController.Observer) {
+        ((ResolverController.Observer) observer).onProblemFocused(getTeam(), getProblem());
+      }
+    }
+  }
+
+  /** Only delivered to {@link ResolverController.Observer}s. */
+  @AutoValue
+  public abstract static class TeamRankFinalised extends ScoreboardEvent {
+    public abstract Team getTeam();
+    public abstract int getRank();
+
+    public static TeamRankFinalised create(Team team, int rank) {
+      return new AutoValue_ScoreboardEvent_TeamRankFinalised(team, rank);
+    }
+
+    @Override
+    public void dispatch(ScoreboardModel.Observer observer) {
+      if (observer instanceof ResolverController.Observer) {
+        ((ResolverController.Observer) observer).onTeamRankFinalised(getTeam(), getRank());
+      }
+    }
+  }
+
+  /** Only delivered to {@link ResolverController.Observer}s. */
+  @AutoValue
+  public abstract static class TeamRankUnfinalised extends ScoreboardEvent {
+    public abstract Team getTeam();
+    public abstract int getRank();
+
+    public static TeamRankUnfinalised create(Team team, int rank) {
+      return new AutoValue_ScoreboardEvent_TeamRankUnfinalised(team, rank);
+    }
+
+    @Override
+    public void dispatch(ScoreboardModel.Observer observer) {
+      if (observer instanceof ResolverController.Observer) {
+        ((ResolverController.Observer) observer).onTeamRankUnfinalised(getTeam(), getRank());
+      }
+    }
+  }
+}
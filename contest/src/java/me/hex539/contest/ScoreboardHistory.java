@@ -0,0 +1,343 @@
+package me.hex539.contest;
+
+import com.google.auto.value.AutoValue;
+import com.google.protobuf.Duration;
+import com.google.protobuf.util.Durations;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+import edu.clics.proto.ClicsProto.*;
+import me.hex539.contest.model.Ranklist;
+
+/**
+ * Everything that happened to a scoreboard over the course of a contest, for looking back at it.
+ *
+ * <p>The contest is replayed once, in order of submission time, and every change to a team's
+ * rank, score or problems is logged against the time of the submission that caused it. That
+ * includes teams that are only pushed up or down a place by someone else's solve. After that
+ * every question is answered from the logs without replaying anything:
+ *
+ * <ul>
+ *   <li>{@link #getRowsAt}: the whole scoreboard at one point in time, in O(T (P + 1) log N) for T
+ *       teams, P problems and N changes per team.
+ *   <li>{@link #getRankAt}, {@link #getScoreAt}: one team at one point in time, in O(log N).
+ *   <li>{@link #getRankHistory}, {@link #getRankChangesBetween}: in O(log N) plus the size of the
+ *       answer.
+ * </ul>
+ *
+ * <p>Times are inclusive: the state at time {@code t} includes every submission made at or
+ * before {@code t}. A history is never changed once built, so it can be shared between threads.
+ */
+public final class ScoreboardHistory {
+
+  /** A team moving from one rank to another. */
+  @AutoValue
+  public abstract static class RankChange {
+    public abstract Team getTeam();
+    public abstract Duration getContestTime();
+    public abstract int getOldRank();
+    public abstract int getNewRank();
+
+    static RankChange create(Team team, Duration contestTime, int oldRank, int newRank) {
+      return new AutoValue_ScoreboardHistory_RankChange(team, contestTime, oldRank, newRank);
+    }
+  }
+
+  /** Logged before anything else, for the state from before the first submission. */
+  private static final long START = Long.MIN_VALUE;
+
+  private final Team[] teams;
+  private final Map<String, Integer> teamIndices;
+  private final List<Problem> problems;
+  private final Map<String, Integer> problemIndices;
+
+  /** Per team. */
+  private final RankTrack[] ranks;
+  private final ValueTrack<ScoreboardScore>[] scores;
+
+  /** Per team and then per problem, in the same order as {@link #problems}. */
+  private final ValueTrack<ScoreboardProblem>[][] attempts;
+
+  /** Every rank change, in order. */
+  private final RankTrack changes = new RankTrack();
+  private int[] changedTeams = new int[16];
+  private int[] changedFrom = new int[16];
+
+  @SuppressWarnings("unchecked")
+  private ScoreboardHistory(ScoreboardModel model) {
+    final Ranklist ranklist = model.getRanklistModel();
+    final List<ScoreboardRow> rows = ranklist.getRows();
+    this.problems = model.getProblemsModel().getProblems();
+
+    this.teams = new Team[rows.size()];
+    this.teamIndices = new HashMap<>();
+    this.ranks = new RankTrack[teams.length];
+    this.scores = new ValueTrack[teams.length];
+    this.attempts = new ValueTrack[teams.length][];
+
+    this.problemIndices = new HashMap<>();
+    for (int p = 0; p < problems.size(); p++) {
+      problemIndices.put(problems.get(p).getId(), p);
+    }
+
+    for (int t = 0; t < rows.size(); t++) {
+      final ScoreboardRow row = rows.get(t);
+      teams[t] = model.getTeamsModel().getTeam(row.getTeamId());
+      teamIndices.put(row.getTeamId(), t);
+
+      ranks[t] = new RankTrack();
+      ranks[t].add(START, (int) row.getRank());
+      scores[t] = new ValueTrack<>();
+      scores[t].add(START, row.getScore());
+      attempts[t] = new ValueTrack[problems.size()];
+      for (int p = 0; p < problems.size(); p++) {
+        attempts[t][p] = new ValueTrack<>();
+      }
+      for (ScoreboardProblem problem : row.getProblemsList()) {
+        final Integer p = problemIndices.get(problem.getProblemId());
+        if (p != null) {
+          attempts[t][p].add(START, problem);
+        }
+      }
+    }
+  }
+
+  /**
+   * Replays {@param sourceModel} from an empty scoreboard.
+   *
+   * @param sourceModel the teams, problems and submissions to replay. Where a submission has
+   *                    been judged more than once, its latest judgement is the one used.
+   */
+  public static ScoreboardHistory of(ClicsContest contest, ScoreboardModel sourceModel) {
+    final ScoreboardModelImpl model = ScoreboardModelImpl.newBuilder(contest, sourceModel)
+        .withEmptyScoreboard()
+        .filterSubmissions(s -> false)
+        .build();
+    final ScoreboardHistory history = new ScoreboardHistory(model);
+
+    final Map<String, Judgement> latestJudgements = new HashMap<>();
+    for (Judgement j : sourceModel.getJudgeModel().getJudgements()) {
+      latestJudgements.put(j.getSubmissionId(), j);
+    }
+
+    final JudgementDispatcher dispatcher = new JudgementDispatcher(model);
+    dispatcher.observers.add(model);
+    final Recorder recorder = history.new Recorder(model.getRanklistModel());
+    dispatcher.observers.add(recorder);
+
+    for (Submission submission : sourceModel.getJudgeModel().getSubmissions()) {
+      recorder.time = Durations.toNanos(submission.getContestTime());
+      if (dispatcher.notifySubmission(submission)) {
+        final Judgement judgement = latestJudgements.get(submission.getId());
+        if (judgement != null) {
+          dispatcher.notifyJudgement(judgement);
+        }
+      }
+    }
+    return history;
+  }
+
+  /** Fills in the logs from the events of one replay. */
+  private final class Recorder implements ScoreboardModel.Observer {
+    private final Ranklist ranklist;
+    long time;
+
+    Recorder(Ranklist ranklist) {
+      this.ranklist = ranklist;
+    }
+
+    @Override
+    public void onProblemScoreChanged(Team team, ScoreboardProblem problem) {
+      attempts[teamIndices.get(team.getId())][problemIndices.get(problem.getProblemId())]
+          .add(time, problem);
+    }
+
+    @Override
+    public void onScoreChanged(Team team, ScoreboardScore score) {
+      scores[teamIndices.get(team.getId())].add(time, score);
+    }
+
+    @Override
+    public void onTeamRankChanged(Team team, int oldRank, int newRank) {
+      // The model has already moved the team, so everyone it overtook (or who overtook it) is
+      // now one place along from where they were.
+      logRankChange(teamIndices.get(team.getId()), oldRank, newRank);
+      final int step = oldRank > newRank ? 1 : -1;
+      for (int rank = newRank + step; rank != oldRank + step; rank += step) {
+        final int t = teamIndices.get(ranklist.getRow(rank - 1).getTeamId());
+        logRankChange(t, rank - step, rank);
+      }
+    }
+
+    private void logRankChange(int team, int oldRank, int newRank) {
+      ranks[team].add(time, newRank);
+
+      final int i = changes.size;
+      changes.add(time, newRank);
+      if (i == changedTeams.length) {
+        changedTeams = Arrays.copyOf(changedTeams, i * 2);
+        changedFrom = Arrays.copyOf(changedFrom, i * 2);
+      }
+      changedTeams[i] = team;
+      changedFrom[i] = oldRank;
+    }
+  }
+
+  /** @return every team's row as of {@param time}, in rank order. */
+  public List<ScoreboardRow> getRowsAt(Duration time) {
+    final long nanos = Durations.toNanos(time);
+    final ScoreboardRow[] rows = new ScoreboardRow[teams.length];
+    for (int t = 0; t < teams.length; t++) {
+      final int rank = ranks[t].getAt(nanos);
+      final ScoreboardRow.Builder row = ScoreboardRow.newBuilder()
+          .setRank(rank)
+          .setTeamId(teams[t].getId())
+          .setScore(scores[t].getAt(nanos));
+      for (ValueTrack<ScoreboardProblem> problem : attempts[t]) {
+        final ScoreboardProblem attempt = problem.getAt(nanos);
+        if (attempt != null) {
+          row.addProblems(attempt);
+        }
+      }
+      rows[rank - 1] = row.build();
+    }
+    return Collections.unmodifiableList(Arrays.asList(rows));
+  }
+
+  public int getRankAt(Team team, Duration time) throws NoSuchElementException {
+    return ranks[indexOf(team)].getAt(Durations.toNanos(time));
+  }
+
+  public ScoreboardScore getScoreAt(Team team, Duration time) throws NoSuchElementException {
+    return scores[indexOf(team)].getAt(Durations.toNanos(time));
+  }
+
+  /** @return every time {@param team} moved, including being moved by other teams, in order. */
+  public List<RankChange> getRankHistory(Team team) throws NoSuchElementException {
+    final RankTrack track = ranks[indexOf(team)];
+    return new ChangeList(track.size - 1) {
+      @Override
+      public RankChange get(int i) {
+        return RankChange.create(
+            team,
+            Durations.fromNanos(track.times[i + 1]),
+            track.ranks[i],
+            track.ranks[i + 1]);
+      }
+    };
+  }
+
+  /**
+   * @return every rank change from {@param from} up to but not including {@param to}, in order.
+   *         When one team overtakes others, its own change comes first.
+   */
+  public List<RankChange> getRankChangesBetween(Duration from, Duration to) {
+    final int start = changes.upperBound(Durations.toNanos(from) - 1);
+    final int end = changes.upperBound(Durations.toNanos(to) - 1);
+    return new ChangeList(Math.max(0, end - start)) {
+      @Override
+      public RankChange get(int i) {
+        final int c = start + i;
+        return RankChange.create(
+            teams[changedTeams[c]],
+            Durations.fromNanos(changes.times[c]),
+            changedFrom[c],
+            changes.ranks[c]);
+      }
+    };
+  }
+
+  private int indexOf(Team team) throws NoSuchElementException {
+    final Integer index = teamIndices.get(team.getId());
+    if (index == null) {
+      throw new NoSuchElementException("No team with ID " + team.getId());
+    }
+    return index;
+  }
+
+  /** Read-only view that builds each change when it is asked for. */
+  private abstract static class ChangeList extends AbstractList<RankChange>
+      implements RandomAccess {
+    private final int size;
+
+    ChangeList(int size) {
+      this.size = size;
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+
+  /** Ranks over time, added in time order. */
+  private static final class RankTrack {
+    long[] times = new long[4];
+    int[] ranks = new int[4];
+    int size = 0;
+
+    void add(long time, int rank) {
+      if (size == times.length) {
+        times = Arrays.copyOf(times, size * 2);
+        ranks = Arrays.copyOf(ranks, size * 2);
+      }
+      times[size] = time;
+      ranks[size] = rank;
+      size++;
+    }
+
+    int getAt(long time) {
+      return ranks[upperBound(time) - 1];
+    }
+
+    /** @return the first position after {@param time}. */
+    int upperBound(long time) {
+      return ValueTrack.upperBound(times, size, time);
+    }
+  }
+
+  /** Values over time, added in time order. */
+  private static final class ValueTrack<T> {
+    long[] times = new long[2];
+    Object[] values = new Object[2];
+    int size = 0;
+
+    void add(long time, T value) {
+      if (size == times.length) {
+        times = Arrays.copyOf(times, size * 2);
+        values = Arrays.copyOf(values, size * 2);
+      }
+      times[size] = time;
+      values[size] = value;
+      size++;
+    }
+
+    /** @return the latest value logged at or before {@param time}, or null if there is none. */
+    @SuppressWarnings("unchecked")
+    T getAt(long time) {
+      final int i = upperBound(times, size, time);
+      return i > 0 ? (T) values[i - 1] : null;
+    }
+
+    /** @return the first position in {@param times}[0, size) after {@param time}. */
+    static int upperBound(long[] times, int size, long time) {
+      int lo = 0;
+      int hi = size;
+      while (lo < hi) {
+        final int mid = (lo + hi) >>> 1;
+        if (times[mid] <= time) {
+          lo = mid + 1;
+        } else {
+          hi = mid;
+        }
+      }
+      return lo;
+    }
+  }
+}
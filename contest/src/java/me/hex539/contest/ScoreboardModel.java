@@ -1,5 +1,7 @@
 package me.hex539.contest;
 
+import com.google.auto.value.AutoValue;
+import java.util.List;
 import me.hex539.contest.model.Judge;
 import me.hex539.contest.model.Problems;
 import me.hex539.contest.model.Ranklist;
@@ -15,6 +17,60 @@ public interface ScoreboardModel {
     default void onProblemScoreChanged(Team team, ScoreboardProblem problem) {}
     default void onScoreChanged(Team team, ScoreboardScore score) {}
     default void onTeamRankChanged(Team team, int oldRank, int newRank) {}
+
+    /**
+     * Several problems and the overall score of one team changed at once.
+     *
+     * <p>By default this is split back up into individual events.
+     */
+    default void onTeamScoreChanged(
+        Team team,
+        List<ScoreboardProblem> problems,
+        ScoreboardScore score) {
+      problems.forEach(problem -> onProblemScoreChanged(team, problem));
+      onScoreChanged(team, score);
+    }
+  }
+
+  /**
+   * Observer that receives a whole batch of judgements as one change set instead of individual
+   * events. See {@link JudgementDispatcher#notifyJudgements}.
+   *
+   * <p>The change set is only sent once every plain {@link Observer} has been updated, because
+   * the new ranks come from the model. A model therefore has to stay a plain observer of its own
+   * dispatcher.
+   */
+  public interface BatchObserver extends Observer {
+    void onTeamsChanged(List<TeamChange> changes);
+  }
+
+  /** Net effect of a batch of judgements on one team. */
+  @AutoValue
+  public abstract static class TeamChange {
+    public abstract Team getTeam();
+
+    /** Judgements for this team in the batch, in the order they were applied. */
+    public abstract List<Judgement> getJudgements();
+
+    /** Problems whose score differs from before the batch. */
+    public abstract List<ScoreboardProblem> getProblems();
+
+    public abstract ScoreboardScore getOldScore();
+    public abstract ScoreboardScore getNewScore();
+    public abstract int getOldRank();
+    public abstract int getNewRank();
+
+    public static TeamChange create(
+        Team team,
+        List<Judgement> judgements,
+        List<ScoreboardProblem> problems,
+        ScoreboardScore oldScore,
+        ScoreboardScore newScore,
+        int oldRank,
+        int newRank) {
+      return new AutoValue_ScoreboardModel_TeamChange(
+          team, judgements, problems, oldScore, newScore, oldRank, newRank);
+    }
   }
 
   Contest getContest();
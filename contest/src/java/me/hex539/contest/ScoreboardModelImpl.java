@@ -29,6 +29,9 @@ public abstract class ScoreboardModelImpl implements ScoreboardModel, Scoreboard
   public abstract RanklistMutable getRanklistModel();
   public abstract JudgeMutable getJudgeModel();
 
+  /** Sorted contents of {@link #getClics}, if anything needed them while building. */
+  abstract Optional<ContestIndex> getIndex();
+
   public abstract Builder toBuilder();
 
   public static Builder newBuilder(ClicsContest clics) {
@@ -38,6 +41,9 @@ public abstract class ScoreboardModelImpl implements ScoreboardModel, Scoreboard
   public static Builder newBuilder(ClicsContest clics, ScoreboardModel src) {
     Builder b = newBuilder(clics);
     b.reference = src;
+    if (src instanceof ScoreboardModelImpl && ((ScoreboardModelImpl) src).getClics() == clics) {
+      ((ScoreboardModelImpl) src).getIndex().ifPresent(b::setIndex);
+    }
     return b;
   }
 
@@ -53,12 +59,14 @@ public abstract class ScoreboardModelImpl implements ScoreboardModel, Scoreboard
     abstract Builder setProblemsModel(ProblemsMutable problems);
     abstract Builder setRanklistModel(RanklistMutable ranklist);
     abstract Builder setJudgeModel(JudgeMutable judge);
+    abstract Builder setIndex(ContestIndex index);
 
     abstract ClicsContest getClics();
     abstract Optional<TeamsMutable> getTeamsModel();
     abstract Optional<ProblemsMutable> getProblemsModel();
     abstract Optional<RanklistMutable> getRanklistModel();
     abstract Optional<JudgeMutable> getJudgeModel();
+    abstract Optional<ContestIndex> getIndex();
 
     abstract ScoreboardModelImpl autoBuild();
 
@@ -86,6 +94,18 @@ public abstract class ScoreboardModelImpl implements ScoreboardModel, Scoreboard
     }
 
     public Builder withJudgements(Predicate<Judgement> judgementFilter) {
+      return withJudgements(index(), judgementFilter);
+    }
+
+    /** @return the index this builder was handed, or else a new one that the model will keep. */
+    private ContestIndex index() {
+      if (!getIndex().isPresent()) {
+        setIndex(new ContestIndex(getClics()));
+      }
+      return getIndex().get();
+    }
+
+    private Builder withJudgements(ContestIndex index, Predicate<Judgement> judgementFilter) {
       JudgeMutable judge = JudgeMutable.newBuilder()
         .setProblems(getProblemsModel().get())
         .setTeams(getTeamsModel().get())
@@ -93,20 +113,17 @@ public abstract class ScoreboardModelImpl implements ScoreboardModel, Scoreboard
       setJudgeModel(judge);
       getClics().getJudgementTypesMap().values().stream()
           .forEach(judge::onJudgementTypeAdded);
-      getClics().getSubmissionsMap().values().stream()
-          .filter(submissionFilter)
-          .sorted((a, b) -> Long.compare(
-              Durations.toNanos(a.getContestTime()),
-              Durations.toNanos(b.getContestTime())))
-          .forEach(s -> judge.onProblemSubmitted(
-              getTeamsModel().get().getTeam(s.getTeamId()),
-              s));
-      getClics().getJudgementsMap().values().stream()
-          .filter(judgementFilter)
-          .sorted((a, b) -> Long.compare(
-              Durations.toNanos(a.getEndContestTime()),
-              Durations.toNanos(b.getEndContestTime())))
-          .forEach(j -> judge.onSubmissionJudged(j));
+      // submissionFilter always checks the team first, so there is no need to look it up again.
+      for (Submission s : index.getSubmissions()) {
+        if (submissionFilter.test(s)) {
+          judge.onProblemSubmitted(s);
+        }
+      }
+      for (Judgement j : index.getJudgements()) {
+        if (judgementFilter.test(j)) {
+          judge.onSubmissionJudged(j);
+        }
+      }
       return this;
     }
 
@@ -116,9 +133,8 @@ public abstract class ScoreboardModelImpl implements ScoreboardModel, Scoreboard
     }
 
     public Builder filterTooLateSubmissions() {
-      return filterSubmissions(s ->
-          Durations.toNanos(s.getContestTime()) <
-          Durations.toNanos(getClics().getContest().getContestDuration()));
+      final long contestDuration = Durations.toNanos(getClics().getContest().getContestDuration());
+      return filterSubmissions(s -> Durations.toNanos(s.getContestTime()) < contestDuration);
     }
 
     public Builder filterTeams(final Predicate<Team> pred) {
@@ -132,6 +148,12 @@ public abstract class ScoreboardModelImpl implements ScoreboardModel, Scoreboard
     }
 
     public ScoreboardModelImpl build() {
+      // Start on the contest-wide sorting first, so that it can happen alongside the teams.
+      final ContestIndex index =
+          reference == null && (!getProblemsModel().isPresent() || !getJudgeModel().isPresent())
+              ? index()
+              : null;
+
       if (!getTeamsModel().isPresent()) {
         TeamsMutable teams = new TeamsMutable();
         setTeamsModel(teams);
@@ -159,9 +181,7 @@ public abstract class ScoreboardModelImpl implements ScoreboardModel, Scoreboard
         } else {
           ProblemsMutable problems = new ProblemsMutable();
           setProblemsModel(problems);
-          getClics().getProblemsMap().values().stream()
-              .sorted((a, b) -> Integer.compare(a.getOrdinal(), b.getOrdinal()))
-              .forEach(problems::onProblemAdded);
+          index.getProblems().forEach(problems::onProblemAdded);
         }
       }
 
@@ -194,7 +214,7 @@ public abstract class ScoreboardModelImpl implements ScoreboardModel, Scoreboard
                   submissionFilter,
                   judgementFilter));
         } else {
-          withJudgements(judgementFilter);
+          withJudgements(index, judgementFilter);
         }
       }
       return autoBuild();
@@ -230,6 +250,14 @@ public abstract class ScoreboardModelImpl implements ScoreboardModel, Scoreboard
     getRanklistModel().onScoreChanged(team, score);
   }
 
+  @Override
+  public void onTeamScoreChanged(
+      Team team,
+      List<ScoreboardProblem> problems,
+      ScoreboardScore score) {
+    getRanklistModel().onTeamScoreChanged(team, problems, score);
+  }
+
   @Override
   public void onTeamRankChanged(Team team, int oldRank, int newRank) {
     // Already handled by onScoreChanged.
@@ -1,15 +1,21 @@
 package me.hex539.contest;
 
 import java.util.AbstractList;
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Collection;
+import java.util.ConcurrentModificationException;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.SortedSet;
 import java.util.Spliterator;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 public final class SplayList<T> extends AbstractList<T> implements List<T>, SortedSet<T> {
   private final Comparator<? super T> comp;
@@ -18,35 +24,59 @@ public final class SplayList<T> extends AbstractList<T> implements List<T>, Sort
 
   private final Map<Object, SplayTree<T>> tagMap;
 
+  private final ToLongFunction<? super T> grouper;
+  private final int groupCount;
+
   public SplayList() {
     this((a, b) -> ((Comparable) a).compareTo(b));
   }
 
   public SplayList(Comparator<? super T> comparator) {
+    this(comparator, 0, null);
+  }
+
+  /**
+   * Sorted list that also keeps order statistics for up to 64 groups.
+   *
+   * @param groupCount number of groups to keep statistics for.
+   * @param grouper maps each item to a bitmask of the groups it belongs to. This is only read
+   *     once, when the item is added.
+   */
+  public SplayList(
+      Comparator<? super T> comparator,
+      int groupCount,
+      ToLongFunction<? super T> grouper) {
+    if (groupCount < 0 || groupCount > Long.SIZE) {
+      throw new IllegalArgumentException("Unsupported number of groups: " + groupCount);
+    }
     this.comp = comparator;
     this.tagger = null;
     this.tagMap = null;
+    this.grouper = grouper;
+    this.groupCount = (grouper != null ? groupCount : 0);
   }
 
   public <K> SplayList(Function<? super T, ?> tagger) {
     this.comp = null;
     this.tagger = tagger;
     this.tagMap = new HashMap<>();
+    this.grouper = null;
+    this.groupCount = 0;
   }
 
   public SplayList(Collection<? extends T>  other) {
     this();
-    addAll(other);
+    bulkLoad(other);
   }
 
   public SplayList(Collection<? extends T> other, Comparator<? super T> comparator) {
     this(comparator);
-    addAll(other);
+    bulkLoad(other);
   }
 
   public <K> SplayList(Collection<? extends T> other, Function<? super T, ?> tagger) {
     this(tagger);
-    addAll(other);
+    bulkLoad(other);
   }
 
   public static <T> Comparator<T> unordered() {
@@ -55,6 +85,9 @@ public final class SplayList<T> extends AbstractList<T> implements List<T>, Sort
 
   private final SplayTree<T> create(T value) {
     SplayTree<T> res = new SplayTree<T>(value);
+    if (grouper != null) {
+      res.setGroups(grouper.applyAsLong(value), groupCount);
+    }
     if (tagger != null) {
       if (tagMap.put(tagger.apply(value), res) != null) {
         throw new AssertionError("Creating duplicate tag: " + tagger.apply(value));
@@ -63,7 +96,52 @@ public final class SplayList<T> extends AbstractList<T> implements List<T>, Sort
     return res;
   }
 
+  /**
+   * Fill an empty list in linear time.
+   *
+   * Input that is already in order becomes a perfectly balanced tree without any rotations.
+   * Unsorted input is sorted once first. Either way the result is the same as adding every item
+   * one by one, including which of several equal items is kept.
+   */
+  @SuppressWarnings("unchecked")
+  private void bulkLoad(Collection<? extends T> other) {
+    if (root != null) {
+      throw new IllegalStateException("Can only bulk-load into an empty list");
+    }
+    Object[] items = other.toArray();
+    if (comp != null) {
+      boolean sorted = true;
+      for (int i = 1; i < items.length && sorted; i++) {
+        sorted = comp.compare((T) items[i - 1], (T) items[i]) < 0;
+      }
+      if (!sorted) {
+        // Stable, so the first of any equal run is the one that survives.
+        Arrays.sort(items, (a, b) -> comp.compare((T) a, (T) b));
+        int distinct = 0;
+        for (int i = 0; i < items.length; i++) {
+          if (distinct == 0 || comp.compare((T) items[distinct - 1], (T) items[i]) != 0) {
+            items[distinct++] = items[i];
+          }
+        }
+        items = Arrays.copyOf(items, distinct);
+      }
+    }
+    modCount++;
+    root = build(items, 0, items.length);
+  }
+
+  @SuppressWarnings("unchecked")
+  private SplayTree<T> build(Object[] items, int from, int to) {
+    if (from >= to) {
+      return null;
+    }
+    final int mid = (from + to) >>> 1;
+    final SplayTree<T> res = create((T) items[mid]);
+    return res.setChildren(build(items, from, mid), build(items, mid + 1, to));
+  }
+
   private final SplayTree<T> delete(SplayTree<T> tree) {
+    modCount++;
     if (tagger != null) {
       if (tagMap.remove(tagger.apply(tree.key)) == null) {
         throw new AssertionError("Removing nonexistent tag: " + tagger.apply(tree.key));
@@ -77,9 +155,34 @@ public final class SplayList<T> extends AbstractList<T> implements List<T>, Sort
     return comp;
   }
 
+  /**
+   * In-order iterator that follows parent and child links without splaying, so a full pass is
+   * O(n) and does not reshape the tree.
+   */
+  @Override
+  public Iterator<T> iterator() {
+    return new Itr(root != null ? root.top().leftmost() : null, size());
+  }
+
+  @Override
+  public void forEach(Consumer<? super T> action) {
+    final int expectedModCount = modCount;
+    for (SplayTree<T> t = (root != null ? root.top().leftmost() : null); t != null;
+        t = t.successor()) {
+      action.accept(t.key);
+    }
+    if (modCount != expectedModCount) {
+      throw new ConcurrentModificationException();
+    }
+  }
+
+  /**
+   * Spliterator that splits by index using subtree sizes. Traversal and splitting are both
+   * read-only, so parallel streams can walk disjoint parts of the tree at the same time.
+   */
   @Override
   public Spliterator<T> spliterator() {
-    return super.spliterator();
+    return new RangeSpliterator(null, 0, size(), modCount);
   }
 
   @Override
@@ -92,41 +195,34 @@ public final class SplayList<T> extends AbstractList<T> implements List<T>, Sort
     return get(size() - 1);
   }
 
+  /**
+   * Range views.
+   *
+   * These are backed by this list, cost O(log n) to create, and O(log n + k) to walk k
+   * elements. Changes to the list show through in the views and vice-versa, within the
+   * limits described by {@link SortedSet} and {@link List#subList}.
+   */
   @Override
-  public SplayList<T> headSet(T toElement) {
-    SplayList<T> res = new SplayList<>(this, comparator());
-    if (res.root != null) {
-      res.root = res.root.splay().find(toElement, comparator()).cutBefore();
-    }
-    return res;
+  public SortedSet<T> headSet(T toElement) {
+    return new SortedView(false, null, true, toElement);
   }
 
   @Override
-  public SplayList<T> tailSet(T fromElement) {
-    SplayList<T> res = new SplayList<>(this, comparator());
-    if (res.root != null) {
-      res.root = res.root.splay().find(fromElement, comparator());
-      res.root.cutBefore();
-    }
-    return res;
+  public SortedSet<T> tailSet(T fromElement) {
+    return new SortedView(true, fromElement, false, null);
   }
 
   @Override
-  public SplayList<T> subSet(T fromElement, T toElement) {
-    return tailSet(fromElement).headSet(toElement);
+  public SortedSet<T> subSet(T fromElement, T toElement) {
+    return new SortedView(true, fromElement, true, toElement);
   }
 
   @Override
-  public SplayList<T> subList(int fromIndex, int toIndex) {
-    SplayList<T> res = new SplayList<>(this, comparator());
-    if (res.root != null && toIndex < size()) {
-      res.root = res.root.get(toIndex).splay().cutBefore();
-    }
-    if (res.root != null && fromIndex > 0) {
-      res.root = res.root.get(fromIndex).splay();
-      res.root.cutBefore();
+  public List<T> subList(int fromIndex, int toIndex) {
+    if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex) {
+      throw new IndexOutOfBoundsException(fromIndex + ".." + toIndex + " of " + size());
     }
-    return res;
+    return new SubList(fromIndex, toIndex);
   }
 
   @Override
@@ -163,6 +259,7 @@ public final class SplayList<T> extends AbstractList<T> implements List<T>, Sort
 
   @Override
   public void clear() {
+    modCount++;
     root = null;
     if (tagger != null) {
       tagMap.clear();
@@ -205,6 +302,7 @@ public final class SplayList<T> extends AbstractList<T> implements List<T>, Sort
       }
       add(value);
     } else {
+      modCount++;
       SplayTree<T> t = create(value);
       if (root == null) {
         root = t;
@@ -216,6 +314,15 @@ public final class SplayList<T> extends AbstractList<T> implements List<T>, Sort
     }
   }
 
+  @Override
+  public boolean addAll(Collection<? extends T> other) {
+    if (root != null || other.isEmpty()) {
+      return super.addAll(other);
+    }
+    bulkLoad(other);
+    return true;
+  }
+
   @Override
   public boolean add(T value) {
     final int oldSize = size();
@@ -225,7 +332,11 @@ public final class SplayList<T> extends AbstractList<T> implements List<T>, Sort
       SplayTree<T> t = create(value);
       root = t.insertInto(root != null ? root.splay() : null, comparator());
     }
-    return size() == oldSize + 1;
+    if (size() == oldSize + 1) {
+      modCount++;
+      return true;
+    }
+    return false;
   }
 
   @Override
@@ -241,6 +352,73 @@ public final class SplayList<T> extends AbstractList<T> implements List<T>, Sort
     return res != null ? res.indexOf() : -1;
   }
 
+  public int sizeOfGroup(int group) {
+    checkGroup(group);
+    return root == null ? 0 : root.splay().groupSize[group];
+  }
+
+  /** @return the {@param index}'th item belonging to {@param group}. */
+  public T getInGroup(int group, int index) {
+    if (index < 0 || index >= sizeOfGroup(group)) {
+      throw new ArrayIndexOutOfBoundsException(index);
+    }
+    root = root.splay().getInGroup(group, index);
+    return root.key;
+  }
+
+  /**
+   * @return the number of items in {@param group} that come before {@param val}, whether or not
+   *     {@param val} is in the group itself, or -1 if {@param val} is not in the list.
+   */
+  public int indexInGroup(Object val, int group) {
+    checkGroup(group);
+    if (comparator() == null) {
+      throw new UnsupportedOperationException("Only sorted lists support group lookups");
+    }
+    @SuppressWarnings("unchecked")
+    final T key = (T) val;
+    SplayTree<T> v = (root == null ? null : root.splay().find(key, comparator()));
+    if (v == null) {
+      return -1;
+    }
+    root = v;
+    return v.indexInGroup(group);
+  }
+
+  private void checkGroup(int group) {
+    if (group < 0 || group >= groupCount) {
+      throw new IllegalArgumentException("No statistics kept for group " + group);
+    }
+  }
+
+  @Override
+  public boolean contains(Object val) {
+    return comparator() != null ? indexOf(val) != -1 : super.contains(val);
+  }
+
+  /** Number of items strictly less than {@param val}. */
+  private int rankOf(T val) {
+    if (root == null) {
+      return 0;
+    }
+    SplayTree<T> t = root.splay().lowerBound(val, comparator());
+    if (t == null) {
+      return size();
+    }
+    final int res = t.indexOf();
+    root = t;
+    return res;
+  }
+
+  /** Iterator over {@param remaining} items starting at position {@param index}. */
+  private Iterator<T> iterator(int index, int remaining) {
+    if (remaining <= 0) {
+      return new Itr(null, 0);
+    }
+    root = root.splay().get(index);
+    return new Itr(root, remaining);
+  }
+
   @Override
   public int indexOf(Object val) {
     if (comparator() == null) {
@@ -254,4 +432,336 @@ public final class SplayList<T> extends AbstractList<T> implements List<T>, Sort
   public int lastIndexOf(Object val) {
     return indexOf(val);
   }
+
+  private class Itr implements Iterator<T> {
+    private SplayTree<T> next;
+    private SplayTree<T> lastReturned = null;
+    private int remaining;
+    private int expectedModCount = modCount;
+
+    Itr(SplayTree<T> next, int remaining) {
+      this.next = next;
+      this.remaining = remaining;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return remaining > 0;
+    }
+
+    @Override
+    public T next() {
+      checkForComodification();
+      if (remaining <= 0) {
+        throw new NoSuchElementException();
+      }
+      lastReturned = next;
+      next = (--remaining > 0 ? next.successor() : null);
+      return lastReturned.key;
+    }
+
+    @Override
+    public void remove() {
+      if (lastReturned == null) {
+        throw new IllegalStateException();
+      }
+      checkForComodification();
+      root = delete(lastReturned);
+      lastReturned = null;
+      expectedModCount = modCount;
+      afterRemove();
+    }
+
+    void afterRemove() {}
+
+    private void checkForComodification() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+    }
+  }
+
+  private final class RangeSpliterator implements Spliterator<T> {
+    /** Node at {@link #index}, or null if it hasn't been looked up yet. */
+    private SplayTree<T> next;
+    private int index;
+    private final int fence;
+    private final int expectedModCount;
+
+    RangeSpliterator(SplayTree<T> next, int index, int fence, int expectedModCount) {
+      this.next = next;
+      this.index = index;
+      this.fence = fence;
+      this.expectedModCount = expectedModCount;
+    }
+
+    private SplayTree<T> next() {
+      if (next == null) {
+        next = root.top().peek(index);
+      }
+      return next;
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+      final int mid = (index + fence) >>> 1;
+      if (mid <= index) {
+        return null;
+      }
+      final Spliterator<T> prefix = new RangeSpliterator(next, index, mid, expectedModCount);
+      next = null;
+      index = mid;
+      return prefix;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (index >= fence) {
+        return false;
+      }
+      final T res = next().key;
+      next = (++index < fence ? next.successor() : null);
+      action.accept(res);
+      return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+      if (index < fence) {
+        for (SplayTree<T> t = next(); index < fence; t = t.successor()) {
+          index++;
+          action.accept(t.key);
+        }
+        next = null;
+      }
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+    }
+
+    @Override
+    public long estimateSize() {
+      return fence - index;
+    }
+
+    @Override
+    public int characteristics() {
+      return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED
+          | (comp != null ? Spliterator.SORTED | Spliterator.DISTINCT : 0);
+    }
+
+    @Override
+    public Comparator<? super T> getComparator() {
+      if (comp == null) {
+        throw new IllegalStateException();
+      }
+      return comp;
+    }
+  }
+
+  /** Elements between two optional bounds, in the sense of {@link SortedSet#subSet}. */
+  private final class SortedView extends AbstractSet<T> implements SortedSet<T> {
+    private final boolean hasFrom;
+    private final T from;
+    private final boolean hasTo;
+    private final T to;
+
+    SortedView(boolean hasFrom, T from, boolean hasTo, T to) {
+      if (comp == null) {
+        throw new UnsupportedOperationException("Unordered lists do not support sorted views");
+      }
+      if (hasFrom && hasTo && comp.compare(from, to) > 0) {
+        throw new IllegalArgumentException("fromElement > toElement");
+      }
+      this.hasFrom = hasFrom;
+      this.from = from;
+      this.hasTo = hasTo;
+      this.to = to;
+    }
+
+    private boolean tooLow(T val) {
+      return hasFrom && comp.compare(val, from) < 0;
+    }
+
+    private boolean tooHigh(T val) {
+      return hasTo && comp.compare(val, to) >= 0;
+    }
+
+    private int lo() {
+      return hasFrom ? rankOf(from) : 0;
+    }
+
+    private int hi() {
+      return hasTo ? rankOf(to) : SplayList.this.size();
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+      return comp;
+    }
+
+    @Override
+    public int size() {
+      return Math.max(0, hi() - lo());
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+      final int lo = lo();
+      return SplayList.this.iterator(lo, hi() - lo);
+    }
+
+    @Override
+    public boolean contains(Object val) {
+      @SuppressWarnings("unchecked")
+      final T t = (T) val;
+      return !tooLow(t) && !tooHigh(t) && SplayList.this.contains(val);
+    }
+
+    @Override
+    public boolean add(T val) {
+      if (tooLow(val) || tooHigh(val)) {
+        throw new IllegalArgumentException("Value out of range");
+      }
+      return SplayList.this.add(val);
+    }
+
+    @Override
+    public boolean remove(Object val) {
+      @SuppressWarnings("unchecked")
+      final T t = (T) val;
+      return !tooLow(t) && !tooHigh(t) && SplayList.this.remove(val);
+    }
+
+    @Override
+    public T first() {
+      final int lo = lo();
+      if (lo >= hi()) {
+        throw new NoSuchElementException();
+      }
+      return SplayList.this.get(lo);
+    }
+
+    @Override
+    public T last() {
+      final int hi = hi();
+      if (lo() >= hi) {
+        throw new NoSuchElementException();
+      }
+      return SplayList.this.get(hi - 1);
+    }
+
+    @Override
+    public SortedSet<T> headSet(T toElement) {
+      return subSet(hasFrom, from, true, toElement);
+    }
+
+    @Override
+    public SortedSet<T> tailSet(T fromElement) {
+      return subSet(true, fromElement, hasTo, to);
+    }
+
+    @Override
+    public SortedSet<T> subSet(T fromElement, T toElement) {
+      return subSet(true, fromElement, true, toElement);
+    }
+
+    private SortedSet<T> subSet(boolean hasFrom, T from, boolean hasTo, T to) {
+      if ((hasFrom && (tooLow(from) || (this.hasTo && comp.compare(from, this.to) > 0)))
+          || (hasTo && (tooLow(to) || (this.hasTo && comp.compare(to, this.to) > 0)))) {
+        throw new IllegalArgumentException("Bound out of range");
+      }
+      return new SortedView(hasFrom, from, hasTo, to);
+    }
+  }
+
+  /** Positional slice of the list, in the sense of {@link List#subList}. */
+  private final class SubList extends AbstractList<T> {
+    private final int offset;
+    private int size;
+    private int expectedModCount = SplayList.this.modCount;
+
+    SubList(int fromIndex, int toIndex) {
+      this.offset = fromIndex;
+      this.size = toIndex - fromIndex;
+    }
+
+    private void checkForComodification() {
+      if (SplayList.this.modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+    }
+
+    private void checkIndex(int index, int limit) {
+      if (index < 0 || index >= limit) {
+        throw new IndexOutOfBoundsException(index + " of " + size);
+      }
+    }
+
+    @Override
+    public int size() {
+      checkForComodification();
+      return size;
+    }
+
+    @Override
+    public T get(int index) {
+      checkForComodification();
+      checkIndex(index, size);
+      return SplayList.this.get(offset + index);
+    }
+
+    @Override
+    public T set(int index, T value) {
+      checkForComodification();
+      checkIndex(index, size);
+      final T res = SplayList.this.set(offset + index, value);
+      expectedModCount = SplayList.this.modCount;
+      return res;
+    }
+
+    @Override
+    public void add(int index, T value) {
+      checkForComodification();
+      checkIndex(index, size + 1);
+      SplayList.this.add(offset + index, value);
+      expectedModCount = SplayList.this.modCount;
+      size++;
+    }
+
+    @Override
+    public T remove(int index) {
+      checkForComodification();
+      checkIndex(index, size);
+      final T res = SplayList.this.remove(offset + index);
+      expectedModCount = SplayList.this.modCount;
+      size--;
+      return res;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+      checkForComodification();
+      if (size == 0) {
+        return SplayList.this.iterator(0, 0);
+      }
+      root = root.splay().get(offset);
+      return new Itr(root, size) {
+        @Override
+        public T next() {
+          checkForComodification();
+          return super.next();
+        }
+
+        @Override
+        void afterRemove() {
+          SubList.this.expectedModCount = SplayList.this.modCount;
+          size--;
+        }
+      };
+    }
+  }
 }
@@ -4,6 +4,13 @@ import java.util.Comparator;
 
 final class SplayTree<T> {
   int size = 1;
+
+  /**
+   * Optional per-group order statistics: {@link #groups} is a bitmask of the groups this key
+   * belongs to, and {@link #groupSize} counts members of each group in this subtree.
+   */
+  long groups = 0;
+  int[] groupSize = null;
   SplayTree<T> l = null;
   SplayTree<T> r = null;
   SplayTree<T> p = null;
@@ -89,6 +96,62 @@ final class SplayTree<T> {
     }
     return res.splay();
   }
+
+  /**
+   * Read-only lookups.
+   *
+   * These never splay, so the shape of the tree is left alone and several readers can walk it
+   * at the same time. The flip side is that there is no amortised bound on their cost.
+   */
+  public SplayTree<T> top() {
+    SplayTree<T> res = this;
+    while (res.p != null) {
+      res = res.p;
+    }
+    return res;
+  }
+
+  public SplayTree<T> leftmost() {
+    SplayTree<T> res = this;
+    while (res.l != null) {
+      res = res.l;
+    }
+    return res;
+  }
+
+  public SplayTree<T> successor() {
+    if (r != null) {
+      return r.leftmost();
+    }
+    SplayTree<T> cur = this;
+    while (cur.p != null && cur.p.r == cur) {
+      cur = cur.p;
+    }
+    return cur.p;
+  }
+
+  public SplayTree<T> peek(int index) {
+    SplayTree<T> cur = this;
+    while (true) {
+      int ls = (cur.l != null ? cur.l.size : 0);
+      if (index == ls) return cur;
+      if (index < ls) {
+        cur = cur.l;
+      } else {
+        cur = cur.r;
+        index -= ls + 1;
+      }
+    }
+  }
+
+  /** Replace both children at once, eg. when assembling a tree bottom-up. */
+  public SplayTree<T> setChildren(SplayTree<T> l, SplayTree<T> r) {
+    if ((this.l = l) != null) l.p = this;
+    if ((this.r = r) != null) r.p = this;
+    updateSize();
+    return this;
+  }
+
   private void setL(SplayTree<T> l) {
     if ((this.l = l) != null) l.p = this;
     updateSize();
@@ -101,6 +164,46 @@ final class SplayTree<T> {
 
   private void updateSize() {
     size = 1 + (l != null ? l.size : 0) + (r != null ? r.size : 0);
+    if (groupSize != null) {
+      for (int g = 0; g < groupSize.length; g++) {
+        groupSize[g] = (int) ((groups >>> g) & 1)
+            + (l != null ? l.groupSize[g] : 0)
+            + (r != null ? r.groupSize[g] : 0);
+      }
+    }
+  }
+
+  /** Must be called on a lone node, before it is linked into a tree. */
+  public SplayTree<T> setGroups(long groups, int groupCount) {
+    this.groups = groups;
+    this.groupSize = new int[groupCount];
+    updateSize();
+    return this;
+  }
+
+  public boolean inGroup(int group) {
+    return ((groups >>> group) & 1) != 0;
+  }
+
+  public SplayTree<T> getInGroup(int group, int index) {
+    SplayTree<T> cur = this;
+    while (true) {
+      int ls = (cur.l != null ? cur.l.groupSize[group] : 0);
+      if (index < ls) {
+        cur = cur.l;
+      } else if (index == ls && cur.inGroup(group)) {
+        return cur.splay();
+      } else {
+        index -= ls + (cur.inGroup(group) ? 1 : 0);
+        cur = cur.r;
+      }
+    }
+  }
+
+  /** Number of members of {@param group} strictly before this node. */
+  public int indexInGroup(int group) {
+    splay();
+    return (l != null ? l.groupSize[group] : 0);
   }
 
   private void rol() {
@@ -207,6 +310,24 @@ final class SplayTree<T> {
     return null;
   }
 
+  /** First node not less than {@param item}, or null if there is none. */
+  public SplayTree<T> lowerBound(T item, Comparator<? super T> comparator) {
+    SplayTree<T> cur = this;
+    SplayTree<T> top = this;
+    SplayTree<T> res = null;
+    while (cur != null) {
+      top = cur;
+      if (comparator.compare(item, cur.key) <= 0) {
+        res = cur;
+        cur = cur.l;
+      } else {
+        cur = cur.r;
+      }
+    }
+    top.splay();
+    return res;
+  }
+
   public int indexOf() {
     splay();
     return (l != null ? l.size : 0);
@@ -0,0 +1,214 @@
+package me.hex539.contest;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free queue between exactly one producer thread and exactly one consumer thread.
+ *
+ * <p>Elements are published through a preallocated array of slots: a non-null slot is ready to
+ * be taken and a null slot is free, so neither side ever needs a lock or a per-element node.
+ *
+ * <p>A bounded buffer holds at most {@code capacity} elements and {@link #put} waits while it is
+ * full. An unbounded buffer never waits; when its array fills up the producer links in a fresh
+ * one and the consumer follows it once the old array has been drained.
+ *
+ * <p>Either side can {@link #close} the buffer to stop the other one from waiting on it.
+ */
+public final class SpscRingBuffer<T> {
+
+  /** What a thread does while the other side catches up. */
+  public enum WaitStrategy {
+    /** Busy-wait. Lowest latency, but burns a whole core while idle. */
+    SPIN,
+
+    /** Yield the processor between checks. */
+    YIELD,
+
+    /**
+     * Yield for a while, then park until the other side wakes this one up. Costs nothing while
+     * idle, but every put and take has to check whether the other side needs waking.
+     */
+    PARK;
+
+    private static final int YIELD_TRIES = 100;
+
+    /** @return whether to park until woken up, rather than just check again. */
+    boolean idle(int attempt) throws InterruptedException {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      switch (this) {
+        case SPIN:
+          return false;
+        case YIELD:
+          Thread.yield();
+          return false;
+        case PARK:
+          if (attempt < YIELD_TRIES) {
+            Thread.yield();
+            return false;
+          }
+          return true;
+      }
+      throw new AssertionError(this);
+    }
+  }
+
+  /** Written in place of an element to tell the consumer to move on to the next array. */
+  private static final Object JUMP = new Object();
+
+  /** Array size used for each link of an unbounded buffer. */
+  private static final int UNBOUNDED_CHUNK = 1024;
+
+  private final int capacity;
+  private final int mask;
+  private final WaitStrategy waitStrategy;
+
+  private volatile boolean closed = false;
+
+  /** Threads that are parked, or about to park, waiting for the other side. */
+  private volatile Thread parkedProducer = null;
+  private volatile Thread parkedConsumer = null;
+
+  // Only touched by the producer.
+  private AtomicReferenceArray<Object> producerSlots;
+  private long producerIndex;
+
+  // Only touched by the consumer.
+  private AtomicReferenceArray<Object> consumerSlots;
+  private long consumerIndex;
+
+  /**
+   * @param capacity maximum number of elements waiting to be taken. Zero or negative means no
+   *                 limit.
+   */
+  public SpscRingBuffer(int capacity, WaitStrategy waitStrategy) {
+    this.capacity = Math.max(capacity, 0);
+    this.waitStrategy = waitStrategy;
+
+    final int length = this.capacity > 0
+        ? Integer.highestOneBit(Math.max(this.capacity, 2) * 2 - 1)
+        : UNBOUNDED_CHUNK;
+    this.mask = length - 1;
+    this.producerSlots = newSlots();
+    this.consumerSlots = producerSlots;
+  }
+
+  /**
+   * Adds {@param element}, waiting for space first if the buffer is bounded and full.
+   *
+   * @throws CancellationException if the buffer is closed while waiting.
+   */
+  public void put(T element) throws InterruptedException {
+    if (element == null) {
+      throw new NullPointerException();
+    }
+    final long index = producerIndex;
+    final int offset = (int) index & mask;
+
+    if (capacity > 0) {
+      if (index >= capacity) {
+        final int oldest = (int) (index - capacity) & mask;
+        for (int attempt = 0; producerSlots.get(oldest) != null; attempt++) {
+          if (closed) {
+            throw new CancellationException("Buffer closed");
+          }
+          if (waitStrategy.idle(attempt)) {
+            // Announce first and check again after, so that a poll() in between can't be missed.
+            parkedProducer = Thread.currentThread();
+            if (producerSlots.get(oldest) != null && !closed) {
+              LockSupport.park(this);
+            }
+            parkedProducer = null;
+          }
+        }
+      }
+      store(producerSlots, offset, element);
+    } else if (producerSlots.get((offset + 1) & mask) == null) {
+      store(producerSlots, offset, element);
+    } else {
+      // About to wrap into elements the consumer hasn't reached yet. Continue in a new array at
+      // the same offset, and leave a marker behind so the consumer knows where to find it.
+      final AtomicReferenceArray<Object> next = newSlots();
+      next.lazySet(offset, element);
+      producerSlots.lazySet(mask + 1, next);
+      store(producerSlots, offset, JUMP);
+      producerSlots = next;
+    }
+    producerIndex = index + 1;
+  }
+
+  /**
+   * Removes and returns the oldest element, waiting for one to arrive if there are none.
+   *
+   * @return null if the buffer has been closed and there is nothing left in it.
+   */
+  public T take() throws InterruptedException {
+    T element;
+    for (int attempt = 0; !closed; attempt++) {
+      if ((element = poll()) != null) {
+        return element;
+      }
+      if (waitStrategy.idle(attempt)) {
+        // Announce first and check again after, so that a put() in between can't be missed.
+        parkedConsumer = Thread.currentThread();
+        if (consumerSlots.get((int) consumerIndex & mask) == null && !closed) {
+          LockSupport.park(this);
+        }
+        parkedConsumer = null;
+      }
+    }
+    return poll();
+  }
+
+  /**
+   * Wakes up and fails any {@link #put} that is waiting, now or later. {@link #take} stops waiting
+   * too, and returns null once whatever was already put has been taken.
+   */
+  public void close() {
+    closed = true;
+    LockSupport.unpark(parkedProducer);
+    LockSupport.unpark(parkedConsumer);
+  }
+
+  /** Removes and returns the oldest element, or returns null if there are none. */
+  @SuppressWarnings("unchecked")
+  public T poll() {
+    final int offset = (int) consumerIndex & mask;
+    Object element = consumerSlots.get(offset);
+    if (element == null) {
+      return null;
+    }
+    if (element == JUMP) {
+      consumerSlots = (AtomicReferenceArray<Object>) consumerSlots.get(mask + 1);
+      element = consumerSlots.get(offset);
+    }
+    store(consumerSlots, offset, null);
+    consumerIndex++;
+    return (T) element;
+  }
+
+  /**
+   * Writes one slot, and with {@link WaitStrategy#PARK} also wakes up the other side in case it
+   * is parked waiting for that slot to change.
+   */
+  private void store(AtomicReferenceArray<Object> slots, int offset, Object value) {
+    if (waitStrategy != WaitStrategy.PARK) {
+      slots.lazySet(offset, value);
+      return;
+    }
+    // This has to be a full volatile write. A lazy one could be reordered after reading the
+    // parked thread, which would let the other side check the slot, miss the write and park
+    // just after we decided there was no one to wake up.
+    slots.set(offset, value);
+    // Filling a slot is what the consumer waits for, and emptying one is what the producer does.
+    LockSupport.unpark(value != null ? parkedConsumer : parkedProducer);
+  }
+
+  private AtomicReferenceArray<Object> newSlots() {
+    // Unbounded buffers keep a link to the next array in one extra slot at the end.
+    return new AtomicReferenceArray<>(mask + 1 + (capacity > 0 ? 0 : 1));
+  }
+}
@@ -0,0 +1,206 @@
+package me.hex539.contest;
+
+import java.lang.ref.WeakReference;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Array that is patched in place, but can still hand out immutable snapshots of itself.
+ *
+ * <p>The newest snapshot reads straight from the shared array. When the array is written to
+ * after that, the snapshot is superseded: every value overwritten from then on is logged against
+ * the most recently superseded snapshot, and each superseded snapshot links to the one after it.
+ * An old snapshot that is read again rebuilds its own copy once, from the shared array and the
+ * logs along that chain. Old snapshots that are never read again cost nothing beyond their logs,
+ * and once nothing refers to them any more they stop being logged to at all.
+ *
+ * <p>Writes must all come from one thread, but snapshots can be read from any thread.
+ */
+public final class VersionedArray<T> {
+  private final Object lock = new Object();
+
+  private Object[] values = new Object[0];
+  private int size = 0;
+
+  /** Snapshot of the current contents, if one was handed out since the last write. */
+  private Snapshot<T> current = null;
+
+  /** The last snapshot to be superseded, which overwritten values are logged against. */
+  private WeakReference<Snapshot<T>> previous = null;
+
+  public int size() {
+    return size;
+  }
+
+  public T get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+    }
+    @SuppressWarnings("unchecked")
+    final T res = (T) values[index];
+    return res;
+  }
+
+  public void set(int index, T value) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+    }
+    if (values[index] == value) {
+      return;
+    }
+    synchronized (lock) {
+      supersede();
+      log(index);
+      values[index] = value;
+    }
+  }
+
+  /** Grows or shrinks the array. New elements start out as null. */
+  public void setSize(int newSize) {
+    if (newSize < 0) {
+      throw new IllegalArgumentException("Negative size: " + newSize);
+    }
+    if (newSize == size) {
+      return;
+    }
+    synchronized (lock) {
+      supersede();
+      // Anything past the end is kept null, so that growing again doesn't need to clear it.
+      for (int i = newSize; i < size; i++) {
+        log(i);
+        values[i] = null;
+      }
+      if (newSize > values.length) {
+        values = Arrays.copyOf(values, Math.max(newSize, values.length * 2));
+      }
+      size = newSize;
+    }
+  }
+
+  /** @return an unmodifiable list of the current contents, unaffected by later writes. */
+  public List<T> snapshot() {
+    synchronized (lock) {
+      if (current == null) {
+        current = new Snapshot<>(this, size);
+      }
+      return current;
+    }
+  }
+
+  private void supersede() {
+    if (current == null) {
+      return;
+    }
+    final Snapshot<T> last = (previous != null ? previous.get() : null);
+    if (last != null) {
+      last.next = current;
+    }
+    previous = new WeakReference<>(current);
+    current = null;
+  }
+
+  private void log(int index) {
+    final Snapshot<T> last = (previous != null ? previous.get() : null);
+    if (last != null) {
+      last.log(index, values[index]);
+    } else {
+      previous = null;
+    }
+  }
+
+  private static final class Snapshot<T> extends AbstractList<T> implements RandomAccess {
+    private final VersionedArray<T> owner;
+    private final int size;
+
+    /** Own copy of the contents, once this snapshot has been superseded and read. */
+    private Object[] values = null;
+
+    /** Next snapshot to be superseded after this one. */
+    private Snapshot<T> next = null;
+
+    /** Values overwritten while this was the last superseded snapshot, in order. */
+    private int[] loggedIndices = null;
+    private Object[] loggedValues = null;
+    private int logSize = 0;
+
+    Snapshot(VersionedArray<T> owner, int size) {
+      this.owner = owner;
+      this.size = size;
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+      if (index < 0 || index >= size) {
+        throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+      }
+      synchronized (owner.lock) {
+        if (values != null) {
+          return (T) values[index];
+        }
+        if (owner.current == this) {
+          return (T) owner.values[index];
+        }
+        values = rebuild();
+        return (T) values[index];
+      }
+    }
+
+    @Override
+    public Object[] toArray() {
+      synchronized (owner.lock) {
+        if (values == null && owner.current != this) {
+          values = rebuild();
+        }
+        return Arrays.copyOf(values != null ? values : owner.values, size);
+      }
+    }
+
+    private void log(int index, Object value) {
+      if (loggedIndices == null) {
+        loggedIndices = new int[4];
+        loggedValues = new Object[4];
+      } else if (logSize == loggedIndices.length) {
+        loggedIndices = Arrays.copyOf(loggedIndices, logSize * 2);
+        loggedValues = Arrays.copyOf(loggedValues, logSize * 2);
+      }
+      loggedIndices[logSize] = index;
+      loggedValues[logSize] = value;
+      logSize++;
+    }
+
+    /**
+     * Start from the contents of the first later snapshot that has its own copy, or else from the
+     * shared array, and undo everything logged since this snapshot was superseded.
+     */
+    private Object[] rebuild() {
+      final List<Snapshot<T>> chain = new ArrayList<>();
+      Object[] base = owner.values;
+      for (Snapshot<T> s = this; s != null; s = s.next) {
+        if (s != this && s.values != null) {
+          base = s.values;
+          break;
+        }
+        chain.add(s);
+      }
+      final Object[] res = Arrays.copyOf(base, size);
+      for (int k = chain.size(); k --> 0;) {
+        final Snapshot<T> s = chain.get(k);
+        for (int i = s.logSize; i --> 0;) {
+          if (s.loggedIndices[i] < size) {
+            res[s.loggedIndices[i]] = s.loggedValues[i];
+          }
+        }
+      }
+      return res;
+    }
+  }
+}
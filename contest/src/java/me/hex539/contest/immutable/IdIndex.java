@@ -0,0 +1,59 @@
+package me.hex539.contest.immutable;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.function.Function;
+import me.hex539.contest.IdInterner;
+
+/**
+ * Read-only lookup from string IDs to the items of a list.
+ *
+ * <p>Built once and never changed afterwards, so it is safe to read from any number of threads.
+ * Lookups are a single probe into an open-addressing table on average, and unlike searching a
+ * sorted list they neither allocate nor box anything.
+ */
+public final class IdIndex<T> {
+  private final List<T> items;
+  private final IdInterner ids;
+
+  /** Interned ID -> position in {@link #items}. If an ID appears twice, the first one wins. */
+  private final int[] positions;
+
+  private IdIndex(List<T> items, Function<? super T, String> key) {
+    this.items = items;
+    this.ids = new IdInterner(items.size());
+    this.positions = new int[items.size()];
+    for (int i = 0; i < items.size(); i++) {
+      final int seen = ids.size();
+      final int index = ids.intern(key.apply(items.get(i)));
+      if (index == seen) {
+        positions[index] = i;
+      }
+    }
+  }
+
+  /** @param items must not change afterwards. */
+  public static <T> IdIndex<T> of(List<T> items, Function<? super T, String> key) {
+    return new IdIndex<>(items, key);
+  }
+
+  /** @return the position of {@param id} in the list, or -1 if it is not there. */
+  public int indexOf(String id) {
+    final int index = ids.indexOf(id);
+    return index != -1 ? positions[index] : -1;
+  }
+
+  public Optional<T> getOpt(String id) {
+    final int position = indexOf(id);
+    return position != -1 ? Optional.of(items.get(position)) : Optional.empty();
+  }
+
+  public T get(String id) throws NoSuchElementException {
+    final int position = indexOf(id);
+    if (position == -1) {
+      throw new NoSuchElementException("No item with ID " + id);
+    }
+    return items.get(position);
+  }
+}
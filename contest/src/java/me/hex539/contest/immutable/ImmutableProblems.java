@@ -1,20 +1,17 @@
 package me.hex539.contest.immutable;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.Optional;
-import java.util.stream.IntStream;
 import me.hex539.contest.model.Problems;
 
 import edu.clics.proto.ClicsProto.*;
 
 public class ImmutableProblems implements Problems {
 
-  private final Map<String, Integer> indicesById;
-  private final List<Problem> problemsById;
-  private List<Problem> problemsByIndex;
+  private final IdIndex<Problem> indicesById;
+  private final List<Problem> problemsByIndex;
 
   public static ImmutableProblems of(Problems copy) {
     if (copy instanceof ImmutableProblems) {
@@ -24,10 +21,10 @@ public class ImmutableProblems implements Problems {
   }
 
   ImmutableProblems(Problems copy) {
-    indicesById = IntStream.range(0, copy.getProblems().size())
-        .collect(HashMap::new, (m, i) -> m.put(copy.getProblems().get(i).getId(), i), Map::putAll);
+    indicesById = IdIndex.of(
+        Collections.unmodifiableList(new ArrayList<>(copy.getProblems())),
+        Problem::getId);
     problemsByIndex = SortedLists.sortBy(copy.getProblems(), Problem::getOrdinal);
-    problemsById = SortedLists.sortBy(copy.getProblems(), Problem::getId);
   }
 
   @Override
@@ -37,11 +34,15 @@ public class ImmutableProblems implements Problems {
 
   @Override
   public Problem getProblem(String id) throws NoSuchElementException {
-    return SortedLists.binarySearch(problemsById, p -> id.compareTo(p.getId())).get();
+    return indicesById.get(id);
   }
 
   @Override
   public int getProblemIndex(String id) throws NoSuchElementException {
-    return Optional.ofNullable(indicesById.get(id)).get();
+    final int index = indicesById.indexOf(id);
+    if (index == -1) {
+      throw new NoSuchElementException("No problem with ID " + id);
+    }
+    return index;
   }
 }
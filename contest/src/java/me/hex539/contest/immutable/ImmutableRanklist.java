@@ -9,7 +9,7 @@ import edu.clics.proto.ClicsProto.*;
 public class ImmutableRanklist implements Ranklist {
 
   private final List<ScoreboardRow> rows;
-  private final List<ScoreboardRow> rowsByTeamId;
+  private final IdIndex<ScoreboardRow> rowsByTeamId;
 
   public static ImmutableRanklist of(Ranklist copy) {
     if (copy instanceof ImmutableRanklist) {
@@ -20,7 +20,7 @@ public class ImmutableRanklist implements Ranklist {
 
   ImmutableRanklist(Ranklist copy) {
     rows = copy.getRows();
-    rowsByTeamId = SortedLists.sortBy(rows, ScoreboardRow::getTeamId);
+    rowsByTeamId = IdIndex.of(rows, ScoreboardRow::getTeamId);
   }
 
   @Override
@@ -35,7 +35,6 @@ public class ImmutableRanklist implements Ranklist {
 
   @Override
   public ScoreboardRow getRow(Team team) throws NoSuchElementException {
-    final String id = team.getId();
-    return SortedLists.binarySearch(rowsByTeamId, row -> id.compareTo(row.getTeamId())).get();
+    return rowsByTeamId.get(team.getId());
   }
 }
@@ -15,6 +15,10 @@ public class ImmutableTeams implements Teams {
   private final List<Group> groups;
   private final List<Team> teams;
 
+  private final IdIndex<Organization> organizationsById;
+  private final IdIndex<Group> groupsById;
+  private final IdIndex<Team> teamsById;
+
   public static ImmutableTeams of(Teams source) {
     if (source instanceof ImmutableTeams) {
       return (ImmutableTeams) source;
@@ -26,6 +30,10 @@ public class ImmutableTeams implements Teams {
     organizations = SortedLists.sortBy(source.getOrganizations(), Organization::getId);
     groups = SortedLists.sortBy(source.getGroups(), Group::getId);
     teams = SortedLists.sortBy(source.getTeams(), Team::getId);
+
+    organizationsById = IdIndex.of(organizations, Organization::getId);
+    groupsById = IdIndex.of(groups, Group::getId);
+    teamsById = IdIndex.of(teams, Team::getId);
   }
 
   @Override
@@ -45,16 +53,16 @@ public class ImmutableTeams implements Teams {
 
   @Override
   public Optional<Organization> getOrganizationOpt(String id) {
-    return SortedLists.binarySearch(organizations, org -> id.compareTo(org.getId()));
+    return organizationsById.getOpt(id);
   }
 
   @Override
   public Optional<Group> getGroupOpt(String id) {
-    return SortedLists.binarySearch(groups, group -> id.compareTo(group.getId()));
+    return groupsById.getOpt(id);
   }
 
   @Override
   public Optional<Team> getTeamOpt(String id) {
-    return SortedLists.binarySearch(teams, team -> id.compareTo(team.getId()));
+    return teamsById.getOpt(id);
   }
 }
@@ -1,10 +1,13 @@
 package me.hex539.contest.model;
 
+import com.google.protobuf.Duration;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import edu.clics.proto.ClicsProto.*;
 
@@ -34,10 +37,24 @@ public interface Judge {
     return containsJudgementType(type.getId());
   }
 
+  /** @return every judgement in order of end contest time, unaffected by later changes. */
   default List<Judgement> getJudgements() {
     return Collections.emptyList();
   }
 
+  /**
+   * @return judgements finishing in [{@param from}, {@param to}) of contest time, in the same
+   *         order as {@link #getJudgements()}. Either bound can be null to leave it open.
+   */
+  default List<Judgement> getJudgementsBetween(Duration from, Duration to) {
+    final Comparator<Duration> order =
+        Comparator.comparingLong(Duration::getSeconds).thenComparingInt(Duration::getNanos);
+    return getJudgements().stream()
+        .filter(j -> from == null || order.compare(j.getEndContestTime(), from) >= 0)
+        .filter(j -> to == null || order.compare(j.getEndContestTime(), to) < 0)
+        .collect(Collectors.toList());
+  }
+
   default Optional<Judgement> getJudgementOpt(String id) {
     return getJudgements().stream().filter(x -> id.equals(x.getId())).findFirst();
   }
@@ -50,10 +67,24 @@ public interface Judge {
     return containsJudgement(judgement.getId());
   }
 
+  /** @return every submission in order of contest time, unaffected by later changes. */
   default List<Submission> getSubmissions() {
     return Collections.emptyList();
   }
 
+  /**
+   * @return submissions made in [{@param from}, {@param to}) of contest time, in the same order
+   *         as {@link #getSubmissions()}. Either bound can be null to leave it open.
+   */
+  default List<Submission> getSubmissionsBetween(Duration from, Duration to) {
+    final Comparator<Duration> order =
+        Comparator.comparingLong(Duration::getSeconds).thenComparingInt(Duration::getNanos);
+    return getSubmissions().stream()
+        .filter(s -> from == null || order.compare(s.getContestTime(), from) >= 0)
+        .filter(s -> to == null || order.compare(s.getContestTime(), to) < 0)
+        .collect(Collectors.toList());
+  }
+
   default Optional<Submission> getSubmissionOpt(String id) {
     return getSubmissions().stream().filter(x -> id.equals(x.getId())).findFirst();
   }
@@ -11,6 +11,15 @@ public interface Ranklist {
     default void onProblemScoreChanged(Team team, ScoreboardProblem problem) {}
     default void onScoreChanged(Team team, ScoreboardScore score) {}
     default void onTeamRankChanged(Team team, int oldRank, int newRank) {}
+
+    /** Several problems and the overall score of one team changed at once. */
+    default void onTeamScoreChanged(
+        Team team,
+        List<ScoreboardProblem> problems,
+        ScoreboardScore score) {
+      problems.forEach(problem -> onProblemScoreChanged(team, problem));
+      onScoreChanged(team, score);
+    }
   }
 
   List<ScoreboardRow> getRows();
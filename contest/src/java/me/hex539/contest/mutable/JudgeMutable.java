@@ -1,14 +1,18 @@
 package me.hex539.contest.mutable;
 
 import com.google.auto.value.AutoValue;
+import com.google.protobuf.Duration;
 import com.google.protobuf.util.Durations;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
+import me.hex539.contest.IdInterner;
 import me.hex539.contest.model.Judge;
 import me.hex539.contest.model.Problems;
 import me.hex539.contest.model.Teams;
@@ -22,8 +26,20 @@ public abstract class JudgeMutable implements Judge, Judge.Observer {
   public abstract Teams getTeams();
 
   private final Map<String, JudgementType> judgementTypes = new HashMap<>();
-  private final Map<String, Submission> submissions = new HashMap<>();
-  private final Map<String, Judgement> judgements = new HashMap<>();
+
+  /** Submissions and judgements by interned ID. Neither is ever removed, so there are no gaps. */
+  private final IdInterner submissionIds = new IdInterner();
+  private final List<Submission> submissions = new ArrayList<>();
+  private final IdInterner judgementIds = new IdInterner();
+  private final List<Judgement> judgements = new ArrayList<>();
+
+  /** Interned IDs in order of contest time and end contest time respectively. */
+  private final TimeIndex submissionsByTime = new TimeIndex();
+  private final TimeIndex judgementsByTime = new TimeIndex();
+
+  /** Copies of everything in time order, handed out until the next change makes them stale. */
+  private List<Submission> submissionsInOrder = null;
+  private List<Judgement> judgementsInOrder = null;
 
   public static Builder newBuilder() {
     return new AutoValue_JudgeMutable.Builder();
@@ -68,30 +84,50 @@ public abstract class JudgeMutable implements Judge, Judge.Observer {
 
   @Override
   public List<Judgement> getJudgements() {
-    return judgements.values().stream()
-        .sorted((a, b) -> Long.compare(
-            Durations.toNanos(a.getEndContestTime()),
-            Durations.toNanos(b.getEndContestTime())))
-        .collect(Collectors.toList());
+    if (judgementsInOrder == null) {
+      judgementsInOrder = copy(judgements, judgementsByTime, 0, judgementsByTime.size());
+    }
+    return judgementsInOrder;
+  }
+
+  @Override
+  public List<Judgement> getJudgementsBetween(Duration from, Duration to) {
+    return copy(judgements, judgementsByTime, from, to);
+  }
+
+  @Override
+  public Optional<Judgement> getJudgementOpt(String id) {
+    final int index = judgementIds.indexOf(id);
+    return index != -1 ? Optional.of(judgements.get(index)) : Optional.empty();
+  }
+
+  @Override
+  public boolean containsJudgement(String id) {
+    return judgementIds.contains(id);
   }
 
   @Override
   public List<Submission> getSubmissions() {
-    return submissions.values().stream()
-        .sorted((a, b) -> Long.compare(
-            Durations.toNanos(a.getContestTime()),
-            Durations.toNanos(b.getContestTime())))
-        .collect(Collectors.toList());
+    if (submissionsInOrder == null) {
+      submissionsInOrder = copy(submissions, submissionsByTime, 0, submissionsByTime.size());
+    }
+    return submissionsInOrder;
+  }
+
+  @Override
+  public List<Submission> getSubmissionsBetween(Duration from, Duration to) {
+    return copy(submissions, submissionsByTime, from, to);
   }
 
   @Override
   public Optional<Submission> getSubmissionOpt(String id) {
-    return Optional.ofNullable(submissions.get(id));
+    final int index = submissionIds.indexOf(id);
+    return index != -1 ? Optional.of(submissions.get(index)) : Optional.empty();
   }
 
   @Override
   public boolean containsSubmission(String id) {
-    return submissions.containsKey(id);
+    return submissionIds.contains(id);
   }
 
   @Override
@@ -106,7 +142,9 @@ public abstract class JudgeMutable implements Judge, Judge.Observer {
     if (submission != null && !getProblems().containsProblem(submission.getProblemId())) {
       return;
     }
-    submissions.put(submission.getId(), submission);
+    final int index = put(submissionIds, submissions, submission.getId(), submission);
+    submissionsInOrder = null;
+    submissionsByTime.put(index, Durations.toNanos(submission.getContestTime()));
   }
 
   @Override
@@ -118,9 +156,42 @@ public abstract class JudgeMutable implements Judge, Judge.Observer {
   }
 
   public void onSubmissionJudged(Judgement judgement) {
-    if (!submissions.containsKey(judgement.getSubmissionId())) {
+    if (!submissionIds.contains(judgement.getSubmissionId())) {
       return;
     }
-    judgements.put(judgement.getId(), judgement);
+    final int index = put(judgementIds, judgements, judgement.getId(), judgement);
+    judgementsInOrder = null;
+    judgementsByTime.put(index, Durations.toNanos(judgement.getEndContestTime()));
+  }
+
+  private <T> int put(IdInterner ids, List<T> values, String id, T value) {
+    final int index = ids.intern(id);
+    if (index == values.size()) {
+      values.add(value);
+    } else {
+      values.set(index, value);
+    }
+    return index;
+  }
+
+  private static <T> List<T> copy(List<T> values, TimeIndex index, Duration from, Duration to) {
+    final int start = from != null ? index.lowerBound(Durations.toNanos(from)) : 0;
+    final int end = to != null ? index.lowerBound(Durations.toNanos(to)) : index.size();
+    return copy(values, index, start, Math.max(start, end));
+  }
+
+  /**
+   * Copies out positions [{@param start}, {@param end}) of the index. The index is already in
+   * time order, so this is a straight copy rather than a sort, and the result stays the same
+   * however the judge changes afterwards.
+   */
+  private static <T> List<T> copy(List<T> values, TimeIndex index, int start, int end) {
+    final Object[] res = new Object[end - start];
+    for (int i = start; i < end; i++) {
+      res[i - start] = values.get(index.get(i));
+    }
+    @SuppressWarnings("unchecked")
+    final List<T> list = (List<T>) Arrays.asList(res);
+    return Collections.unmodifiableList(list);
   }
 }
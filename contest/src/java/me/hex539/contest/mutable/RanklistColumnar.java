@@ -0,0 +1,368 @@
+package me.hex539.contest.mutable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+import me.hex539.contest.IdInterner;
+import me.hex539.contest.SplayList;
+import me.hex539.contest.model.Problems;
+import me.hex539.contest.model.Ranklist;
+import me.hex539.contest.model.Teams;
+
+import edu.clics.proto.ClicsProto.*;
+
+/**
+ * Ranklist that keeps scores in flat primitive columns instead of one protobuf builder per team.
+ *
+ * <p>Every team gets a dense slot. Per-problem state lives at {@code slot * problemCount +
+ * problem} in the cell columns, and the ordering is a {@link SplayList} of slots compared
+ * straight from the columns. Updates write a handful of array entries and never allocate.
+ * {@link ScoreboardRow} protos are only built when a caller asks for one, and the last one built
+ * for each team is kept until the team's score or rank changes.
+ *
+ * <p>Ordering is the same as {@link me.hex539.contest.Comparators.RowComparator}.
+ */
+public class RanklistColumnar implements Ranklist, Ranklist.Observer, Teams.Observer {
+  private final Teams teams;
+  private final Problems problems;
+  private final int problemCount;
+  private final String[] problemIds;
+
+  private final IdInterner teamIds = new IdInterner();
+  private final SplayList<Integer> order = new SplayList<>(this::compareSlots);
+
+  /** Per-team columns, indexed by slot. */
+  private Integer[] slotKeys = new Integer[0];
+  private boolean[] present = new boolean[0];
+  private boolean[] visible = new boolean[0];
+  private String[] names = new String[0];
+  private int[] numSolved = new int[0];
+  private long[] totalTime = new long[0];
+  private int[] solveCount = new int[0];
+  private ScoreboardRow[] built = new ScoreboardRow[0];
+
+  /** Per-cell columns, indexed by {@code slot * problemCount + problem}. */
+  private int[] numJudged = new int[0];
+  private int[] numPending = new int[0];
+  private boolean[] solved = new boolean[0];
+  private long[] time = new long[0];
+
+  /**
+   * Solve times of each team in ascending order, laid out like the cell columns. Only the first
+   * {@link #solveCount} entries of each team are meaningful.
+   */
+  private long[] solveTimes = new long[0];
+
+  private List<ScoreboardRow> rowsSnapshot = null;
+
+  public RanklistColumnar(Teams teams, Problems problems) {
+    this(teams, problems, Collections.emptyList(), x -> false);
+  }
+
+  public RanklistColumnar(
+      Teams teams,
+      Problems problems,
+      List<ScoreboardRow> rows,
+      Predicate<ScoreboardRow> filter) {
+    this.teams = teams;
+    this.problems = problems;
+    this.problemIds = problems.getProblems().stream().map(Problem::getId).toArray(String[]::new);
+    this.problemCount = problemIds.length;
+
+    final List<Integer> initial = new ArrayList<>();
+    for (ScoreboardRow row : rows) {
+      if (!filter.test(row)) {
+        continue;
+      }
+      final int slot = createSlot(teams.getTeam(row.getTeamId()));
+      numSolved[slot] = row.getScore().getNumSolved();
+      totalTime[slot] = row.getScore().getTotalTime();
+      for (ScoreboardProblem p : row.getProblemsList()) {
+        setCell(slot, problems.getProblemIndex(p.getProblemId()), p);
+      }
+      updateSolveTimes(slot);
+      initial.add(slotKeys[slot]);
+    }
+    order.addAll(initial);
+    teams.getTeams().forEach(this::onTeamAdded);
+  }
+
+  public Teams getTeams() {
+    return teams;
+  }
+
+  public Problems getProblems() {
+    return problems;
+  }
+
+  @Override
+  public List<ScoreboardRow> getRows() {
+    if (rowsSnapshot == null) {
+      final ScoreboardRow[] rows = new ScoreboardRow[order.size()];
+      int rank = 0;
+      for (Integer slot : order) {
+        rows[rank] = materialise(slot, rank + 1);
+        rank++;
+      }
+      rowsSnapshot = Collections.unmodifiableList(Arrays.asList(rows));
+    }
+    return rowsSnapshot;
+  }
+
+  @Override
+  public ScoreboardRow getRow(long index) throws NoSuchElementException {
+    if (index < 0 || index >= order.size()) {
+      throw new NoSuchElementException("No row with index " + index);
+    }
+    return rowsSnapshot != null
+        ? rowsSnapshot.get((int) index)
+        : materialise(order.get((int) index), (int) index + 1);
+  }
+
+  @Override
+  public ScoreboardRow getRow(Team team) throws NoSuchElementException {
+    final int slot = getSlot(team);
+    return materialise(slot, getRank(slot));
+  }
+
+  @Override
+  public long getRank(Team team) throws NoSuchElementException {
+    return getRank(getSlot(team));
+  }
+
+  @Override
+  public ScoreboardScore getScore(Team team) throws NoSuchElementException {
+    return buildScore(getSlot(team));
+  }
+
+  @Override
+  public ScoreboardProblem getAttempts(Team team, Problem problem) throws NoSuchElementException {
+    return buildCell(getSlot(team), problems.getProblemIndex(problem.getId()));
+  }
+
+  @Override
+  public void onTeamAdded(Team team) {
+    final int existing = teamIds.indexOf(team.getId());
+    if (existing != -1 && present[existing]) {
+      return;
+    }
+    final int slot = createSlot(team);
+    order.add(slotKeys[slot]);
+    rowsSnapshot = null;
+  }
+
+  @Override
+  public void onTeamRemoved(Team team) {
+    final int slot = getSlot(team);
+    order.remove(slotKeys[slot]);
+    present[slot] = false;
+    built[slot] = null;
+    rowsSnapshot = null;
+  }
+
+  @Override
+  public void onProblemScoreChanged(Team team, ScoreboardProblem upd) {
+    final int slot = getSlot(team);
+    final int cell = slot * problemCount + problems.getProblemIndex(upd.getProblemId());
+
+    // If solve status or time change, sort order can also change.
+    final boolean resort = upd.getSolved() != solved[cell] || upd.getTime() != time[cell];
+    if (resort) {
+      order.remove(slotKeys[slot]);
+    }
+    numJudged[cell] = upd.getNumJudged();
+    numPending[cell] = upd.getNumPending();
+    solved[cell] = upd.getSolved();
+    time[cell] = upd.getTime();
+    if (resort) {
+      updateSolveTimes(slot);
+      order.add(slotKeys[slot]);
+    }
+    built[slot] = null;
+    rowsSnapshot = null;
+  }
+
+  @Override
+  public void onScoreChanged(Team team, ScoreboardScore score) {
+    final int slot = getSlot(team);
+    if (score.getNumSolved() == numSolved[slot] && score.getTotalTime() == totalTime[slot]) {
+      return;
+    }
+    order.remove(slotKeys[slot]);
+    numSolved[slot] = score.getNumSolved();
+    totalTime[slot] = score.getTotalTime();
+    order.add(slotKeys[slot]);
+    built[slot] = null;
+    rowsSnapshot = null;
+  }
+
+  /** Same as the individual updates, but only moves the team's slot once. */
+  @Override
+  public void onTeamScoreChanged(
+      Team team,
+      List<ScoreboardProblem> problems,
+      ScoreboardScore score) {
+    final int slot = getSlot(team);
+    order.remove(slotKeys[slot]);
+    for (ScoreboardProblem upd : problems) {
+      setCell(slot, this.problems.getProblemIndex(upd.getProblemId()), upd);
+    }
+    numSolved[slot] = score.getNumSolved();
+    totalTime[slot] = score.getTotalTime();
+    updateSolveTimes(slot);
+    order.add(slotKeys[slot]);
+    built[slot] = null;
+    rowsSnapshot = null;
+  }
+
+  @Override
+  public void onTeamRankChanged(Team team, int oldRank, int newRank) {
+    // Already handled by onScoreChanged.
+  }
+
+  private int getSlot(Team team) throws NoSuchElementException {
+    final int slot = teamIds.indexOf(team.getId());
+    if (slot == -1 || !present[slot]) {
+      throw new NoSuchElementException("Team \"" + team.getId() + "\" does not exist.");
+    }
+    return slot;
+  }
+
+  private int getRank(int slot) {
+    return order.indexOf(slotKeys[slot]) + 1;
+  }
+
+  /** Claim (or reclaim) a slot for a team, with an empty score. */
+  private int createSlot(Team team) {
+    final int slot = teamIds.intern(team.getId());
+    if (slot >= slotKeys.length) {
+      grow(Math.max(16, slot * 2));
+    }
+    if (slotKeys[slot] == null) {
+      slotKeys[slot] = slot;
+    }
+    present[slot] = true;
+    visible[slot] = team.getGroupIdsList().stream()
+        .map(teams::getGroup)
+        .noneMatch(Group::getHidden);
+    names[slot] = team.getName();
+    numSolved[slot] = 0;
+    totalTime[slot] = 0;
+    solveCount[slot] = 0;
+    built[slot] = null;
+    final int from = slot * problemCount;
+    Arrays.fill(numJudged, from, from + problemCount, 0);
+    Arrays.fill(numPending, from, from + problemCount, 0);
+    Arrays.fill(solved, from, from + problemCount, false);
+    Arrays.fill(time, from, from + problemCount, 0);
+    return slot;
+  }
+
+  private void grow(int capacity) {
+    slotKeys = Arrays.copyOf(slotKeys, capacity);
+    present = Arrays.copyOf(present, capacity);
+    visible = Arrays.copyOf(visible, capacity);
+    names = Arrays.copyOf(names, capacity);
+    numSolved = Arrays.copyOf(numSolved, capacity);
+    totalTime = Arrays.copyOf(totalTime, capacity);
+    solveCount = Arrays.copyOf(solveCount, capacity);
+    built = Arrays.copyOf(built, capacity);
+    numJudged = Arrays.copyOf(numJudged, capacity * problemCount);
+    numPending = Arrays.copyOf(numPending, capacity * problemCount);
+    solved = Arrays.copyOf(solved, capacity * problemCount);
+    time = Arrays.copyOf(time, capacity * problemCount);
+    solveTimes = Arrays.copyOf(solveTimes, capacity * problemCount);
+  }
+
+  private void setCell(int slot, int problem, ScoreboardProblem p) {
+    final int cell = slot * problemCount + problem;
+    numJudged[cell] = p.getNumJudged();
+    numPending[cell] = p.getNumPending();
+    solved[cell] = p.getSolved();
+    time[cell] = p.getTime();
+  }
+
+  /** Insertion sort of the team's solve times. There are only ever a few dozen problems. */
+  private void updateSolveTimes(int slot) {
+    final int from = slot * problemCount;
+    int count = 0;
+    for (int i = from; i < from + problemCount; i++) {
+      if (!solved[i]) {
+        continue;
+      }
+      int j = from + count++;
+      for (; j > from && solveTimes[j - 1] > time[i]; j--) {
+        solveTimes[j] = solveTimes[j - 1];
+      }
+      solveTimes[j] = time[i];
+    }
+    solveCount[slot] = count;
+  }
+
+  private int compareSlots(Integer slotA, Integer slotB) {
+    final int a = slotA;
+    final int b = slotB;
+    if (a == b) {
+      return 0;
+    }
+
+    int res = 0;
+    if ((res = Boolean.compare(visible[a], visible[b])) != 0
+        || (res = Long.compare(-numSolved[a], -numSolved[b])) != 0
+        || (res = Long.compare(totalTime[a], totalTime[b])) != 0) {
+      return res;
+    }
+
+    final int fromA = a * problemCount;
+    final int fromB = b * problemCount;
+    for (int i = Math.min(solveCount[a], solveCount[b]); i --> 0;) {
+      if (solveTimes[fromA + i] != solveTimes[fromB + i]) {
+        return Long.compare(solveTimes[fromA + i], solveTimes[fromB + i]);
+      }
+    }
+
+    if ((res = String.CASE_INSENSITIVE_ORDER.compare(names[a], names[b])) != 0
+        || (res = names[a].compareTo(names[b])) != 0) {
+      return res;
+    }
+    return Integer.compare(a, b);
+  }
+
+  private ScoreboardRow materialise(int slot, int rank) {
+    ScoreboardRow res = built[slot];
+    if (res == null) {
+      final ScoreboardRow.Builder row = ScoreboardRow.newBuilder()
+          .setRank(rank)
+          .setTeamId(teamIds.get(slot))
+          .setScore(buildScore(slot));
+      for (int p = 0; p < problemCount; p++) {
+        row.addProblems(buildCell(slot, p));
+      }
+      res = built[slot] = row.build();
+    } else if (res.getRank() != rank) {
+      res = built[slot] = res.toBuilder().setRank(rank).build();
+    }
+    return res;
+  }
+
+  private ScoreboardScore buildScore(int slot) {
+    return ScoreboardScore.newBuilder()
+        .setNumSolved(numSolved[slot])
+        .setTotalTime(totalTime[slot])
+        .build();
+  }
+
+  private ScoreboardProblem buildCell(int slot, int problem) {
+    final int cell = slot * problemCount + problem;
+    return ScoreboardProblem.newBuilder()
+        .setProblemId(problemIds[problem])
+        .setNumJudged(numJudged[cell])
+        .setNumPending(numPending[cell])
+        .setSolved(solved[cell])
+        .setTime(time[cell])
+        .build();
+  }
+}
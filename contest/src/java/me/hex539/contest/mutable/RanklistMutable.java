@@ -2,15 +2,20 @@ package me.hex539.contest.mutable;
 
 import com.google.auto.value.AutoValue;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import me.hex539.contest.Comparators;
 import me.hex539.contest.SplayList;
+import me.hex539.contest.VersionedArray;
 import me.hex539.contest.model.Problems;
 import me.hex539.contest.model.Ranklist;
 import me.hex539.contest.model.Teams;
@@ -23,10 +28,71 @@ public abstract class RanklistMutable implements Ranklist, Ranklist.Observer, Te
   public abstract Problems getProblems();
   public abstract Teams getTeams();
 
-  protected abstract SplayList<ScoreboardRow.Builder> getRealRows();
+  protected abstract SplayList<Entry> getRealRows();
+  protected abstract Comparators.RowComparator getRowComparator();
 
-  private final Map<String, ScoreboardRow.Builder> rowsByTeam = new HashMap<>();
-  private List<ScoreboardRow> rowsByIndex = null;
+  /**
+   * Groups that {@link #getRealRows()} keeps order statistics for, by index.
+   *
+   * There is one bit per group in a long, so if there are more groups than that then none of
+   * them get statistics and every group lookup fails, rather than only some of them.
+   */
+  protected abstract Map<String, Integer> getGroupIndices();
+
+  private final Map<String, Entry> rowsByTeam = new HashMap<>();
+
+  /**
+   * One row of {@link #getRealRows()}, together with the slot that {@link #getRowComparator()}
+   * caches its sort key in, so that sorting never has to look the slot up by team.
+   */
+  static final class Entry {
+    final ScoreboardRow.Builder row;
+    int slot;
+
+    Entry(ScoreboardRow.Builder row, Comparators.RowComparator comparator) {
+      this.row = row;
+      refresh(comparator);
+    }
+
+    /** Must be called after every change to {@link #row}, while it is not in the list. */
+    void refresh(Comparators.RowComparator comparator) {
+      slot = comparator.refresh(row);
+    }
+  }
+
+  /**
+   * Rows handed out by {@link #getRows()}, and by each group view that has been asked for its
+   * rows, in {@link #snapshots}.
+   */
+  private final Snapshot rowsByIndex = new Snapshot(-1);
+  private final Snapshot[] rowsByGroupIndex = new Snapshot[Long.SIZE];
+  private final List<Snapshot> snapshots = new ArrayList<>(Collections.singleton(rowsByIndex));
+
+  /**
+   * Per-team caches for {@link #getRow(Team)} and {@link #getRank(Team)}.
+   *
+   * Each move of a row starts a new rank epoch, and the range of positions it shifted is kept
+   * in a short ring buffer. A cached rank stays valid across epochs as long as none of the
+   * moves since touched its position.
+   */
+  private static final int MOVE_LOG_SIZE = 64;
+  private final Map<String, CachedRow> cachedRows = new HashMap<>();
+  private long rankEpoch = 0;
+  private final int[] movedFrom = new int[MOVE_LOG_SIZE];
+  private final int[] movedTo = new int[MOVE_LOG_SIZE];
+
+  private static final class CachedRow {
+    /** Bumped every time the contents of the row change. */
+    long version = 0;
+
+    /** Last immutable row handed out, and the {@link #version} it was built from. */
+    ScoreboardRow built = null;
+    long builtVersion = -1;
+
+    /** Last known rank, correct as of {@link #rankEpoch}. */
+    int rank = 0;
+    long rankEpoch = -1;
+  }
 
   public static Builder newBuilder() {
     return new AutoValue_RanklistMutable.Builder();
@@ -40,33 +106,71 @@ public abstract class RanklistMutable implements Ranklist, Ranklist.Observer, Te
     public abstract Problems getProblems();
     public abstract Teams getTeams();
 
-    abstract Builder setRealRows(SplayList<ScoreboardRow.Builder> realRows);
-    abstract Optional<SplayList<ScoreboardRow.Builder>> getRealRows();
+    abstract Builder setRealRows(SplayList<Entry> realRows);
+    abstract Optional<SplayList<Entry>> getRealRows();
+
+    abstract Builder setRowComparator(Comparators.RowComparator rowComparator);
+    abstract Optional<Comparators.RowComparator> getRowComparator();
+
+    abstract Builder setGroupIndices(Map<String, Integer> groupIndices);
+    abstract Optional<Map<String, Integer>> getGroupIndices();
 
     abstract RanklistMutable autoBuild();
 
     private RanklistMutable buildInner() {
       RanklistMutable res = autoBuild();
-      res.getRealRows().forEach(row -> res.rowsByTeam.put(row.getTeamId(), row));
+      res.getRealRows().forEach(entry -> res.rowsByTeam.put(entry.row.getTeamId(), entry));
       getTeams().getTeams().forEach(res::onTeamAdded);
       return res;
     }
 
+    private Comparators.RowComparator rowComparator() {
+      if (!getRowComparator().isPresent()) {
+        setRowComparator(new Comparators.RowComparator(getTeams()));
+      }
+      return getRowComparator().get();
+    }
+
+    private Map<String, Integer> groupIndices() {
+      if (!getGroupIndices().isPresent()) {
+        // One bit per group in a long, so only the first 64 by ID get statistics.
+        final Map<String, Integer> res = new HashMap<>();
+        getTeams().getGroups().stream()
+            .map(Group::getId)
+            .sorted()
+            .limit(Long.SIZE)
+            .forEach(id -> res.put(id, res.size()));
+        setGroupIndices(Collections.unmodifiableMap(res));
+      }
+      return getGroupIndices().get();
+    }
+
+    private SplayList<Entry> emptyRows() {
+      final Teams teams = getTeams();
+      final Map<String, Integer> groupIndices = groupIndices();
+      final Comparators.RowComparator comparator = rowComparator();
+      return new SplayList<>(
+          (a, b) -> comparator.compareCached(a.slot, b.slot),
+          groupIndices.size(),
+          entry -> getGroupMask(teams, groupIndices, entry.row.getTeamId()));
+    }
+
     public RanklistMutable build() {
       if (!getRealRows().isPresent()) {
-        setRealRows(new SplayList<>(new Comparators.RowComparator(getTeams())));
+        setRealRows(emptyRows());
       }
       return buildInner();
     }
 
     public Builder setRows(List<ScoreboardRow> rows, Predicate<ScoreboardRow> filter) {
-      return setRealRows(
-          new SplayList<>(
-              rows.stream()
-                  .filter(filter)
-                  .map(ScoreboardRow::toBuilder)
-                  .collect(Collectors.toList()),
-              new Comparators.RowComparator(getTeams())));
+      final Comparators.RowComparator comparator = rowComparator();
+      final SplayList<Entry> realRows = emptyRows();
+      realRows.addAll(
+          rows.stream()
+              .filter(filter)
+              .map(row -> new Entry(row.toBuilder(), comparator))
+              .collect(Collectors.toList()));
+      return setRealRows(realRows);
     }
 
     public RanklistMutable copyFrom(Ranklist src, Predicate<ScoreboardRow> filter) {
@@ -76,30 +180,129 @@ public abstract class RanklistMutable implements Ranklist, Ranklist.Observer, Te
 
   @Override
   public List<ScoreboardRow> getRows() {
-    if (rowsByIndex == null) {
-      rowsByIndex = new ArrayList<>();
-      int i = 0;
-      for (ScoreboardRow.Builder row : getRealRows()) {
-        rowsByIndex.add(fixRank(row, ++i));
+    return rowsByIndex.getRows();
+  }
+
+  /**
+   * Rows of the whole ranklist or of one group, kept in a {@link VersionedArray} so that only
+   * the rows that changed since the last {@link #getRows()} need to be written again.
+   *
+   * Rows only need to be rebuilt if their contents changed ({@link #changedTeams}) or if they
+   * might have moved ({@link #dirtyFrom} up to but not including {@link #dirtyTo}, counted as
+   * positions in the whole ranklist).
+   */
+  private final class Snapshot {
+    /** Index of the group to count rows in, or -1 for all of them. */
+    final int group;
+
+    final VersionedArray<ScoreboardRow> rows = new VersionedArray<>();
+    final Set<String> changedTeams = new HashSet<>();
+    int dirtyFrom = 0;
+    int dirtyTo = Integer.MAX_VALUE;
+
+    Snapshot(int group) {
+      this.group = group;
+    }
+
+    boolean isFresh() {
+      return changedTeams.isEmpty() && dirtyFrom >= dirtyTo;
+    }
+
+    List<ScoreboardRow> getRows() {
+      if (!isFresh()) {
+        update();
+      }
+      return rows.snapshot();
+    }
+
+    private void update() {
+      final SplayList<Entry> realRows = getRealRows();
+      final int size = realRows.size();
+      final int from = countBefore(Math.min(dirtyFrom, size));
+      final int to = Math.max(from, countBefore(Math.min(dirtyTo, size)));
+      rows.setSize(group < 0 ? size : realRows.sizeOfGroup(group));
+
+      // Rows that might have moved.
+      if (group < 0) {
+        final Iterator<Entry> it = realRows.subList(from, to).iterator();
+        for (int i = from; i < to; i++) {
+          rows.set(i, materialise(it.next(), i + 1));
+        }
+      } else {
+        for (int i = from; i < to; i++) {
+          rows.set(i, materialise(realRows.getInGroup(group, i), i + 1));
+        }
+      }
+
+      // Rows that changed in place.
+      for (String teamId : changedTeams) {
+        final Entry row = rowsByTeam.get(teamId);
+        if (row == null) {
+          continue;
+        }
+        final int index = indexOf(row);
+        if (index != -1 && (index < from || index >= to)) {
+          rows.set(index, materialise(row, index + 1));
+        }
+      }
+
+      changedTeams.clear();
+      dirtyFrom = Integer.MAX_VALUE;
+      dirtyTo = 0;
+    }
+
+    /** @return how many of these rows come before position {@param index} of the ranklist. */
+    private int countBefore(int index) {
+      if (group < 0) {
+        return index;
+      }
+      final SplayList<Entry> realRows = getRealRows();
+      return index < realRows.size()
+          ? realRows.indexInGroup(realRows.get(index), group)
+          : realRows.sizeOfGroup(group);
+    }
+
+    /** @return the index of {@param row} in these rows, or -1 if it is not in the group. */
+    private int indexOf(Entry row) {
+      if (group < 0) {
+        return getCachedRank(row) - 1;
+      }
+      final long mask = getGroupMask(getTeams(), getGroupIndices(), row.row.getTeamId());
+      return (mask & (1L << group)) != 0 ? getRealRows().indexInGroup(row, group) : -1;
+    }
+
+    /** Same as {@link RanklistMutable#materialise}, with the rank counted within the group. */
+    private ScoreboardRow materialise(Entry row, int rank) {
+      if (group < 0) {
+        return RanklistMutable.this.materialise(row, rank);
       }
+      final ScoreboardRow res = RanklistMutable.this.materialise(row, getCachedRank(row));
+      return res.getRank() == rank ? res : res.toBuilder().setRank(rank).build();
+    }
+  }
+
+  private Snapshot getGroupSnapshot(int groupIndex) {
+    if (rowsByGroupIndex[groupIndex] == null) {
+      rowsByGroupIndex[groupIndex] = new Snapshot(groupIndex);
+      snapshots.add(rowsByGroupIndex[groupIndex]);
     }
-    // TODO: make an immutable copy
-    return rowsByIndex;
+    return rowsByGroupIndex[groupIndex];
   }
 
   @Override
   public ScoreboardRow getRow(long index) throws NoSuchElementException {
-    return rowsByIndex != null
-        ? rowsByIndex.get((int) index)
-        : fixRank(getRealRows().get((int) index), (int) index + 1);
+    return rowsByIndex.isFresh()
+        ? rowsByIndex.rows.get((int) index)
+        : materialise(getRealRows().get((int) index), (int) index + 1);
   }
 
   @Override
   public ScoreboardRow getRow(Team team) throws NoSuchElementException {
-    return fixRank(getRowInternal(team));
+    final Entry row = getRowInternal(team);
+    return materialise(row, getCachedRank(row));
   }
 
-  private ScoreboardRow.Builder getRowInternal(Team team) throws NoSuchElementException {
+  private Entry getRowInternal(Team team) throws NoSuchElementException {
     try {
       return Optional.ofNullable(rowsByTeam.get(team.getId())).get();
     } catch (NoSuchElementException e) {
@@ -109,17 +312,123 @@ public abstract class RanklistMutable implements Ranklist, Ranklist.Observer, Te
 
   @Override
   public long getRank(Team team) throws NoSuchElementException {
-    return getRank(getRowInternal(team));
+    return getCachedRank(getRowInternal(team));
+  }
+
+  /** Rank of a team counting only the teams in one of its groups. O(log n) amortised. */
+  public long getRank(Team team, Group group) throws NoSuchElementException {
+    final Entry row = getRowInternal(team);
+    final int groupIndex = getGroupIndex(group);
+    if (!team.getGroupIdsList().contains(group.getId())) {
+      throw new NoSuchElementException(
+          "Team \"" + team.getId() + "\" is not in group \"" + group.getId() + "\"");
+    }
+    return getRealRows().indexInGroup(row, groupIndex) + 1;
+  }
+
+  /** Row of the team at a given index counting only teams in one group. O(log n) amortised. */
+  public ScoreboardRow getRow(Group group, long index) throws NoSuchElementException {
+    final int groupIndex = getGroupIndex(group);
+    if (index < 0 || index >= getRealRows().sizeOfGroup(groupIndex)) {
+      throw new NoSuchElementException("No row " + index + " in group \"" + group.getId() + "\"");
+    }
+    final Entry row = getRealRows().getInGroup(groupIndex, (int) index);
+    final ScoreboardRow res = materialise(row, getCachedRank(row));
+    return res.getRank() == index + 1 ? res : res.toBuilder().setRank(index + 1).build();
+  }
+
+  /**
+   * @return whether {@link #getGroupView}, {@link #getRank(Team, Group)} and
+   *     {@link #getRow(Group, long)} work for {@param group}. They work for every group the
+   *     teams model had when this was built, or for the first 64 by ID if it had more. For any
+   *     other group they throw {@link NoSuchElementException}.
+   */
+  public boolean hasGroupView(Group group) {
+    return getGroupIndices().containsKey(group.getId());
+  }
+
+  /**
+   * Read-only projection of this ranklist onto one group, with ranks counted within the group.
+   *
+   * This is backed by the same rows as the full ranklist, so it stays up to date without any
+   * copying and without needing its own observers.
+   */
+  public Ranklist getGroupView(Group group) throws NoSuchElementException {
+    getGroupIndex(group);
+    return new GroupView(group);
+  }
+
+  private final class GroupView implements Ranklist {
+    private final Group group;
+
+    GroupView(Group group) {
+      this.group = group;
+    }
+
+    @Override
+    public List<ScoreboardRow> getRows() {
+      return getGroupSnapshot(getGroupIndex(group)).getRows();
+    }
+
+    @Override
+    public ScoreboardRow getRow(long index) throws NoSuchElementException {
+      return RanklistMutable.this.getRow(group, index);
+    }
+
+    @Override
+    public ScoreboardRow getRow(Team team) throws NoSuchElementException {
+      final long rank = getRank(team);
+      final ScoreboardRow res = RanklistMutable.this.getRow(team);
+      return res.getRank() == rank ? res : res.toBuilder().setRank(rank).build();
+    }
+
+    @Override
+    public long getRank(Team team) throws NoSuchElementException {
+      return RanklistMutable.this.getRank(team, group);
+    }
+
+    @Override
+    public ScoreboardScore getScore(Team team) throws NoSuchElementException {
+      return RanklistMutable.this.getScore(team);
+    }
+
+    @Override
+    public ScoreboardProblem getAttempts(Team team, Problem problem)
+        throws NoSuchElementException {
+      return RanklistMutable.this.getAttempts(team, problem);
+    }
+  }
+
+  private int getGroupIndex(Group group) throws NoSuchElementException {
+    final Integer res = getGroupIndices().get(group.getId());
+    if (res == null) {
+      throw new NoSuchElementException("No statistics kept for group \"" + group.getId() + "\"");
+    }
+    return res;
+  }
+
+  private static long getGroupMask(Teams teams, Map<String, Integer> groupIndices, String teamId) {
+    long mask = 0;
+    final List<String> groupIds = teams.getTeamOpt(teamId)
+        .<List<String>>map(Team::getGroupIdsList)
+        .orElse(Collections.emptyList());
+    for (String groupId : groupIds) {
+      final Integer index = groupIndices.get(groupId);
+      if (index != null) {
+        mask |= 1L << index;
+      }
+    }
+    return mask;
   }
 
   @Override
   public ScoreboardScore getScore(Team team) throws NoSuchElementException {
-    return getRowInternal(team).getScore();
+    return getRowInternal(team).row.getScore();
   }
 
   @Override
   public ScoreboardProblem getAttempts(Team team, Problem problem) throws NoSuchElementException {
-    return getRowInternal(team).getProblems(getProblems().getProblemIndex(problem.getId()));
+    return getRowInternal(team).row.getProblems(getProblems().getProblemIndex(problem.getId()));
   }
 
   @Override
@@ -127,40 +436,73 @@ public abstract class RanklistMutable implements Ranklist, Ranklist.Observer, Te
     if (rowsByTeam.containsKey(team.getId())) {
       return;
     }
-    final ScoreboardRow.Builder row = createEmptyScoreboardRow(0, team, getProblems());
-    addRow(row);
+    final Entry row =
+        new Entry(createEmptyScoreboardRow(0, team, getProblems()), getRowComparator());
+    touch(row);
+    markMoved(addRow(row), Integer.MAX_VALUE);
   }
 
   @Override
   public void onTeamRemoved(Team team) {
-    final ScoreboardRow.Builder row = getRowInternal(team);
-    removeRow(row);
+    final Entry row = getRowInternal(team);
+    markMoved(removeRow(row), Integer.MAX_VALUE);
+    getRowComparator().forget(team.getId());
+    cachedRows.remove(team.getId());
+    for (Snapshot snapshot : snapshots) {
+      snapshot.changedTeams.remove(team.getId());
+    }
   }
 
   @Override
   public void onProblemScoreChanged(Team team, ScoreboardProblem upd) {
-    final ScoreboardRow.Builder row = getRowInternal(team);
+    final Entry row = getRowInternal(team);
 
     final int idx = getProblems().getProblemIndex(upd.getProblemId());
-    final ScoreboardProblem orig = row.getProblems(idx);
+    final ScoreboardProblem orig = row.row.getProblems(idx);
 
     // If solve status or time change, sort order can also change.
     final boolean resort = upd.getSolved() != orig.getSolved() || upd.getTime() != orig.getTime();
 
-    if (resort) removeRow(row);
-    row.setProblems(idx, upd);
-    if (resort) addRow(row);
+    if (resort) {
+      final int oldIndex = removeRow(row);
+      row.row.setProblems(idx, upd);
+      touch(row);
+      final int newIndex = addRow(row);
+      markMoved(Math.min(oldIndex, newIndex), Math.max(oldIndex, newIndex) + 1);
+    } else {
+      row.row.setProblems(idx, upd);
+      touch(row);
+    }
   }
 
   @Override
   public void onScoreChanged(Team team, ScoreboardScore score) {
-    final ScoreboardRow.Builder row = getRowInternal(team);
-    if (row != null && score.equals(row.getScore())) {
+    final Entry row = getRowInternal(team);
+    if (row != null && score.equals(row.row.getScore())) {
       return;
     }
-    removeRow(row);
-    row.setScore(score);
-    addRow(row);
+    final int oldIndex = removeRow(row);
+    row.row.setScore(score);
+    touch(row);
+    final int newIndex = addRow(row);
+    markMoved(Math.min(oldIndex, newIndex), Math.max(oldIndex, newIndex) + 1);
+  }
+
+  /** Same as the individual updates, but only moves the team's row once. */
+  @Override
+  public void onTeamScoreChanged(
+      Team team,
+      List<ScoreboardProblem> problems,
+      ScoreboardScore score) {
+    final Entry row = getRowInternal(team);
+    final int oldIndex = removeRow(row);
+    for (ScoreboardProblem upd : problems) {
+      row.row.setProblems(getProblems().getProblemIndex(upd.getProblemId()), upd);
+    }
+    row.row.setScore(score);
+    touch(row);
+    final int newIndex = addRow(row);
+    markMoved(Math.min(oldIndex, newIndex), Math.max(oldIndex, newIndex) + 1);
   }
 
   @Override
@@ -168,6 +510,57 @@ public abstract class RanklistMutable implements Ranklist, Ranklist.Observer, Te
     // Already handled by onScoreChanged.
   }
 
+  /**
+   * Same as {@link #fixRank(Entry, int)}, but reuses the row built last time if
+   * neither its contents nor its rank changed since.
+   */
+  private ScoreboardRow materialise(Entry row, int realRank) {
+    final CachedRow cache = getCache(row);
+    cache.rank = realRank;
+    cache.rankEpoch = rankEpoch;
+    if (cache.built == null
+        || cache.builtVersion != cache.version
+        || cache.built.getRank() != realRank) {
+      cache.built = fixRank(row, realRank);
+      cache.builtVersion = cache.version;
+    }
+    return cache.built;
+  }
+
+  private CachedRow getCache(Entry row) {
+    return cachedRows.computeIfAbsent(row.row.getTeamId(), k -> new CachedRow());
+  }
+
+  /** Record that the contents of a row have changed. */
+  private void touch(Entry row) {
+    getCache(row).version++;
+    for (Snapshot snapshot : snapshots) {
+      snapshot.changedTeams.add(row.row.getTeamId());
+    }
+  }
+
+  private int getCachedRank(Entry row) {
+    final CachedRow cache = getCache(row);
+    if (cache.rankEpoch >= 0 && rankEpoch - cache.rankEpoch <= MOVE_LOG_SIZE) {
+      final int index = cache.rank - 1;
+      long epoch = cache.rankEpoch;
+      while (epoch < rankEpoch) {
+        final int k = (int) (epoch % MOVE_LOG_SIZE);
+        if (movedFrom[k] <= index && index < movedTo[k]) {
+          break;
+        }
+        epoch++;
+      }
+      if (epoch == rankEpoch) {
+        cache.rankEpoch = rankEpoch;
+        return cache.rank;
+      }
+    }
+    cache.rank = getRank(row);
+    cache.rankEpoch = rankEpoch;
+    return cache.rank;
+  }
+
   /**
    * Find the real rank of a team before returning it.
    *
@@ -176,46 +569,65 @@ public abstract class RanklistMutable implements Ranklist, Ranklist.Observer, Te
    * involve rebuilding the whole scoreboard.
    *
    * To keep clients happy we find the real rank of the team and set it on a copy before
-   * handing it out. The updated row isn't saved anywhere because we don't need it.
+   * handing it out. {@link #materialise} holds on to that copy until the row changes or moves.
    */
-  private ScoreboardRow fixRank(ScoreboardRow.Builder row) {
-    return fixRank(row, getRank(row));
-  }
-
-  private ScoreboardRow fixRank(ScoreboardRow.Builder row, int realRank) {
-    final ScoreboardRow.Builder existingRow = rowsByTeam.get(row.getTeamId());
+  private ScoreboardRow fixRank(Entry entry, int realRank) {
+    final ScoreboardRow.Builder row = entry.row;
+    final Entry existingRow = rowsByTeam.get(row.getTeamId());
     if (existingRow == null) {
       throw new NoSuchElementException("Team has no scoreboard row: " + row.getTeamId());
-    } else if (existingRow != row) {
+    } else if (existingRow != entry) {
       throw new AssertionError("Invalid scoreboard row reference for team: " + row.getTeamId());
     }
     return (realRank == row.getRank() ? row : row.setRank(realRank)).build();
   }
 
-  private int getRank(ScoreboardRow.Builder row) {
-    int realRank = getRealRows().indexOf(row) + 1;
+  private int getRank(Entry entry) {
+    final ScoreboardRow.Builder row = entry.row;
+    int realRank = getRealRows().indexOf(entry) + 1;
     if (realRank == 0) {
       if (rowsByTeam.get(row.getTeamId()) == null) {
         throw new NoSuchElementException("Team has no scoreboard row: " + row.getTeamId());
       } else {
         throw new AssertionError("Invalid scoreboard row reference for team: " + row.getTeamId()
             + "\n" + row.toString().replaceAll("\n", " ")
-            + "\n" + rowsByTeam.get(row.getTeamId()).toString().replaceAll("\n", " "));
+            + "\n" + rowsByTeam.get(row.getTeamId()).row.toString().replaceAll("\n", " "));
       }
     }
     return realRank;
   }
 
-  private void removeRow(ScoreboardRow.Builder row) {
-    rowsByIndex = null;
-    rowsByTeam.remove(row.getTeamId());
+  /** @return the index the row was removed from. */
+  private int removeRow(Entry row) {
+    final int index = getRealRows().indexOf(row);
+    rowsByTeam.remove(row.row.getTeamId());
     getRealRows().remove(row);
+    return index;
   }
 
-  private void addRow(ScoreboardRow.Builder row) {
-    rowsByIndex = null;
-    rowsByTeam.put(row.getTeamId(), row);
+  /** @return the index the row was inserted at. */
+  private int addRow(Entry row) {
+    rowsByTeam.put(row.row.getTeamId(), row);
+    row.refresh(getRowComparator());
     getRealRows().add(row);
+    return getRealRows().indexOf(row);
+  }
+
+  /**
+   * Every row between a row's old and new positions shifts by one when it moves, so we only
+   * need to remember the outermost positions touched: since the last snapshot, and for each
+   * recent rank epoch.
+   */
+  private void markMoved(int from, int to) {
+    for (Snapshot snapshot : snapshots) {
+      snapshot.dirtyFrom = Math.min(snapshot.dirtyFrom, from);
+      snapshot.dirtyTo = Math.max(snapshot.dirtyTo, to);
+    }
+
+    final int k = (int) (rankEpoch % MOVE_LOG_SIZE);
+    movedFrom[k] = from;
+    movedTo[k] = to;
+    rankEpoch++;
   }
 
   private static ScoreboardRow.Builder createEmptyScoreboardRow(long rank, Team team, Problems pm) {
@@ -1,10 +1,16 @@
 package me.hex539.contest.mutable;
 
 import com.google.common.base.Preconditions;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import me.hex539.contest.IdInterner;
 import me.hex539.contest.model.Teams;
 
 import edu.clics.proto.ClicsProto.*;
@@ -13,7 +19,23 @@ public class TeamsMutable implements Teams {
 
   private final Map<String, Organization> organizations = new HashMap<>();
   private final Map<String, Group> groups = new HashMap<>();
-  private final Map<String, Team> teams = new HashMap<>();
+
+  /** Teams by interned ID. Removed teams leave a null behind so that indices stay stable. */
+  private final IdInterner teamIds = new IdInterner();
+  private final List<Team> teams = new ArrayList<>();
+  private int teamCount = 0;
+
+  private final Collection<Team> teamsView = new AbstractCollection<Team>() {
+    @Override
+    public Iterator<Team> iterator() {
+      return teams.stream().filter(Objects::nonNull).iterator();
+    }
+
+    @Override
+    public int size() {
+      return teamCount;
+    }
+  };
 
   private final Map<String, Integer> organizationRefs = new HashMap<>();
   private final Map<String, Integer> groupRefs = new HashMap<>();
@@ -41,7 +63,7 @@ public class TeamsMutable implements Teams {
 
   @Override
   public Collection<Team> getTeams() {
-    return teams.values();
+    return teamsView;
   }
 
   @Override
@@ -66,12 +88,22 @@ public class TeamsMutable implements Teams {
 
   @Override
   public Optional<Team> getTeamOpt(String id) {
-    return Optional.ofNullable(teams.get(id));
+    final int index = teamIds.indexOf(id);
+    return index != -1 ? Optional.ofNullable(teams.get(index)) : Optional.empty();
   }
 
   @Override
   public boolean containsTeam(String id) {
-    return teams.containsKey(id);
+    final int index = teamIds.indexOf(id);
+    return index != -1 && teams.get(index) != null;
+  }
+
+  /**
+   * @return a dense index for the team with this ID, stable for the lifetime of this model even
+   *     if the team is removed and added again, or -1 if it has never been added.
+   */
+  public int getTeamIndex(String id) {
+    return teamIds.indexOf(id);
   }
 
   public void onOrganizationAdded(Organization organization) {
@@ -98,7 +130,12 @@ public class TeamsMutable implements Teams {
 
   public void onTeamAdded(Team team) {
     onTeamRemoved(team);
-    if (teams.put(team.getId(), team) == null) {
+    final int index = teamIds.intern(team.getId());
+    if (index == teams.size()) {
+      teams.add(null);
+    }
+    if (teams.set(index, team) == null) {
+      teamCount++;
       return;
     }
     increase(organizationRefs, team.getOrganizationId());
@@ -106,9 +143,12 @@ public class TeamsMutable implements Teams {
   }
 
   public void onTeamRemoved(Team team) {
-    if (!teams.remove(team.getId(), team)) {
+    final int index = teamIds.indexOf(team.getId());
+    if (index == -1 || !team.equals(teams.get(index))) {
       return;
     }
+    teams.set(index, null);
+    teamCount--;
     team.getGroupIdsList().forEach(id -> decrease(groupRefs, id));
     decrease(organizationRefs, team.getOrganizationId());
   }
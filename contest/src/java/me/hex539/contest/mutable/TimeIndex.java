@@ -0,0 +1,89 @@
+package me.hex539.contest.mutable;
+
+import java.util.Arrays;
+
+/**
+ * Slots of a list ordered by a timestamp in nanoseconds, kept up to date as slots are added.
+ *
+ * <p>Ties are broken by slot, which is the order a stable sort of the list would have put them in.
+ * Feeds mostly arrive in time order, in which case adding a slot just appends to the end.
+ */
+final class TimeIndex {
+  private static final int INITIAL_CAPACITY = 16;
+
+  /** Position in sorted order -> time, and position in sorted order -> slot. */
+  private long[] times = new long[INITIAL_CAPACITY];
+  private int[] slots = new int[INITIAL_CAPACITY];
+
+  /** Slot -> time, for finding a slot again when its value gets replaced. */
+  private long[] timeOfSlot = new long[INITIAL_CAPACITY];
+
+  private int size = 0;
+
+  public int size() {
+    return size;
+  }
+
+  /** @return the slot at {@param position} in time order. */
+  public int get(int position) {
+    return slots[position];
+  }
+
+  /**
+   * Adds or moves {@param slot}. Slots are handed out in order, so this is either the next new
+   * slot or one that is already in the index.
+   */
+  public void put(int slot, long time) {
+    if (slot < size) {
+      if (timeOfSlot[slot] == time) {
+        return;
+      }
+      final int old = find(timeOfSlot[slot], slot);
+      System.arraycopy(times, old + 1, times, old, size - old - 1);
+      System.arraycopy(slots, old + 1, slots, old, size - old - 1);
+      size--;
+    } else if (slot != size) {
+      throw new IllegalArgumentException("Slot " + slot + " skips past " + size);
+    } else if (size == times.length) {
+      times = Arrays.copyOf(times, size * 2);
+      slots = Arrays.copyOf(slots, size * 2);
+      timeOfSlot = Arrays.copyOf(timeOfSlot, size * 2);
+    }
+
+    final int at = find(time, slot);
+    System.arraycopy(times, at, times, at + 1, size - at);
+    System.arraycopy(slots, at, slots, at + 1, size - at);
+    times[at] = time;
+    slots[at] = slot;
+    timeOfSlot[slot] = time;
+    size++;
+  }
+
+  /** @return the first position at or after {@param time}. */
+  public int lowerBound(long time) {
+    return find(time, Integer.MIN_VALUE);
+  }
+
+  /** @return the first position not before ({@param time}, {@param slot}). */
+  private int find(long time, int slot) {
+    if (size == 0 || compare(size - 1, time, slot) < 0) {
+      return size;
+    }
+    int lo = 0;
+    int hi = size - 1;
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (compare(mid, time, slot) < 0) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  private int compare(int position, long time, int slot) {
+    final int c = Long.compare(times[position], time);
+    return c != 0 ? c : Integer.compare(slots[position], slot);
+  }
+}
@@ -0,0 +1,230 @@
+package edu.clics.api;
+
+import static com.google.common.base.CaseFormat.LOWER_UNDERSCORE;
+import static com.google.common.truth.Truth.*;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.protobuf.ProtoTypeAdapter;
+import com.google.protobuf.AbstractMessage;
+import com.google.protobuf.Annotations;
+import com.google.protobuf.Duration;
+import com.google.protobuf.Timestamp;
+
+import edu.clics.proto.ClicsProto;
+
+import edu.clics.proto.ClicsProto.*;
+
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+public class BenchmarkTest {
+
+  @Test
+  public void benchmarkDecodingNwerc2017() throws Exception {
+    final ClicsContest contest = loadContest();
+
+    final JsonArray submissions = new JsonArray();
+    final List<String> events = new ArrayList<>();
+    for (Submission s : contest.getSubmissionsMap().values()) {
+      final JsonObject json = toJson(s);
+      submissions.add(json);
+      events.add(toEvent("submissions", s.getId(), json));
+    }
+    for (Judgement j : contest.getJudgementsMap().values()) {
+      events.add(toEvent("judgements", j.getId(), toJson(j)));
+    }
+    final String submissionsBody = submissions.toString();
+
+    final Supplier<Gson> current = () -> new ClicsRest.GsonSingleton().get();
+    final Supplier<Gson> original = BenchmarkTest::originalGson;
+    for (Supplier<Gson> gson : Arrays.asList(current, original)) {
+      final Submission[] decoded = gson.get().fromJson(submissionsBody, Submission[].class);
+      assertThat(decoded).hasLength(contest.getSubmissionsCount());
+      assertThat(decoded[0]).isEqualTo(contest.getSubmissionsMap().get(decoded[0].getId()));
+    }
+
+    // A fresh Gson has to work out its adapters again, as every app start does. The JIT has
+    // warmed up by now, so this is only the part of a cold start that the adapters are behind.
+    final Map<String, Runnable> firstRuns = new LinkedHashMap<>();
+    firstRuns.put("/submissions", () -> {
+      current.get().fromJson(submissionsBody, Submission[].class);
+    });
+    firstRuns.put("/submissions, original", () -> {
+      original.get().fromJson(submissionsBody, Submission[].class);
+    });
+
+    final Gson gson = current.get();
+    final Gson originalGson = original.get();
+    final Map<String, Runnable> runs = new LinkedHashMap<>();
+    runs.put(String.format("/submissions (%d)", submissions.size()), () -> {
+      gson.fromJson(submissionsBody, Submission[].class);
+    });
+    runs.put("/submissions, original", () -> {
+      originalGson.fromJson(submissionsBody, Submission[].class);
+    });
+    runs.put(String.format("event feed (%d)", events.size()), () -> {
+      for (String event : events) {
+        gson.fromJson(event, EventFeedItem.class);
+      }
+    });
+    runs.put("event feed, original", () -> {
+      for (String event : events) {
+        originalGson.fromJson(event, EventFeedItem.class);
+      }
+    });
+
+    System.err.println("");
+    System.err.println("Decoding nwerc2017 JSON:");
+    measure(runs);
+    System.err.println("Decoding nwerc2017 JSON with a fresh Gson:");
+    measure(firstRuns);
+  }
+
+  /** How {@link ClicsRest} set up Gson before it had {@link ProtoTypeAdapter#newFactory}. */
+  private static Gson originalGson() {
+    final ProtoTypeAdapter adapter = ProtoTypeAdapter.newBuilder()
+        .setEnumSerialization(ProtoTypeAdapter.EnumSerialization.NAME)
+        .setFieldNameSerializationFormat(LOWER_UNDERSCORE, LOWER_UNDERSCORE)
+        .addSerializedNameExtension(Annotations.serializedName)
+        .addSerializedEnumValueExtension(Annotations.serializedValue)
+        .build();
+
+    final GsonBuilder gsonBuilder = new GsonBuilder();
+    gsonBuilder.registerTypeAdapter(
+        com.google.protobuf.Timestamp.class,
+        new Deserializers.TimestampDeserializer());
+    gsonBuilder.registerTypeAdapter(
+        com.google.protobuf.Duration.class,
+        new Deserializers.DurationDeserializer());
+    gsonBuilder.registerTypeAdapterFactory(
+        new Deserializers.EventFeedItemTypeAdapterFactory());
+    for (Class<?> subClass : ClicsProto.class.getDeclaredClasses()) {
+      if (AbstractMessage.class.isAssignableFrom(subClass)) {
+        gsonBuilder.registerTypeHierarchyAdapter(subClass, adapter);
+      }
+    }
+    return gsonBuilder.create();
+  }
+
+  @Test
+  public void benchmarkTimeParsingNwerc2017() throws Exception {
+    final ClicsContest contest = loadContest();
+    final List<String> timestamps = new ArrayList<>();
+    final List<String> durations = new ArrayList<>();
+    for (Judgement j : contest.getJudgementsMap().values()) {
+      timestamps.add(toJson(j.getStartTime()));
+      timestamps.add(toJson(j.getEndTime()));
+      durations.add(toJson(j.getStartContestTime()));
+      durations.add(toJson(j.getEndContestTime()));
+    }
+
+    final Map<String, Runnable> runs = new LinkedHashMap<>();
+    runs.put(String.format("timestamps (%d)", timestamps.size()), () -> {
+      timestamps.forEach(Deserializers.TimestampDeserializer::parseTimestamp);
+    });
+    runs.put("timestamps, original", () -> {
+      timestamps.forEach(Deserializers.TimestampDeserializer::parseTimestampSlow);
+    });
+    runs.put(String.format("durations (%d)", durations.size()), () -> {
+      durations.forEach(Deserializers.DurationDeserializer::parseIcpcDuration);
+    });
+    runs.put("durations, original", () -> {
+      durations.forEach(Deserializers.DurationDeserializer::parseIcpcDurationSlow);
+    });
+
+    System.err.println("");
+    System.err.println("Parsing nwerc2017 judgement times:");
+    measure(runs);
+  }
+
+  private static void measure(Map<String, Runnable> runs) {
+    final int rounds = 20;
+    // Warm up everything first so that the measured runs are not dominated by class loading and
+    // JIT, nor by the order they happen to run in.
+    for (int i = 0; i < rounds * 2; i++) {
+      runs.values().forEach(Runnable::run);
+    }
+    for (Map.Entry<String, Runnable> run : runs.entrySet()) {
+      final long start = System.nanoTime();
+      for (int i = 0; i < rounds; i++) {
+        run.getValue().run();
+      }
+      System.err.println(String.format("  %-24s %.2f ms",
+          run.getKey(),
+          (System.nanoTime() - start) / 1e6 / rounds));
+    }
+  }
+
+  private static ClicsContest loadContest() throws Exception {
+    try (InputStream is =
+        BenchmarkTest.class.getResourceAsStream("/resources/contests/nwerc2017.pb")) {
+      return ClicsContest.parseFrom(is);
+    }
+  }
+
+  private static String toEvent(String type, String id, JsonObject data) {
+    final JsonObject json = new JsonObject();
+    json.addProperty("id", id);
+    json.addProperty("type", type);
+    json.addProperty("op", "create");
+    json.add("data", data);
+    return json.toString();
+  }
+
+  private static JsonObject toJson(Submission s) {
+    final JsonObject json = new JsonObject();
+    json.addProperty("id", s.getId());
+    json.addProperty("language_id", s.getLanguageId());
+    json.addProperty("problem_id", s.getProblemId());
+    json.addProperty("team_id", s.getTeamId());
+    json.addProperty("time", toJson(s.getTime()));
+    json.addProperty("contest_time", toJson(s.getContestTime()));
+    json.addProperty("entry_point", s.getEntryPoint());
+    final JsonArray files = new JsonArray();
+    for (Media m : s.getFilesList()) {
+      final JsonObject file = new JsonObject();
+      file.addProperty("href", m.getHref());
+      files.add(file);
+    }
+    json.add("files", files);
+    return json;
+  }
+
+  private static JsonObject toJson(Judgement j) {
+    final JsonObject json = new JsonObject();
+    json.addProperty("id", j.getId());
+    json.addProperty("submission_id", j.getSubmissionId());
+    json.addProperty("judgement_type_id", j.getJudgementTypeId());
+    json.addProperty("start_time", toJson(j.getStartTime()));
+    json.addProperty("start_contest_time", toJson(j.getStartContestTime()));
+    json.addProperty("end_time", toJson(j.getEndTime()));
+    json.addProperty("end_contest_time", toJson(j.getEndContestTime()));
+    json.addProperty("max_run_time", j.getMaxRunTime());
+    return json;
+  }
+
+  private static String toJson(Timestamp t) {
+    return Instant.ofEpochSecond(t.getSeconds(), t.getNanos()).toString().replace("Z", "+00:00");
+  }
+
+  private static String toJson(Duration d) {
+    final long millis = Math.abs(d.getSeconds() * 1000 + d.getNanos() / 1_000_000);
+    return String.format("%s%d:%02d:%02d.%03d",
+        d.getSeconds() < 0 || d.getNanos() < 0 ? "-" : "",
+        millis / 3_600_000,
+        millis / 60_000 % 60,
+        millis / 1000 % 60,
+        millis % 1000);
+  }
+}
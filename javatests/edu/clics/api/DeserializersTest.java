@@ -0,0 +1,193 @@
+package edu.clics.api;
+
+import static com.google.common.truth.Truth.*;
+
+import com.google.protobuf.Duration;
+import com.google.protobuf.Timestamp;
+
+import edu.clics.api.Deserializers.DurationDeserializer;
+import edu.clics.api.Deserializers.TimestampDeserializer;
+
+import java.time.format.DateTimeParseException;
+import java.util.Random;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+/**
+ * Checks the fast timestamp and duration parsers against the original ones, on lots of random
+ * well-formed strings and on the same strings with a character changed, added or removed.
+ */
+public class DeserializersTest {
+  private static final int ROUNDS = 200_000;
+  private static final String CHARS = "0123456789:.+-TZ ";
+
+  @Test
+  public void parseTimestamp_examples() {
+    assertThat(TimestampDeserializer.parseTimestamp("2018-12-10T21:28:47.447+00:00")).isEqualTo(
+        Timestamp.newBuilder().setSeconds(1544477327L).setNanos(447000000).build());
+    assertThat(TimestampDeserializer.parseTimestamp("2021-03-27T09:24:1.482+00")).isEqualTo(
+        TimestampDeserializer.parseTimestamp("2021-03-27T09:24:01.482+00:00"));
+    assertThat(TimestampDeserializer.parseTimestamp("2021-03-27T10:24:01+01:00")).isEqualTo(
+        TimestampDeserializer.parseTimestamp("2021-03-27T09:24:01Z"));
+  }
+
+  @Test
+  public void parseIcpcDuration_examples() {
+    assertThat(DurationDeserializer.parseIcpcDuration("5:01:28.593")).isEqualTo(
+        Duration.newBuilder().setSeconds(18088L).setNanos(593000000).build());
+    assertThat(DurationDeserializer.parseIcpcDuration("-1:05:00")).isEqualTo(
+        Duration.newBuilder().setSeconds(-3900L).build());
+    assertThat(DurationDeserializer.parseIcpcDuration("123:4:5.6")).isEqualTo(
+        Duration.newBuilder().setSeconds(123 * 3600 + 4 * 60 + 5).setNanos(600000000).build());
+  }
+
+  @Test
+  public void parseIcpcDuration_negativeUnderAnHour() {
+    final Duration expected = Duration.newBuilder().setSeconds(-300L).build();
+    assertThat(DurationDeserializer.parseIcpcDurationFast("-0:05:00")).isEqualTo(expected);
+    assertThat(DurationDeserializer.parseIcpcDurationSlow("-0:05:00")).isEqualTo(expected);
+    assertThat(DurationDeserializer.parseIcpcDurationSlow("-00:00:00.250")).isEqualTo(
+        Duration.newBuilder().setNanos(-250000000).build());
+  }
+
+  @Test
+  public void parseTimestamp_fastMatchesSlow() {
+    final Random r = new Random(539);
+    int fast = 0;
+    for (int i = 0; i < ROUNDS; i++) {
+      final String s = randomTimestamp(r);
+      if (TimestampDeserializer.parseTimestampFast(s) != null) {
+        fast++;
+      }
+      checkSame(s,
+          TimestampDeserializer::parseTimestampFast,
+          TimestampDeserializer::parseTimestampSlow);
+      checkSame(mutate(s, r),
+          TimestampDeserializer::parseTimestampFast,
+          TimestampDeserializer::parseTimestampSlow);
+    }
+    // Most of the well-formed ones should not need the slow path.
+    assertThat(fast).isGreaterThan(ROUNDS / 2);
+  }
+
+  @Test
+  public void parseIcpcDuration_fastMatchesSlow() {
+    final Random r = new Random(539);
+    int fast = 0;
+    for (int i = 0; i < ROUNDS; i++) {
+      final String s = randomDuration(r);
+      if (DurationDeserializer.parseIcpcDurationFast(s) != null) {
+        fast++;
+      }
+      checkSame(s,
+          DurationDeserializer::parseIcpcDurationFast,
+          DurationDeserializer::parseIcpcDurationSlow);
+      checkSame(mutate(s, r),
+          DurationDeserializer::parseIcpcDurationFast,
+          DurationDeserializer::parseIcpcDurationSlow);
+    }
+    assertThat(fast).isGreaterThan(ROUNDS / 2);
+  }
+
+  /** The fast parser may give up, but if it doesn't then it must agree with the slow one. */
+  private static <T> void checkSame(String s, Function<String, T> fast, Function<String, T> slow) {
+    final T expected;
+    try {
+      expected = slow.apply(s);
+    } catch (DateTimeParseException e) {
+      assertWithMessage("Fast parser accepted invalid '" + s + "'")
+          .that(fast.apply(s))
+          .isNull();
+      return;
+    }
+    final T actual = fast.apply(s);
+    if (actual != null) {
+      assertWithMessage("Parsing '" + s + "'").that(actual).isEqualTo(expected);
+    }
+  }
+
+  private static String randomTimestamp(Random r) {
+    final StringBuilder sb = new StringBuilder();
+    sb.append(String.format("%04d-%02d-%02dT%02d:%02d:",
+        1900 + r.nextInt(300),
+        1 + r.nextInt(12),
+        1 + r.nextInt(r.nextInt(20) == 0 ? 31 : 28),
+        r.nextInt(r.nextInt(20) == 0 ? 25 : 24),
+        r.nextInt(60)));
+    final int second = r.nextInt(r.nextInt(50) == 0 ? 61 : 60);
+    final boolean fraction = r.nextBoolean();
+    sb.append(fraction && r.nextInt(4) == 0 ? Integer.toString(second)
+        : String.format("%02d", second));
+    if (fraction) {
+      sb.append('.');
+      for (int i = 1 + r.nextInt(9); i > 0; i--) {
+        sb.append((char) ('0' + r.nextInt(10)));
+      }
+    }
+    switch (r.nextInt(6)) {
+      case 0:
+        sb.append('Z');
+        break;
+      case 1:
+        sb.append('+');
+        for (int i = 1 + r.nextInt(4); i > 0; i--) {
+          sb.append('0');
+        }
+        break;
+      default:
+        sb.append(String.format("%s%02d:%02d",
+            r.nextBoolean() ? "+" : "-",
+            r.nextInt(r.nextInt(20) == 0 ? 20 : 15),
+            r.nextInt(4) * 15));
+        break;
+    }
+    return sb.toString();
+  }
+
+  private static String randomDuration(Random r) {
+    final StringBuilder sb = new StringBuilder();
+    switch (r.nextInt(4)) {
+      case 0:
+        sb.append('-');
+        break;
+      case 1:
+        sb.append('+');
+        break;
+    }
+    sb.append(r.nextInt(r.nextBoolean() ? 10 : 1000));
+    sb.append(':');
+    sb.append(String.format(r.nextBoolean() ? "%02d" : "%d", r.nextInt(60)));
+    sb.append(':');
+    sb.append(String.format(r.nextBoolean() ? "%02d" : "%d", r.nextInt(60)));
+    if (r.nextBoolean()) {
+      sb.append('.');
+      for (int i = r.nextInt(12); i > 0; i--) {
+        sb.append((char) ('0' + r.nextInt(10)));
+      }
+    }
+    return sb.toString();
+  }
+
+  private static String mutate(String s, Random r) {
+    final StringBuilder sb = new StringBuilder(s);
+    final int at = r.nextInt(s.length() + 1);
+    final char c = CHARS.charAt(r.nextInt(CHARS.length()));
+    switch (r.nextInt(3)) {
+      case 0:
+        sb.insert(at, c);
+        break;
+      case 1:
+        if (at < s.length()) {
+          sb.setCharAt(at, c);
+        }
+        break;
+      default:
+        if (at < s.length()) {
+          sb.deleteCharAt(at);
+        }
+        break;
+    }
+    return sb.toString();
+  }
+}
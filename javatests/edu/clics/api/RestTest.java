@@ -19,6 +19,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.BlockingQueue;
 
@@ -215,4 +216,29 @@ public class RestTest {
 
     assertThat(new ClicsRest.GsonSingleton().get().toJson(event)).isEqualTo(json.toString());
   }
+
+  @Test
+  public void getMapFrom_streamsArray_firstIdWins() throws Exception {
+    JsonArray json = new JsonArray();
+    for (String[] s : new String[][] {{"1", "10"}, {"2", "20"}, {"1", "30"}}) {
+      JsonObject submission = new JsonObject();
+      submission.addProperty("id", s[0]);
+      submission.addProperty("team_id", s[1]);
+      submission.addProperty("contest_time", "0:01:00.000");
+      json.add(submission);
+    }
+
+    server.enqueue(new MockResponse().setBody(json.toString()));
+    server.enqueue(new MockResponse().setBody(""));
+    server.enqueue(new MockResponse().setResponseCode(401));
+
+    Map<String, Submission> submissions =
+        client.getMapFrom("/submissions", Submission.class, Submission::getId);
+    assertThat(submissions.keySet()).containsExactly("1", "2");
+    assertThat(submissions.get("1").getTeamId()).isEqualTo("10");
+    assertThat(submissions.get("2").getContestTime().getSeconds()).isEqualTo(60L);
+
+    assertThat(client.getListFrom("/submissions", Submission.class)).isEmpty();
+    assertThat(client.getListFrom("/submissions", Submission.class)).isEmpty();
+  }
 }
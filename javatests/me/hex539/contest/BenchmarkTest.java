@@ -0,0 +1,591 @@
+package me.hex539.contest;
+
+import static com.google.common.truth.Truth.*;
+
+import com.google.protobuf.util.Durations;
+import edu.clics.proto.ClicsProto.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import me.hex539.contest.model.Ranklist;
+import me.hex539.contest.mutable.RanklistColumnar;
+import me.hex539.contest.mutable.RanklistMutable;
+import org.junit.Test;
+
+public class BenchmarkTest {
+  private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+  /**
+   * @return bytes allocated by this thread so far, or 0 on JVMs that can't count them, in which
+   *         case every allocation figure comes out as 0 too.
+   */
+  private static long allocatedBytes() {
+    if (THREADS instanceof com.sun.management.ThreadMXBean) {
+      final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+      if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+        return threads.getCurrentThreadAllocatedBytes();
+      }
+    }
+    return 0;
+  }
+
+  @Test
+  public void benchmarkRowComparatorNwerc2017() throws Exception {
+    final ClicsContest contest = loadContest("nwerc2017.pb");
+    final ScoreboardModel reference =
+        ImmutableScoreboardModel.of(ScoreboardModelImpl.newBuilder(contest)
+            .filterTooLateSubmissions()
+            .build());
+
+    final RowComparatorRun before = replayRowComparator(contest, reference, false);
+    final RowComparatorRun after = replayRowComparator(contest, reference, true);
+
+    System.err.println("");
+    System.err.println("RowComparator on nwerc2017, per judgement:");
+    System.err.println("  uncached: " + before);
+    System.err.println("  cached:   " + after);
+
+    assertThat(after.comparisons).isEqualTo(before.comparisons);
+    assertThat(after.order).containsExactlyElementsIn(before.order).inOrder();
+  }
+
+  private static class RowComparatorRun {
+    long judgements;
+    long comparisons;
+    long allocatedBytes;
+    List<String> order;
+
+    @Override
+    public String toString() {
+      return String.format("%.1f comparisons, %.1f bytes allocated",
+          comparisons / (double) judgements,
+          allocatedBytes / (double) judgements);
+    }
+  }
+
+  /** A mirrored row, and the slot of its sort key if the comparator caches them. */
+  private static class SlottedRow {
+    final ScoreboardRow.Builder row;
+    int slot;
+
+    SlottedRow(ScoreboardRow.Builder row) {
+      this.row = row;
+    }
+  }
+
+  /**
+   * Replays every judgement of a contest while mirroring the ranklist in a {@link SplayList}
+   * ordered by a counting {@link Comparators.RowComparator}, the same way
+   * {@link me.hex539.contest.mutable.RanklistMutable} does. Only the time spent in the mirror
+   * is measured.
+   */
+  private static RowComparatorRun replayRowComparator(
+      ClicsContest contest,
+      ScoreboardModel reference,
+      boolean cached) {
+    final ScoreboardModelImpl model =
+        ScoreboardModelImpl.newBuilder(contest, reference)
+            .withEmptyScoreboard()
+            .filterSubmissions(s -> false)
+            .build();
+
+    final RowComparatorRun run = new RowComparatorRun();
+    final Comparators.RowComparator rowComparator =
+        new Comparators.RowComparator(model.getTeamsModel());
+    final SplayList<SlottedRow> rows = new SplayList<>((a, b) -> {
+      run.comparisons++;
+      return cached
+          ? rowComparator.compareCached(a.slot, b.slot)
+          : rowComparator.compare(a.row, b.row);
+    });
+    final Map<String, SlottedRow> rowsByTeam = new HashMap<>();
+    for (ScoreboardRow row : model.getRanklistModel().getRows()) {
+      final SlottedRow slotted = new SlottedRow(row.toBuilder());
+      if (cached) {
+        slotted.slot = rowComparator.refresh(slotted.row);
+      }
+      rowsByTeam.put(row.getTeamId(), slotted);
+      rows.add(slotted);
+    }
+
+    final JudgementDispatcher dispatcher = new JudgementDispatcher(model, false);
+    dispatcher.observers.add(model);
+    dispatcher.observers.add(new ScoreboardModel.Observer() {
+      @Override
+      public void onProblemScoreChanged(Team team, ScoreboardProblem problem) {
+        final int index = model.getProblemsModel().getProblemIndex(problem.getProblemId());
+        update(rowsByTeam.get(team.getId()), row -> row.setProblems(index, problem));
+      }
+
+      @Override
+      public void onScoreChanged(Team team, ScoreboardScore score) {
+        update(rowsByTeam.get(team.getId()), row -> row.setScore(score));
+      }
+
+      private void update(SlottedRow row, Consumer<ScoreboardRow.Builder> change) {
+        long startBytes = allocatedBytes();
+        rows.remove(row);
+        run.allocatedBytes += allocatedBytes() - startBytes;
+
+        change.accept(row.row);
+
+        startBytes = allocatedBytes();
+        if (cached) {
+          row.slot = rowComparator.refresh(row.row);
+        }
+        rows.add(row);
+        run.allocatedBytes += allocatedBytes() - startBytes;
+      }
+    });
+
+    reference.getJudgeModel().getSubmissions().forEach(dispatcher::notifySubmission);
+    run.comparisons = 0;
+    run.allocatedBytes = 0;
+    for (Judgement j : reference.getJudgeModel().getJudgements()) {
+      dispatcher.notifyJudgement(j);
+      run.judgements++;
+    }
+
+    run.order = rows.stream().map(r -> r.row.getTeamId()).collect(Collectors.toList());
+    return run;
+  }
+
+  @Test
+  public void benchmarkGetRowsLargeContest() throws Exception {
+    final int teams = 5_000;
+    final int judgements = 100_000;
+    final ClicsContest contest = randomContest(teams, 10, judgements, new Random(539));
+
+    final ScoreboardModelImpl reference = ScoreboardModelImpl.newBuilder(contest).build();
+    final GetRowsRun oneShot = replay(contest, reference, GetRows.NEVER);
+    // Copying out every snapshot costs the same as building a fresh array on every call did.
+    final GetRowsRun copied = replay(contest, reference, GetRows.COPY);
+    final GetRowsRun incremental = replay(contest, reference, GetRows.SNAPSHOT);
+
+    System.err.println("");
+    System.err.println("getRows() after every judgement, " + teams + " teams:");
+    System.err.println("  never:   " + oneShot);
+    System.err.println("  copied:  " + copied);
+    System.err.println("  patched: " + incremental);
+
+    final Ranklist ranklist = incremental.model.getRanklistModel();
+    assertThat(ranklist.getRows())
+        .containsExactlyElementsIn(oneShot.model.getRanklistModel().getRows())
+        .inOrder();
+    for (int i = 0; i < teams; i++) {
+      assertThat(ranklist.getRow(i).getRank()).isEqualTo(i + 1);
+    }
+    // Snapshots taken along the way must not have been changed by the patching since.
+    assertThat(incremental.oldSnapshot).containsExactlyElementsIn(copied.oldSnapshot).inOrder();
+  }
+
+  private enum GetRows {
+    NEVER,
+    COPY,
+    SNAPSHOT,
+  }
+
+  private static class GetRowsRun {
+    ScoreboardModelImpl model;
+    List<?> oldSnapshot;
+    Duration time;
+    long judgements;
+    long allocatedBytes;
+
+    @Override
+    public String toString() {
+      return String.format("%d ms in total, %d bytes allocated per judgement",
+          time.toMillis(),
+          allocatedBytes / judgements);
+    }
+  }
+
+  @Test
+  public void benchmarkColumnarRanklist() throws Exception {
+    final ClicsContest contest = randomContest(5_000, 10, 100_000, new Random(539));
+    final ScoreboardModelImpl reference = ScoreboardModelImpl.newBuilder(contest).build();
+    final ScoreboardModelImpl model =
+        ScoreboardModelImpl.newBuilder(contest, reference)
+            .withEmptyScoreboard()
+            .filterSubmissions(s -> false)
+            .build();
+
+    // Record every update the dispatcher makes to the ranklist, so that both implementations
+    // can be fed exactly the same sequence.
+    final List<Consumer<Ranklist.Observer>> updates = new ArrayList<>();
+    final JudgementDispatcher dispatcher = new JudgementDispatcher(model, false);
+    dispatcher.observers.add(model);
+    dispatcher.observers.add(new ScoreboardModel.Observer() {
+      @Override
+      public void onProblemScoreChanged(Team team, ScoreboardProblem problem) {
+        updates.add(x -> x.onProblemScoreChanged(team, problem));
+      }
+
+      @Override
+      public void onScoreChanged(Team team, ScoreboardScore score) {
+        updates.add(x -> x.onScoreChanged(team, score));
+      }
+    });
+    reference.getJudgeModel().getSubmissions().forEach(dispatcher::notifySubmission);
+    reference.getJudgeModel().getJudgements().forEach(dispatcher::notifyJudgement);
+
+    final RanklistRun builders = replayRanklist(updates, () ->
+        RanklistMutable.newBuilder()
+            .setTeams(model.getTeamsModel())
+            .setProblems(model.getProblemsModel())
+            .build());
+    final RanklistRun columns = replayRanklist(updates, () ->
+        new RanklistColumnar(model.getTeamsModel(), model.getProblemsModel()));
+
+    System.err.println("");
+    System.err.println("Ranklist updates, " + updates.size() + " on 5000 teams:");
+    System.err.println("  RanklistMutable:  " + builders);
+    System.err.println("  RanklistColumnar: " + columns);
+
+    assertThat(columns.ranklist.getRows())
+        .containsExactlyElementsIn(builders.ranklist.getRows())
+        .inOrder();
+    assertThat(columns.ranklist.getRows())
+        .containsExactlyElementsIn(model.getRanklistModel().getRows())
+        .inOrder();
+  }
+
+  private static class RanklistRun {
+    Ranklist ranklist;
+    long retainedBytes;
+    long allocatedBytes;
+    Duration updateTime;
+    int updates;
+
+    @Override
+    public String toString() {
+      return String.format("%d KiB retained, %.1f bytes allocated and %d ns per update",
+          retainedBytes / 1024,
+          allocatedBytes / (double) updates,
+          updateTime.toNanos() / updates);
+    }
+  }
+
+  private static <T extends Ranklist & Ranklist.Observer> RanklistRun replayRanklist(
+      List<Consumer<Ranklist.Observer>> updates,
+      Supplier<T> factory) {
+    final RanklistRun run = new RanklistRun();
+    final long startHeap = usedHeap();
+    final T ranklist = factory.get();
+    run.retainedBytes = usedHeap() - startHeap;
+
+    final long startBytes = allocatedBytes();
+    final Instant start = Instant.now();
+    updates.forEach(x -> x.accept(ranklist));
+    run.updateTime = Duration.between(start, Instant.now());
+    run.allocatedBytes = allocatedBytes() - startBytes;
+    run.updates = updates.size();
+    run.ranklist = ranklist;
+    return run;
+  }
+
+  private static long usedHeap() {
+    final Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  @Test
+  public void benchmarkDispatcherLargeContest() throws Exception {
+    final int teams = 10_000;
+    final ClicsContest contest = randomContest(teams, 10, 200_000, new Random(539));
+    final ScoreboardModelImpl reference = ScoreboardModelImpl.newBuilder(contest).build();
+
+    // Warm up first so that the measured runs are not dominated by class loading and JIT, then
+    // keep the best of a few, since one run only takes a fraction of a second.
+    replayDispatcher(contest, reference);
+    DispatcherRun run = replayDispatcher(contest, reference);
+    for (int i = 0; i < 5; i++) {
+      final DispatcherRun next = replayDispatcher(contest, reference);
+      next.submissionTime = min(next.submissionTime, run.submissionTime);
+      next.judgementTime = min(next.judgementTime, run.judgementTime);
+      run = next;
+    }
+
+    System.err.println("");
+    System.err.println("JudgementDispatcher and JudgeMutable, " + teams + " teams:");
+    System.err.println("  " + run);
+  }
+
+  private static Duration min(Duration a, Duration b) {
+    return a.compareTo(b) <= 0 ? a : b;
+  }
+
+  private static class DispatcherRun {
+    long submissions;
+    long judgements;
+    Duration submissionTime;
+    Duration judgementTime;
+    long retainedBytes;
+
+    @Override
+    public String toString() {
+      return String.format("%.0f submissions/s, %.0f judgements/s, %d KiB retained",
+          submissions / (submissionTime.toNanos() / 1e9),
+          judgements / (judgementTime.toNanos() / 1e9),
+          retainedBytes / 1024);
+    }
+  }
+
+  /**
+   * Feeds every submission and judgement through a fresh dispatcher into an empty judge. The
+   * ranklist is left out, so this only measures the dispatcher's scoring and the judge's indexes.
+   */
+  private static DispatcherRun replayDispatcher(
+      ClicsContest contest,
+      ScoreboardModel reference) {
+    final ScoreboardModelImpl model =
+        ScoreboardModelImpl.newBuilder(contest, reference)
+            .withEmptyScoreboard()
+            .filterSubmissions(s -> false)
+            .build();
+    final List<Submission> submissions = reference.getJudgeModel().getSubmissions();
+    final List<Judgement> judgements = reference.getJudgeModel().getJudgements();
+
+    final DispatcherRun run = new DispatcherRun();
+    final long startHeap = usedHeap();
+    final JudgementDispatcher dispatcher = new JudgementDispatcher(model, false);
+    dispatcher.observers.add(new ScoreboardModel.Observer() {
+      @Override
+      public void onProblemSubmitted(Team team, Submission submission) {
+        model.getJudgeModel().onProblemSubmitted(team, submission);
+      }
+
+      @Override
+      public void onSubmissionJudged(Team team, Judgement judgement) {
+        model.getJudgeModel().onSubmissionJudged(team, judgement);
+      }
+    });
+
+    Instant start = Instant.now();
+    submissions.forEach(dispatcher::notifySubmission);
+    run.submissionTime = Duration.between(start, Instant.now());
+    run.submissions = submissions.size();
+
+    start = Instant.now();
+    judgements.forEach(dispatcher::notifyJudgement);
+    run.judgementTime = Duration.between(start, Instant.now());
+    run.judgements = judgements.size();
+
+    run.retainedBytes = usedHeap() - startHeap;
+    // Both still have to be reachable when the heap is measured.
+    assertThat(dispatcher.observers).isNotEmpty();
+    assertThat(model.getJudgeModel().getJudgements()).hasSize(judgements.size());
+    return run;
+  }
+
+  @Test
+  public void benchmarkResolverThroughputNwerc2017() throws Exception {
+    final ClicsContest contest = loadContest("nwerc2017.pb");
+    final ScoreboardModel reference =
+        ImmutableScoreboardModel.of(ScoreboardModelImpl.newBuilder(contest)
+            .filterTooLateSubmissions()
+            .build());
+
+    System.err.println("");
+    System.err.println("ResolverController on nwerc2017, full resolution:");
+    for (SpscRingBuffer.WaitStrategy waitStrategy : SpscRingBuffer.WaitStrategy.values()) {
+      if (waitStrategy == SpscRingBuffer.WaitStrategy.SPIN
+          && Runtime.getRuntime().availableProcessors() < 2) {
+        continue;
+      }
+      // Warm up first so that the measured run is not dominated by class loading and JIT.
+      drainResolver(contest, reference, waitStrategy);
+      final long[] run = drainResolver(contest, reference, waitStrategy);
+      System.err.println(String.format("  %-5s %d events, %.0f events/s",
+          waitStrategy,
+          run[0],
+          run[0] / (run[1] / 1e9)));
+    }
+  }
+
+  @Test
+  public void benchmarkModelBuildNwerc2018() throws Exception {
+    System.err.println("");
+    System.err.println("ScoreboardModelImpl.Builder, three models from one contest:");
+    benchmarkModelBuild("nwerc2018", loadContest("nwerc2018.pb"));
+    benchmarkModelBuild("random", randomContest(5_000, 10, 100_000, new Random(539)));
+  }
+
+  private static void benchmarkModelBuild(String name, ClicsContest contest) {
+    final int rounds = 10;
+    // Warm up first so that the measured run is not dominated by class loading and JIT.
+    buildModels(contest);
+    final long start = System.nanoTime();
+    for (int i = 0; i < rounds; i++) {
+      buildModels(contest);
+    }
+    System.err.println(String.format("  %-9s %.1f ms per set",
+        name,
+        (System.nanoTime() - start) / 1e6 / rounds));
+  }
+
+  private static void buildModels(ClicsContest contest) {
+    // The same sort of models that the resolver and the scoreboard apps start out with. Like
+    // them, the later ones copy from the first rather than going back to the contest.
+    final ScoreboardModelImpl full = ScoreboardModelImpl.newBuilder(contest)
+        .filterTooLateSubmissions()
+        .build();
+    ScoreboardModelImpl.newBuilder(contest, full)
+        .filterGroups(g -> !g.getHidden())
+        .build();
+    ScoreboardModelImpl.newBuilder(contest, full)
+        .withEmptyScoreboard()
+        .filterSubmissions(s -> false)
+        .build();
+  }
+
+  /** @return the number of events delivered and the number of nanoseconds it took to drain. */
+  private static long[] drainResolver(
+      ClicsContest contest,
+      ScoreboardModel reference,
+      SpscRingBuffer.WaitStrategy waitStrategy) {
+    final long[] events = {0};
+    final ResolverController resolver =
+        new ResolverController(contest, reference, false, 256, waitStrategy)
+            .addObserver(new ResolverController.Observer() {
+              @Override
+              public void onProblemSubmitted(Team team, Submission submission) {
+                events[0]++;
+              }
+
+              @Override
+              public void onSubmissionJudged(Team team, Judgement judgement) {
+                events[0]++;
+              }
+
+              @Override
+              public void onProblemScoreChanged(Team team, ScoreboardProblem problem) {
+                events[0]++;
+              }
+
+              @Override
+              public void onScoreChanged(Team team, ScoreboardScore score) {
+                events[0]++;
+              }
+
+              @Override
+              public void onTeamRankChanged(Team team, int oldRank, int newRank) {
+                events[0]++;
+              }
+
+              @Override
+              public void onProblemFocused(Team team, Problem problem) {
+                events[0]++;
+              }
+
+              @Override
+              public void onTeamRankFinalised(Team team, int rank) {
+                events[0]++;
+              }
+            });
+
+    final long start = System.nanoTime();
+    resolver.drain();
+    return new long[] {events[0], System.nanoTime() - start};
+  }
+
+  private static GetRowsRun replay(
+      ClicsContest contest,
+      ScoreboardModel reference,
+      GetRows getRows) {
+    final ScoreboardModelImpl model =
+        ScoreboardModelImpl.newBuilder(contest, reference)
+            .withEmptyScoreboard()
+            .filterSubmissions(s -> false)
+            .build();
+    final JudgementDispatcher dispatcher = new JudgementDispatcher(model, false);
+    dispatcher.observers.add(model);
+    reference.getJudgeModel().getSubmissions().forEach(dispatcher::notifySubmission);
+    model.getRanklistModel().getRows();
+
+    final GetRowsRun run = new GetRowsRun();
+    final List<Judgement> judgements = reference.getJudgeModel().getJudgements();
+    final long startBytes = allocatedBytes();
+    final Instant start = Instant.now();
+    for (Judgement j : judgements) {
+      dispatcher.notifyJudgement(j);
+      if (getRows != GetRows.NEVER) {
+        List<?> rows = model.getRanklistModel().getRows();
+        if (getRows == GetRows.COPY) {
+          rows = Arrays.asList(rows.toArray());
+        }
+        if (run.judgements == judgements.size() / 2) {
+          run.oldSnapshot = rows;
+        }
+      }
+      run.judgements++;
+    }
+    run.time = Duration.between(start, Instant.now());
+    run.allocatedBytes = allocatedBytes() - startBytes;
+    run.model = model;
+    return run;
+  }
+
+  /**
+   * Synthetic contest where every submission is judged, and roughly one in five is accepted.
+   */
+  private static ClicsContest randomContest(int teams, int problems, int submissions, Random r) {
+    final ClicsContest.Builder cc = ClicsContest.newBuilder()
+        .setContest(Contest.newBuilder()
+            .setContestDuration(Durations.fromMillis(TimeUnit.HOURS.toMillis(5)))
+            .setScoreboardFreezeDuration(Durations.fromMillis(TimeUnit.HOURS.toMillis(1)))
+            .setPenaltyTime(20)
+            .build())
+        .putJudgementTypes("AC", JudgementType.newBuilder()
+            .setId("AC").setSolved(true).build())
+        .putJudgementTypes("WA", JudgementType.newBuilder()
+            .setId("WA").setPenalty(true).build())
+        .putGroups("P", Group.newBuilder().setId("P").setName("Participants").build());
+    for (int i = 0; i < problems; i++) {
+      final String id = Character.toString((char) ('A' + i));
+      cc.putProblems(id, Problem.newBuilder().setId(id).setLabel(id).setOrdinal(i).build());
+    }
+    for (int i = 0; i < teams; i++) {
+      final String id = String.format("t%08d", i);
+      cc.putTeams(id, Team.newBuilder().setId(id).setName(id).addGroupIds("P").build());
+    }
+    for (int i = 0; i < submissions; i++) {
+      final String id = "s" + i;
+      final com.google.protobuf.Duration time =
+          Durations.fromMillis(TimeUnit.HOURS.toMillis(5) * i / submissions);
+      cc.putSubmissions(id, Submission.newBuilder()
+          .setId(id)
+          .setTeamId(String.format("t%08d", r.nextInt(teams)))
+          .setProblemId(Character.toString((char) ('A' + r.nextInt(problems))))
+          .setContestTime(time)
+          .build());
+      cc.putJudgements("j" + i, Judgement.newBuilder()
+          .setId("j" + i)
+          .setSubmissionId(id)
+          .setJudgementTypeId(r.nextInt(5) == 0 ? "AC" : "WA")
+          .setStartContestTime(time)
+          .setEndContestTime(time)
+          .build());
+    }
+    return cc.build();
+  }
+
+  private static ClicsContest loadContest(String name) throws Exception {
+    return new ContestDownloader(
+        BenchmarkTest.class.getResourceAsStream("/resources/contests/" + name)).fetch();
+  }
+}
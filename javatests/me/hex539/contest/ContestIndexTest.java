@@ -0,0 +1,112 @@
+package me.hex539.contest;
+
+import com.google.protobuf.Duration;
+import edu.clics.proto.ClicsProto.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.*;
+
+public class ContestIndexTest {
+  /** Something to sort, with a label to tell apart entries at the same time. */
+  private static final class Entry {
+    final Duration time;
+    final String label;
+
+    Entry(long seconds, int nanos, String label) {
+      this.time = Duration.newBuilder().setSeconds(seconds).setNanos(nanos).build();
+      this.label = label;
+    }
+
+    Duration getTime() {
+      return time;
+    }
+
+    @Override
+    public String toString() {
+      return label;
+    }
+  }
+
+  private static List<String> labels(List<Entry> entries) {
+    final List<String> res = new ArrayList<>();
+    entries.forEach(e -> res.add(e.label));
+    return res;
+  }
+
+  @Test
+  public void testSortByTime() {
+    final List<Entry> entries = Arrays.asList(
+        new Entry(30, 0, "c"),
+        new Entry(10, 0, "a"),
+        new Entry(20, 500, "b2"),
+        new Entry(20, 0, "b1"),
+        new Entry(0, 0, "start"));
+    assertThat(labels(ContestIndex.sortByTime(entries, Entry::getTime)))
+        .containsExactly("start", "a", "b1", "b2", "c").inOrder();
+  }
+
+  @Test
+  public void testSortByTimeKeepsTiesInOrder() {
+    final List<Entry> entries = Arrays.asList(
+        new Entry(20, 0, "x1"),
+        new Entry(10, 0, "y1"),
+        new Entry(20, 0, "x2"),
+        new Entry(10, 0, "y2"),
+        new Entry(20, 0, "x3"),
+        new Entry(10, 0, "y3"));
+    assertThat(labels(ContestIndex.sortByTime(entries, Entry::getTime)))
+        .containsExactly("y1", "y2", "y3", "x1", "x2", "x3").inOrder();
+  }
+
+  @Test
+  public void testSortByTimeAlreadySorted() {
+    final List<Entry> entries = Arrays.asList(
+        new Entry(10, 0, "a"),
+        new Entry(10, 0, "b"),
+        new Entry(11, 0, "c"));
+    assertThat(labels(ContestIndex.sortByTime(entries, Entry::getTime)))
+        .containsExactly("a", "b", "c").inOrder();
+    assertThat(ContestIndex.sortByTime(new ArrayList<Entry>(), Entry::getTime)).isEmpty();
+  }
+
+  @Test
+  public void testSortByTimeMatchesStableSort() {
+    final Random random = new Random(539);
+    for (int size : new int[] {2, 3, 17, 1000}) {
+      final List<Entry> entries = new ArrayList<>();
+      for (int i = 0; i < size; i++) {
+        // Few distinct times, so that there are plenty of ties to keep in order.
+        entries.add(new Entry(random.nextInt(10), random.nextInt(2), "e" + i));
+      }
+      final List<Entry> expected = new ArrayList<>(entries);
+      expected.sort(Comparator
+          .comparingLong((Entry e) -> e.time.getSeconds())
+          .thenComparingInt(e -> e.time.getNanos()));
+      assertThat(ContestIndex.sortByTime(entries, Entry::getTime))
+          .containsExactlyElementsIn(expected).inOrder();
+    }
+  }
+
+  @Test
+  public void testIndexSharedBetweenModels() {
+    final ClicsContest contest = ClicsContest.newBuilder()
+        .putProblems("A", Problem.newBuilder().setId("A").setOrdinal(0).build())
+        .build();
+    final ScoreboardModelImpl first = ScoreboardModelImpl.newBuilder(contest).build();
+    final ContestIndex index = first.getIndex().get();
+
+    assertThat(first.toBuilder().build().getIndex().get()).isSameAs(index);
+    assertThat(ScoreboardModelImpl.newBuilder(contest, first).build().getIndex().get())
+        .isSameAs(index);
+
+    // A different contest needs an index of its own.
+    final ClicsContest other = contest.toBuilder().build();
+    assertThat(ScoreboardModelImpl.newBuilder(other, first).build().getIndex().isPresent())
+        .isFalse();
+  }
+}
@@ -1,8 +1,14 @@
 package me.hex539.contest;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 import java.util.List;
+import java.util.Random;
 import java.util.SortedSet;
 import org.junit.Test;
 import java.util.TreeSet;
@@ -71,6 +77,69 @@ public class DataStructuresTest {
     assertThat(l.stream().filter(x -> x > 7).findFirst().get()).isEqualTo(8);
   }
 
+  @Test
+  public void testIterator() {
+    SplayList<Long> l = new SplayList<>();
+    l.addAll(longList(6, 5, 4, 3, 7, 8, 9, 1, 2));
+
+    // Random access in the middle of a traversal reshapes the tree but not the order.
+    Iterator<Long> it = l.iterator();
+    assertThat(it.next()).isEqualTo(1);
+    assertThat(l.get(7)).isEqualTo(8);
+    assertThat(it.next()).isEqualTo(2);
+
+    // Removing through the iterator is allowed.
+    while (it.hasNext()) {
+      if (it.next() % 3 == 0) {
+        it.remove();
+      }
+    }
+    assertThat(l).containsExactlyElementsIn(longList(1, 2, 4, 5, 7, 8)).inOrder();
+
+    // Removing behind its back is not.
+    it = l.iterator();
+    it.next();
+    l.remove(Long.valueOf(7));
+    try {
+      it.next();
+      throw new AssertionError("Expected ConcurrentModificationException");
+    } catch (ConcurrentModificationException expected) {
+    }
+  }
+
+  @Test
+  public void testParallelStream() {
+    SplayList<Long> l = new SplayList<>();
+    LongStream.range(0, 100000).map(i -> (i * 7919) % 100000).forEach(l::add);
+
+    assertThat(l.parallelStream().mapToLong(x -> x).sum()).isEqualTo(99999L * 100000L / 2);
+    assertThat(l.parallelStream().collect(Collectors.toList()))
+        .containsExactlyElementsIn(LongStream.range(0, 100000).boxed().collect(Collectors.toList()))
+        .inOrder();
+  }
+
+  @Test
+  public void testBulkLoad() {
+    // Sorted input.
+    SplayList<Long> sorted = new SplayList<>(longList(1, 2, 3, 4, 5, 6, 7));
+    assertThat(sorted).containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L).inOrder();
+    assertThat(sorted.indexOf(Long.valueOf(5))).isEqualTo(4);
+
+    // Unsorted input with duplicates.
+    SplayList<Long> unsorted = new SplayList<>(longList(5, 3, 9, 3, 1, 9, 2));
+    assertThat(unsorted).containsExactly(1L, 2L, 3L, 5L, 9L).inOrder();
+    assertThat(unsorted.indexOf(Long.valueOf(9))).isEqualTo(4);
+    unsorted.add(4L);
+    assertThat(unsorted.get(3)).isEqualTo(4);
+
+    // Tagged input keeps its order and can be looked up straight away.
+    SplayList<Long> tagged = new SplayList<>(longList(8, 6, 7, 5, 3, 0, 9), x -> x);
+    assertThat(tagged).containsExactly(8L, 6L, 7L, 5L, 3L, 0L, 9L).inOrder();
+    assertThat(tagged.indexOfTag(3L)).isEqualTo(4);
+    assertThat(tagged.indexOfTag(8L)).isEqualTo(0);
+    assertThat(tagged.indexOfTag(9L)).isEqualTo(6);
+  }
+
   @Test
   public void testCustomComparator() {
     SplayList<String> l = new SplayList<>((a, b) -> {
@@ -136,6 +205,48 @@ public class DataStructuresTest {
     assertThat(l.subSet(3L, 8L)).containsExactly(3L, 4L, 5L, 6L, 7L).inOrder();
   }
 
+  @Test
+  public void testViews() {
+    SplayList<Long> l = new SplayList<>(longList(1, 2, 3, 4, 5, 6, 7, 8, 9));
+
+    SortedSet<Long> head = l.headSet(Long.valueOf(5));
+    SortedSet<Long> middle = l.subSet(3L, 7L);
+    List<Long> slice = l.subList(2, 6);
+    assertThat(slice).containsExactly(3L, 4L, 5L, 6L).inOrder();
+    assertThat(slice.get(1)).isEqualTo(4);
+
+    // Sorted views follow changes to the list.
+    l.remove(Long.valueOf(4));
+    l.add(Long.valueOf(0));
+    assertThat(head).containsExactly(0L, 1L, 2L, 3L).inOrder();
+    assertThat(middle).containsExactly(3L, 5L, 6L).inOrder();
+    assertThat(middle.first()).isEqualTo(3);
+    assertThat(middle.last()).isEqualTo(6);
+    assertThat(middle.contains(Long.valueOf(8))).isFalse();
+    assertThat(middle.headSet(Long.valueOf(6))).containsExactly(3L, 5L).inOrder();
+
+    // ...and the list follows changes to the views.
+    middle.add(Long.valueOf(4));
+    assertThat(l.indexOf(Long.valueOf(4))).isEqualTo(4);
+    try {
+      middle.add(Long.valueOf(7));
+      throw new AssertionError("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException expected) {
+    }
+
+    // Positional views are invalidated by outside changes, but not their own.
+    slice = l.subList(1, 4);
+    assertThat(slice.remove(0)).isEqualTo(1);
+    assertThat(slice).containsExactly(2L, 3L).inOrder();
+    assertThat(l).containsExactly(0L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L).inOrder();
+    l.add(Long.valueOf(10));
+    try {
+      slice.size();
+      throw new AssertionError("Expected ConcurrentModificationException");
+    } catch (ConcurrentModificationException expected) {
+    }
+  }
+
   @Test
   public void testFlatReversibleList() {
     SplayList<Long> l = new SplayList<>(x -> x);
@@ -164,7 +275,196 @@ public class DataStructuresTest {
     assertThat(c).containsExactly(1L, 2L, 3L, 4L, 7L, 9L, 55L).inOrder();
   }
 
+  @Test
+  public void testGroupOrderStatistics() {
+    // Group 0 is the even numbers, group 1 the multiples of three.
+    SplayList<Long> l = new SplayList<>(
+        Comparator.naturalOrder(),
+        2,
+        x -> (x % 2 == 0 ? 1L : 0L) | (x % 3 == 0 ? 2L : 0L));
+    l.addAll(longList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12));
+
+    assertThat(l.sizeOfGroup(0)).isEqualTo(6);
+    assertThat(l.sizeOfGroup(1)).isEqualTo(4);
+    assertThat(l.getInGroup(0, 2)).isEqualTo(6L);
+    assertThat(l.getInGroup(1, 3)).isEqualTo(12L);
+    assertThat(l.indexInGroup(Long.valueOf(10), 0)).isEqualTo(4);
+    assertThat(l.indexInGroup(Long.valueOf(9), 1)).isEqualTo(2);
+    assertThat(l.indexInGroup(Long.valueOf(7), 1)).isEqualTo(2);
+    assertThat(l.indexInGroup(Long.valueOf(13), 1)).isEqualTo(-1);
+
+    l.remove(Long.valueOf(6));
+    l.add(Long.valueOf(0));
+    assertThat(l.sizeOfGroup(1)).isEqualTo(4);
+    assertThat(l.getInGroup(1, 0)).isEqualTo(0L);
+    assertThat(l.indexInGroup(Long.valueOf(9), 1)).isEqualTo(2);
+    assertThat(l.indexInGroup(Long.valueOf(12), 0)).isEqualTo(5);
+  }
+
+  @Test
+  public void testIdInterner() {
+    IdInterner ids = new IdInterner();
+    for (int i = 0; i < 1000; i++) {
+      assertThat(ids.intern("id" + i)).isEqualTo(i);
+    }
+    assertThat(ids.size()).isEqualTo(1000);
+    assertThat(ids.intern("id539")).isEqualTo(539);
+    assertThat(ids.indexOf(new String("id999"))).isEqualTo(999);
+    assertThat(ids.indexOf("id1000")).isEqualTo(-1);
+    assertThat(ids.get(42)).isEqualTo("id42");
+    assertThat(ids.size()).isEqualTo(1000);
+  }
+
+  @Test
+  public void testVersionedArray() {
+    final Random r = new Random(539);
+    final VersionedArray<Integer> array = new VersionedArray<>();
+    final List<Integer> expected = new ArrayList<>();
+    final List<List<Integer>> snapshots = new ArrayList<>();
+    final List<List<Integer>> copies = new ArrayList<>();
+
+    for (int round = 0; round < 2000; round++) {
+      switch (r.nextInt(8)) {
+        case 0:
+          final int size = r.nextInt(50);
+          array.setSize(size);
+          while (expected.size() > size) {
+            expected.remove(expected.size() - 1);
+          }
+          while (expected.size() < size) {
+            expected.add(null);
+          }
+          break;
+        case 1:
+          snapshots.add(array.snapshot());
+          copies.add(new ArrayList<>(expected));
+          break;
+        case 2:
+          // Reading some old snapshots in between, so that later ones can be rebuilt from them.
+          if (!snapshots.isEmpty()) {
+            final int i = r.nextInt(snapshots.size());
+            assertThat(snapshots.get(i)).containsExactlyElementsIn(copies.get(i)).inOrder();
+          }
+          break;
+        default:
+          if (!expected.isEmpty()) {
+            final int index = r.nextInt(expected.size());
+            final Integer value = r.nextInt(10);
+            array.set(index, value);
+            expected.set(index, value);
+          }
+          break;
+      }
+      assertThat(array.size()).isEqualTo(expected.size());
+    }
+
+    assertThat(array.snapshot()).containsExactlyElementsIn(expected).inOrder();
+    for (int i = snapshots.size(); i --> 0;) {
+      assertThat(snapshots.get(i)).containsExactlyElementsIn(copies.get(i)).inOrder();
+    }
+  }
+
   private static List<Long> longList(long... v) {
     return Arrays.stream(v).boxed().collect(Collectors.toList());
   }
+
+  @Test
+  public void testSpscRingBuffer() throws Exception {
+    for (int capacity : new int[] {0, 1, 3, 256}) {
+      // Spinning needs a core per thread, which a test machine might not have.
+      for (SpscRingBuffer.WaitStrategy wait : Arrays.asList(
+          SpscRingBuffer.WaitStrategy.YIELD,
+          SpscRingBuffer.WaitStrategy.PARK)) {
+        final SpscRingBuffer<Long> buffer = new SpscRingBuffer<>(capacity, wait);
+        final long count = 20_000;
+        final long[] maxAhead = {0};
+        final long[] produced = {0};
+
+        final Thread producer = new Thread(() -> {
+          try {
+            for (long i = 0; i < count; i++) {
+              buffer.put(i);
+              synchronized (produced) {
+                produced[0] = i + 1;
+              }
+            }
+          } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+          }
+        });
+        producer.start();
+
+        for (long i = 0; i < count; i++) {
+          assertThat(buffer.take()).isEqualTo(i);
+          synchronized (produced) {
+            maxAhead[0] = Math.max(maxAhead[0], produced[0] - i - 1);
+          }
+        }
+        producer.join();
+
+        assertThat(buffer.poll()).isNull();
+        if (capacity > 0) {
+          assertThat(maxAhead[0]).isAtMost((long) capacity);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testSpscRingBufferGrowsWhenUnbounded() throws Exception {
+    final SpscRingBuffer<Integer> buffer =
+        new SpscRingBuffer<>(0, SpscRingBuffer.WaitStrategy.SPIN);
+    for (int i = 0; i < 5000; i++) {
+      buffer.put(i);
+    }
+    for (int i = 0; i < 5000; i++) {
+      assertThat(buffer.poll()).isEqualTo(i);
+    }
+    assertThat(buffer.poll()).isNull();
+  }
+
+  @Test
+  public void testSpscRingBufferParksUntilWoken() throws Exception {
+    final SpscRingBuffer<Integer> buffer =
+        new SpscRingBuffer<>(1, SpscRingBuffer.WaitStrategy.PARK);
+    buffer.put(0);
+
+    // A producer blocked on a full buffer should end up parked for good, not napping on a timer.
+    final Thread producer = new Thread(() -> {
+      try {
+        buffer.put(1);
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    });
+    producer.start();
+    awaitState(producer, Thread.State.WAITING);
+    assertThat(buffer.poll()).isEqualTo(0);
+    producer.join(10_000);
+    assertThat(producer.isAlive()).isFalse();
+
+    // Same for a consumer waiting on an empty buffer.
+    assertThat(buffer.poll()).isEqualTo(1);
+    final Integer[] taken = {null};
+    final Thread consumer = new Thread(() -> {
+      try {
+        taken[0] = buffer.take();
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    });
+    consumer.start();
+    awaitState(consumer, Thread.State.WAITING);
+    buffer.put(2);
+    consumer.join(10_000);
+    assertThat(consumer.isAlive()).isFalse();
+    assertThat(taken[0]).isEqualTo(2);
+  }
+
+  private static void awaitState(Thread thread, Thread.State state) throws InterruptedException {
+    for (int i = 0; i < 10_000 && thread.getState() != state; i++) {
+      Thread.sleep(1);
+    }
+    assertThat(thread.getState()).isEqualTo(state);
+  }
 }
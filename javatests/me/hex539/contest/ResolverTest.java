@@ -1,17 +1,34 @@
 package me.hex539.contest;
 
 import static com.google.common.truth.Truth.*;
+import static org.junit.Assert.fail;
+import static org.mockito.AdditionalAnswers.delegatesTo;
 import static org.mockito.Mockito.*;
 
 import com.google.protobuf.util.Durations;
 import edu.clics.proto.ClicsProto.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.stream.Collectors;
 import java.util.concurrent.TimeUnit;
 import me.hex539.contest.ResolverController.Observer;
 import me.hex539.contest.ResolverController.Resolution;
+import me.hex539.contest.model.Judge;
 import me.hex539.contest.model.Ranklist;
+import me.hex539.contest.mutable.RanklistColumnar;
+import me.hex539.contest.mutable.RanklistMutable;
 import org.junit.Test;
+import org.mockito.InOrder;
 
 public class ResolverTest {
   @Test
@@ -102,6 +119,539 @@ public class ResolverTest {
     }
   }
 
+  @Test
+  public void testResolverSchedulingNwerc2017() throws Exception {
+    final ClicsContest entireContest =
+        new ContestDownloader(getClass().getResourceAsStream("/resources/contests/nwerc2017.pb")).fetch();
+
+    final ScoreboardModel reference =
+        ImmutableScoreboardModel.of(ScoreboardModelImpl.newBuilder(entireContest)
+            .filterGroups(g -> "12890".equals(g.getId()))
+            .filterTooLateSubmissions()
+            .build());
+
+    // Pulling each step on the calling thread gets the same result as a background thread.
+    final ResolutionTracker pulled = new ResolutionTracker(entireContest, reference);
+    final ResolverController pull = ResolverController.newBuilder(entireContest, reference)
+        .setShowCompileErrors(false)
+        .computeOnCallerThread()
+        .build()
+        .addObserver(pulled);
+    pull.drain();
+    assertThat(pulled.getRows())
+        .containsExactlyElementsIn(reference.getRanklistModel().getRows())
+        .inOrder();
+
+    // Closing a resolver stops its task even if nobody ever drains it.
+    final List<Thread> threads = new ArrayList<>();
+    final ResolverController closed = ResolverController.newBuilder(entireContest, reference)
+        .setShowCompileErrors(false)
+        .setBufferAhead(4)
+        .setExecutor(task -> {
+          final Thread thread = new Thread(task);
+          threads.add(thread);
+          thread.start();
+        })
+        .build();
+    assertThat(closed.advance()).isEqualTo(Resolution.STARTED);
+    assertThat(threads).hasSize(1);
+
+    closed.close();
+    threads.get(0).join(TimeUnit.SECONDS.toMillis(10));
+    assertThat(threads.get(0).isAlive()).isFalse();
+    assertThat(closed.advance()).isEqualTo(Resolution.FINISHED);
+    assertThat(closed.finished()).isTrue();
+  }
+
+  @Test
+  public void testScoreboardEventsDispatch() throws Exception {
+    final Team team = Team.newBuilder().setId("t1").build();
+    final Problem problem = Problem.newBuilder().setId("A").build();
+    final Submission submission = Submission.newBuilder().setId("s1").setTeamId("t1").build();
+    final Judgement judgement = Judgement.newBuilder().setId("j1").setSubmissionId("s1").build();
+    final ScoreboardProblem attempts =
+        ScoreboardProblem.newBuilder().setProblemId("A").setNumJudged(2).build();
+    final ScoreboardScore score = ScoreboardScore.newBuilder().setNumSolved(1).build();
+    final List<ScoreboardProblem> problems = Arrays.asList(attempts);
+
+    final List<ScoreboardEvent> events = new ArrayList<>();
+    final ScoreboardModel.Observer recorder = ScoreboardEvent.recorder(events::add);
+    recorder.onProblemSubmitted(team, submission);
+    recorder.onSubmissionJudged(team, judgement);
+    recorder.onProblemScoreChanged(team, attempts);
+    recorder.onScoreChanged(team, score);
+    recorder.onTeamRankChanged(team, 3, 1);
+    recorder.onTeamScoreChanged(team, problems, score);
+    events.add(ScoreboardEvent.ProblemFocused.create(team, problem));
+    events.add(ScoreboardEvent.TeamRankFinalised.create(team, 1));
+    events.add(ScoreboardEvent.TeamRankUnfinalised.create(team, 1));
+
+    final Observer observer = mock(Observer.class);
+    final ScoreboardModel.Observer modelObserver = mock(ScoreboardModel.Observer.class);
+    for (ScoreboardEvent event : events) {
+      event.dispatch(observer);
+      event.dispatch(modelObserver);
+    }
+
+    final InOrder inOrder = inOrder(observer);
+    inOrder.verify(observer).onProblemSubmitted(team, submission);
+    inOrder.verify(observer).onSubmissionJudged(team, judgement);
+    inOrder.verify(observer).onProblemScoreChanged(team, attempts);
+    inOrder.verify(observer).onScoreChanged(team, score);
+    inOrder.verify(observer).onTeamRankChanged(team, 3, 1);
+    inOrder.verify(observer).onTeamScoreChanged(team, problems, score);
+    inOrder.verify(observer).onProblemFocused(team, problem);
+    inOrder.verify(observer).onTeamRankFinalised(team, 1);
+    inOrder.verify(observer).onTeamRankUnfinalised(team, 1);
+    verifyNoMoreInteractions(observer);
+
+    // Resolver-only events are not delivered to plain scoreboard observers.
+    verify(modelObserver).onProblemSubmitted(team, submission);
+    verify(modelObserver).onSubmissionJudged(team, judgement);
+    verify(modelObserver).onProblemScoreChanged(team, attempts);
+    verify(modelObserver).onScoreChanged(team, score);
+    verify(modelObserver).onTeamRankChanged(team, 3, 1);
+    verify(modelObserver).onTeamScoreChanged(team, problems, score);
+    verifyNoMoreInteractions(modelObserver);
+  }
+
+  @Test
+  public void testObserverExceptionReachesCaller() throws Exception {
+    final ClicsContest entireContest =
+        new ContestDownloader(getClass().getResourceAsStream("/resources/contests/nwerc2017.pb")).fetch();
+
+    final ScoreboardModel reference =
+        ImmutableScoreboardModel.of(ScoreboardModelImpl.newBuilder(entireContest)
+            .filterGroups(g -> "12890".equals(g.getId()))
+            .filterTooLateSubmissions()
+            .build());
+
+    final ResolverController resolver = new ResolverController(entireContest, reference, false);
+    assertThat(resolver.advance()).isEqualTo(Resolution.STARTED);
+
+    final IllegalStateException thrown = new IllegalStateException("From the observer");
+    final Observer observer = mock(Observer.class);
+    doThrow(thrown).when(observer).onProblemScoreChanged(any(), any());
+    resolver.addObserver(observer);
+    try {
+      resolver.drain();
+      fail("The observer's exception should have reached the caller");
+    } catch (IllegalStateException e) {
+      assertThat(e).isSameAs(thrown);
+    }
+  }
+
+  @Test(timeout = 60_000)
+  public void testResolutionFailureReachesCaller() throws Exception {
+    final ClicsContest entireContest =
+        new ContestDownloader(getClass().getResourceAsStream("/resources/contests/nwerc2017.pb")).fetch();
+
+    final ScoreboardModel reference =
+        ImmutableScoreboardModel.of(ScoreboardModelImpl.newBuilder(entireContest)
+            .filterGroups(g -> "12890".equals(g.getId()))
+            .filterTooLateSubmissions()
+            .build());
+
+    final IllegalStateException thrown = new IllegalStateException("From the resolution");
+    final Judge judge = mock(Judge.class, delegatesTo(reference.getJudgeModel()));
+    doThrow(thrown).when(judge).getSubmissionsBetween(any(), any());
+    final ScoreboardModel source = mock(ScoreboardModel.class, delegatesTo(reference));
+    doReturn(judge).when(source).getJudgeModel();
+
+    final ResolverController resolver = ResolverController.newBuilder(entireContest, source).build();
+    try {
+      resolver.advance();
+      fail("The resolution thread's exception should have reached the caller");
+    } catch (IllegalStateException e) {
+      assertThat(e).isSameAs(thrown);
+    }
+  }
+
+  @Test(timeout = 60_000)
+  public void testInterruptedResolutionCloses() throws Exception {
+    final ClicsContest entireContest =
+        new ContestDownloader(getClass().getResourceAsStream("/resources/contests/nwerc2017.pb")).fetch();
+
+    final ScoreboardModel reference =
+        ImmutableScoreboardModel.of(ScoreboardModelImpl.newBuilder(entireContest)
+            .filterGroups(g -> "12890".equals(g.getId()))
+            .filterTooLateSubmissions()
+            .build());
+
+    final Thread[] thread = new Thread[1];
+    final ResolverController resolver = ResolverController.newBuilder(entireContest, reference)
+        .setBufferAhead(1)
+        .setExecutor(task -> {
+          thread[0] = new Thread(task);
+          thread[0].start();
+        })
+        .build();
+
+    // Nothing is taken, so the resolution soon waits for room and has to give up there.
+    thread[0].interrupt();
+    thread[0].join(10_000);
+    assertThat(thread[0].isAlive()).isFalse();
+    assertThat(resolver.advance()).isEqualTo(Resolution.FINISHED);
+  }
+
+  @Test
+  public void testSeekResolutionScriptNwerc2017() throws Exception {
+    final ClicsContest entireContest =
+        new ContestDownloader(getClass().getResourceAsStream("/resources/contests/nwerc2017.pb")).fetch();
+
+    final ScoreboardModel reference =
+        ImmutableScoreboardModel.of(ScoreboardModelImpl.newBuilder(entireContest)
+            .filterGroups(g -> "12890".equals(g.getId()))
+            .filterTooLateSubmissions()
+            .build());
+
+    // Round trip the script through its serialised form on the way.
+    final ResolutionScript compiled = ResolutionScript.compile(entireContest, reference, false);
+    final ByteArrayOutputStream saved = new ByteArrayOutputStream();
+    compiled.writeTo(saved);
+    final ResolutionScript script = ResolutionScript.readFrom(
+        new ByteArrayInputStream(saved.toByteArray()),
+        reference.getTeamsModel(),
+        reference.getProblemsModel());
+    assertThat(script.size()).isEqualTo(compiled.size());
+
+    // What every step should look like, from playing the script straight through.
+    final List<List<ScoreboardRow>> expectedRows = new ArrayList<>();
+    final List<Set<String>> expectedFinalised = new ArrayList<>();
+    final ResolutionTracker straight = new ResolutionTracker(entireContest, reference);
+    final ResolverController player = new ResolverController(entireContest, reference, script)
+        .addObserver(straight);
+    while (!player.finished()) {
+      assertThat(player.advance()).isEqualTo(script.getResolution(expectedRows.size()));
+      expectedRows.add(new ArrayList<>(straight.getRows()));
+      expectedFinalised.add(new HashSet<>(straight.finalised));
+    }
+    assertThat(expectedRows).hasSize(script.size());
+    assertThat(expectedRows.get(script.size() - 1))
+        .containsExactlyElementsIn(reference.getRanklistModel().getRows())
+        .inOrder();
+
+    final ResolutionTracker seeking = new ResolutionTracker(entireContest, reference);
+    final ResolverController resolver = new ResolverController(entireContest, reference, script)
+        .addObserver(seeking);
+    for (int step : new int[] {0, 3, 2, 40, 41, 18, script.size() - 1, 1, 17, 90, 33}) {
+      assertThat(resolver.seek(step)).isEqualTo(script.getResolution(step));
+      assertThat(resolver.getStep()).isEqualTo(step);
+      assertThat(seeking.getRows()).containsExactlyElementsIn(expectedRows.get(step)).inOrder();
+      assertThat(seeking.finalised).isEqualTo(expectedFinalised.get(step));
+      // Rank changes on their own must have moved every team to where it is now.
+      assertThat(seeking.order)
+          .containsExactlyElementsIn(
+              seeking.getRows().stream().map(ScoreboardRow::getTeamId).collect(Collectors.toList()))
+          .inOrder();
+    }
+
+    assertThat(resolver.back()).isEqualTo(script.getResolution(32));
+    assertThat(seeking.getRows()).containsExactlyElementsIn(expectedRows.get(32)).inOrder();
+
+    // Seeking to a rank stops just before the team at that rank comes into focus.
+    resolver.seekToRank(10);
+    assertThat(resolver.advance()).isEqualTo(Resolution.FOCUSED_TEAM);
+    assertThat(seeking.focusedTeam.getId()).isEqualTo(seeking.getRows().get(9).getTeamId());
+  }
+
+  @Test
+  public void testMultiGroupResolverNwerc2007() throws Exception {
+    final ClicsContest entireContest =
+        new ContestDownloader(getClass().getResourceAsStream("/resources/contests/nwerc2007.pb")).fetch();
+
+    // Participants, spectators, and the hidden GR participants.
+    final List<Group> groups = new ArrayList<>();
+    for (String id : new String[] {"1", "2", "4"}) {
+      groups.add(entireContest.getGroupsOrThrow(id));
+    }
+    checkMultiGroupResolver(entireContest, groups);
+  }
+
+  @Test
+  public void testMultiGroupResolverTiedTeams() throws Exception {
+    final ClicsContest.Builder contest = ClicsContest.newBuilder()
+        .setContest(Contest.newBuilder()
+            .setContestDuration(Durations.fromMillis(TimeUnit.HOURS.toMillis(5)))
+            .setScoreboardFreezeDuration(Durations.fromMillis(TimeUnit.HOURS.toMillis(1)))
+            .setPenaltyTime(20))
+        .putJudgementTypes("AC", JudgementType.newBuilder().setId("AC").setSolved(true).build())
+        .putGroups("g", Group.newBuilder().setId("g").setName("Group").build());
+    for (String id : new String[] {"A", "B", "C", "D"}) {
+      contest.putProblems(id, Problem.newBuilder()
+          .setId(id)
+          .setLabel(id)
+          .setOrdinal(id.charAt(0) - 'A')
+          .build());
+    }
+    for (String id : new String[] {"t1", "t2"}) {
+      contest.putTeams(id, Team.newBuilder().setId(id).setName(id).addGroupIds("g").build());
+    }
+
+    // Team 2 resolves first, into the lead on 3 problems for 320 minutes. Team 1 then ties it on
+    // both, losing on time of last solve. Revealing D next makes team 1's last solves earlier than
+    // team 2's before its score has even changed, so the ranklist already moves it up a place.
+    solve(contest, "t1", "A", 10);
+    solve(contest, "t1", "B", 20);
+    solve(contest, "t1", "C", 290);
+    solve(contest, "t1", "D", 250);
+    solve(contest, "t2", "A", 10);
+    solve(contest, "t2", "B", 40);
+    solve(contest, "t2", "C", 270);
+
+    checkMultiGroupResolver(contest.build(), Arrays.asList(contest.getGroupsOrThrow("g")));
+  }
+
+  private static void solve(ClicsContest.Builder contest, String team, String problem, int minute) {
+    final String id = team + problem;
+    final com.google.protobuf.Duration time =
+        Durations.fromMillis(TimeUnit.MINUTES.toMillis(minute));
+    contest.putSubmissions(id, Submission.newBuilder()
+        .setId(id)
+        .setTeamId(team)
+        .setProblemId(problem)
+        .setContestTime(time)
+        .build());
+    contest.putJudgements(id, Judgement.newBuilder()
+        .setId(id)
+        .setSubmissionId(id)
+        .setJudgementTypeId("AC")
+        .setStartContestTime(time)
+        .setEndContestTime(time)
+        .build());
+  }
+
+  private static void checkMultiGroupResolver(ClicsContest entireContest, List<Group> groups) {
+    final ScoreboardModel everyone =
+        ImmutableScoreboardModel.of(ScoreboardModelImpl.newBuilder(entireContest)
+            .filterGroups(groups::contains)
+            .filterTooLateSubmissions()
+            .build());
+    final Map<String, ResolutionScript> scripts =
+        MultiGroupResolver.compile(entireContest, everyone, groups, false);
+    assertThat(scripts.keySet())
+        .containsExactlyElementsIn(groups.stream().map(Group::getId).collect(Collectors.toList()))
+        .inOrder();
+
+    // Each group comes out exactly the same as if it had been resolved on its own.
+    for (Group group : groups) {
+      final ScoreboardModel reference =
+          ImmutableScoreboardModel.of(ScoreboardModelImpl.newBuilder(entireContest)
+              .filterGroups(g -> group.getId().equals(g.getId()))
+              .filterTooLateSubmissions()
+              .build());
+      final ResolutionScript expected = ResolutionScript.compile(entireContest, reference, false);
+      final ResolutionScript actual = scripts.get(group.getId());
+
+      assertThat(actual.size()).isEqualTo(expected.size());
+      for (int i = 0; i < expected.size(); i++) {
+        assertThat(actual.getResolution(i)).isEqualTo(expected.getResolution(i));
+        assertThat(actual.getEvents(i)).containsExactlyElementsIn(expected.getEvents(i)).inOrder();
+      }
+    }
+  }
+
+  @Test
+  public void testGroupViewsNwerc2007() throws Exception {
+    final ClicsContest entireContest =
+        new ContestDownloader(getClass().getResourceAsStream("/resources/contests/nwerc2007.pb")).fetch();
+    final ScoreboardModelImpl model = ScoreboardModelImpl.newBuilder(entireContest)
+        .filterTooLateSubmissions()
+        .build();
+    final RanklistMutable ranklist = model.getRanklistModel();
+
+    for (Group group : model.getTeamsModel().getGroups()) {
+      final ScoreboardModelImpl filtered = ScoreboardModelImpl.newBuilder(entireContest)
+          .filterGroups(g -> group.getId().equals(g.getId()))
+          .filterTooLateSubmissions()
+          .build();
+      final Ranklist view = ranklist.getGroupView(group);
+      assertThat(view.getRows())
+          .containsExactlyElementsIn(filtered.getRanklistModel().getRows())
+          .inOrder();
+      for (Team team : filtered.getTeamsModel().getTeams()) {
+        assertThat(view.getRank(team)).isEqualTo(filtered.getRanklistModel().getRank(team));
+        assertThat(view.getRow(team)).isEqualTo(filtered.getRanklistModel().getRow(team));
+      }
+    }
+
+    // With more groups than there are bits in a long, only the first 64 by ID get statistics.
+    final ClicsContest.Builder manyGroups = entireContest.toBuilder();
+    for (int i = 0; i <= Long.SIZE; i++) {
+      manyGroups.putGroups("g" + i, Group.newBuilder().setId("g" + i).build());
+    }
+    final ScoreboardModelImpl tooMany = ScoreboardModelImpl.newBuilder(manyGroups.build()).build();
+    final List<Group> byId = tooMany.getTeamsModel().getGroups().stream()
+        .sorted(Comparator.comparing(Group::getId))
+        .collect(Collectors.toList());
+    for (int i = 0; i < byId.size(); i++) {
+      assertThat(tooMany.getRanklistModel().hasGroupView(byId.get(i))).isEqualTo(i < Long.SIZE);
+    }
+    final Group first = byId.get(0);
+    assertThat(tooMany.getRanklistModel().getGroupView(first).getRows())
+        .containsExactlyElementsIn(ScoreboardModelImpl.newBuilder(manyGroups.build())
+            .filterGroups(g -> first.getId().equals(g.getId()))
+            .build()
+            .getRanklistModel()
+            .getRows())
+        .inOrder();
+    try {
+      tooMany.getRanklistModel().getGroupView(byId.get(byId.size() - 1));
+      fail("Groups past the first 64 should have thrown");
+    } catch (NoSuchElementException expected) {
+    }
+  }
+
+  @Test
+  public void testImmutableModelLookupsNwerc2017() throws Exception {
+    final ClicsContest entireContest =
+        new ContestDownloader(getClass().getResourceAsStream("/resources/contests/nwerc2017.pb")).fetch();
+
+    final ScoreboardModelImpl model = ScoreboardModelImpl.newBuilder(entireContest).build();
+    final ImmutableScoreboardModel immutable = ImmutableScoreboardModel.of(model);
+
+    // Submissions are in time order, which has nothing to do with the order of their IDs.
+    for (Submission s : model.getJudgeModel().getSubmissions()) {
+      assertThat(immutable.getSubmission(s.getId())).isEqualTo(s);
+    }
+    for (Judgement j : model.getJudgeModel().getJudgements()) {
+      assertThat(immutable.getJudgementOpt(j.getId()).get()).isEqualTo(j);
+    }
+    for (JudgementType t : model.getJudgeModel().getJudgementTypes()) {
+      assertThat(immutable.getJudgementType(t.getId())).isEqualTo(t);
+    }
+    for (Team t : model.getTeamsModel().getTeams()) {
+      assertThat(immutable.getTeamsModel().getTeam(t.getId())).isEqualTo(t);
+      assertThat(immutable.getRanklistModel().getRow(t))
+          .isEqualTo(model.getRanklistModel().getRow(t));
+    }
+    for (Problem p : model.getProblemsModel().getProblems()) {
+      assertThat(immutable.getProblemsModel().getProblem(p.getId())).isEqualTo(p);
+      assertThat(immutable.getProblemsModel().getProblemIndex(p.getId()))
+          .isEqualTo(model.getProblemsModel().getProblemIndex(p.getId()));
+    }
+    assertThat(immutable.getSubmissionOpt("no such submission").isPresent()).isFalse();
+    assertThat(immutable.getTeamsModel().getTeamOpt("no such team").isPresent()).isFalse();
+  }
+
+  @Test
+  public void testScoreboardHistoryNwerc2017() throws Exception {
+    final ClicsContest entireContest =
+        new ContestDownloader(getClass().getResourceAsStream("/resources/contests/nwerc2017.pb")).fetch();
+    final ScoreboardModel reference =
+        ImmutableScoreboardModel.of(ScoreboardModelImpl.newBuilder(entireContest)
+            .filterTooLateSubmissions()
+            .build());
+    final ScoreboardHistory history = ScoreboardHistory.of(entireContest, reference);
+
+    // Replay the slow way alongside, and check the whole scoreboard every half an hour.
+    final ScoreboardModelImpl model = ScoreboardModelImpl.newBuilder(entireContest, reference)
+        .withEmptyScoreboard()
+        .filterSubmissions(s -> false)
+        .build();
+    final JudgementDispatcher dispatcher = new JudgementDispatcher(model);
+    dispatcher.observers.add(model);
+    final Map<String, Judgement> judgements = reference.getJudgeModel().getJudgements().stream()
+        .collect(Collectors.toMap(Judgement::getSubmissionId, j -> j, (a, b) -> b));
+
+    final List<Submission> submissions = reference.getJudgeModel().getSubmissions();
+    final long end = entireContest.getContest().getContestDuration().getSeconds();
+    int next = 0;
+    for (long seconds = 0; seconds <= end; seconds += 1800) {
+      final com.google.protobuf.Duration time = Durations.fromSeconds(seconds);
+      for (; next < submissions.size()
+          && Durations.compare(submissions.get(next).getContestTime(), time) <= 0; next++) {
+        final Submission s = submissions.get(next);
+        if (dispatcher.notifySubmission(s) && judgements.containsKey(s.getId())) {
+          dispatcher.notifyJudgement(judgements.get(s.getId()));
+        }
+      }
+      assertThat(history.getRowsAt(time))
+          .containsExactlyElementsIn(model.getRanklistModel().getRows())
+          .inOrder();
+    }
+
+    // Each team's own history adds up to the same set of changes as the whole contest's, which
+    // starts with some practice submissions from before the contest.
+    final com.google.protobuf.Duration after = Durations.fromSeconds(end + 1);
+    int total = 0;
+    for (Team team : model.getTeamsModel().getTeams()) {
+      final List<ScoreboardHistory.RankChange> changes = history.getRankHistory(team);
+      total += changes.size();
+      for (ScoreboardHistory.RankChange change : changes) {
+        assertThat(history.getRankAt(team, change.getContestTime()))
+            .isEqualTo(change.getNewRank());
+      }
+      assertThat((long) history.getRankAt(team, after))
+          .isEqualTo(model.getRanklistModel().getRank(team));
+    }
+    final com.google.protobuf.Duration before = Durations.fromSeconds(-TimeUnit.DAYS.toSeconds(1));
+    assertThat(history.getRankChangesBetween(before, after)).hasSize(total);
+  }
+
+  /** Mirrors everything a resolver shows, including which ranks are finalised. */
+  private static class ResolutionTracker implements Observer {
+    final ScoreboardModelImpl model;
+    final Set<String> finalised = new HashSet<>();
+    Team focusedTeam;
+
+    /** Team IDs in the order that rank changes alone would have put them in. */
+    final List<String> order = new ArrayList<>();
+
+    ResolutionTracker(ClicsContest contest, ScoreboardModel reference) {
+      model = ScoreboardModelImpl.newBuilder(contest, reference)
+          .withEmptyScoreboard()
+          .filterSubmissions(s -> false)
+          .build();
+      getRows().forEach(row -> order.add(row.getTeamId()));
+    }
+
+    List<ScoreboardRow> getRows() {
+      return model.getRanklistModel().getRows();
+    }
+
+    @Override
+    public void onProblemSubmitted(Team team, Submission submission) {
+      model.onProblemSubmitted(team, submission);
+    }
+
+    @Override
+    public void onSubmissionJudged(Team team, Judgement judgement) {
+      model.onSubmissionJudged(team, judgement);
+    }
+
+    @Override
+    public void onProblemScoreChanged(Team team, ScoreboardProblem problem) {
+      model.onProblemScoreChanged(team, problem);
+    }
+
+    @Override
+    public void onScoreChanged(Team team, ScoreboardScore score) {
+      model.onScoreChanged(team, score);
+    }
+
+    @Override
+    public void onTeamRankChanged(Team team, int oldRank, int newRank) {
+      assertThat(order.get(oldRank - 1)).isEqualTo(team.getId());
+      order.add(newRank - 1, order.remove(oldRank - 1));
+    }
+
+    @Override
+    public void onProblemFocused(Team team, Problem problem) {
+      focusedTeam = team;
+    }
+
+    @Override
+    public void onTeamRankFinalised(Team team, int rank) {
+      assertThat(finalised.add(team.getId())).isTrue();
+    }
+
+    @Override
+    public void onTeamRankUnfinalised(Team team, int rank) {
+      assertThat(finalised.remove(team.getId())).isTrue();
+    }
+  }
+
   @Test
   public void testResolveNwerc2018() throws Exception {
     final ClicsContest entireContest =
@@ -142,6 +692,55 @@ public class ResolverTest {
     }
   }
 
+  @Test
+  public void testResolveNwerc2017Columnar() throws Exception {
+    final ClicsContest entireContest =
+        new ContestDownloader(getClass().getResourceAsStream("/resources/contests/nwerc2017.pb")).fetch();
+
+    final ScoreboardModel reference =
+        ImmutableScoreboardModel.of(ScoreboardModelImpl.newBuilder(entireContest)
+            .filterGroups(g -> "12890".equals(g.getId()))
+            .filterTooLateSubmissions()
+            .build());
+
+    final ScoreboardModelImpl model =
+        ScoreboardModelImpl.newBuilder(entireContest, reference)
+            .withEmptyScoreboard()
+            .filterSubmissions(s -> false)
+            .build();
+    final RanklistColumnar columnar = new RanklistColumnar(
+        model.getTeamsModel(),
+        model.getProblemsModel(),
+        model.getRanklistModel().getRows(),
+        x -> true);
+
+    ResolverController resolver = new ResolverController(entireContest, reference, false)
+        .addObserver(model)
+        .addObserver(new Observer() {
+          @Override
+          public void onProblemScoreChanged(Team team, ScoreboardProblem problem) {
+            columnar.onProblemScoreChanged(team, problem);
+          }
+
+          @Override
+          public void onScoreChanged(Team team, ScoreboardScore score) {
+            columnar.onScoreChanged(team, score);
+          }
+        });
+    resolver.drain();
+
+    assertThat(columnar.getRows())
+        .containsExactlyElementsIn(model.getRanklistModel().getRows())
+        .inOrder();
+    for (int i = 0; i < 120; i++) {
+      final ScoreboardRow row = reference.getRanklistModel().getRow(i);
+      final Team team = model.getTeamsModel().getTeam(row.getTeamId());
+      assertThat(columnar.getRow(i)).isEqualTo(row);
+      assertThat(columnar.getRow(team)).isEqualTo(row);
+      assertThat(columnar.getRank(team)).isEqualTo(i + 1);
+    }
+  }
+
   @Test
   public void testResolveLargeNumberOfTeams() throws Exception {
     final int n = 10_000;
@@ -1,13 +1,16 @@
 package org.domjudge.api;
 
+import com.google.protobuf.Duration;
 import edu.clics.proto.ClicsProto.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.stream.Collectors;
 import java.util.List;
 import me.hex539.contest.ScoreboardModel;
 import me.hex539.contest.ScoreboardModelImpl;
 import me.hex539.contest.JudgementDispatcher;
+import me.hex539.contest.model.Judge;
 import me.hex539.testing.utils.MockScoreboardModel;
 import org.junit.Test;
 
@@ -105,6 +108,135 @@ public class ModelObserverTest {
         .inOrder();
   }
 
+  @Test
+  public void batchJudgements() {
+    ScoreboardModel.Observer observer = mock(ScoreboardModel.Observer.class);
+    ScoreboardModel.BatchObserver batchObserver = mock(ScoreboardModel.BatchObserver.class);
+
+    ScoreboardModelImpl model = ScoreboardModelImpl.newBuilder(
+        ClicsContest.newBuilder().build(),
+        new MockScoreboardModel.Builder()
+            .setProblems(     "A", "B", "C")
+            .addRow("Team 1", " ", "+", " ")
+            .addRow("Team 2", " ", " ", " ")
+            .addRow("Team 3", " ", " ", " ")
+            .build()).build();
+    JudgementDispatcher dispatcher = new JudgementDispatcher(model);
+
+    dispatcher.observers.add(model);
+    dispatcher.observers.add(observer);
+    dispatcher.observers.add(batchObserver);
+
+    final Team team3 = model.getTeamsModel().getTeam("Team 3");
+    final SubmitInfo a = submission(dispatcher, model, "Team 3", "A", 101).submit();
+    final SubmitInfo c = submission(dispatcher, model, "Team 3", "C", 100).submit();
+
+    final List<ScoreboardModel.TeamChange> changes = dispatcher.notifyJudgements(Arrays.asList(
+        a.judgement("correct"),
+        c.judgement("correct")));
+
+    // Both solves arrive as one change, and the team only moves once.
+    verify(observer, times(2)).onSubmissionJudged(eq(team3), any());
+    verify(observer).onTeamRankChanged(eq(team3), eq(3), eq(1));
+    verify(observer, never()).onTeamRankChanged(eq(team3), eq(3), eq(2));
+    verify(batchObserver).onTeamsChanged(changes);
+    verify(batchObserver, never()).onTeamRankChanged(any(), anyInt(), anyInt());
+
+    assertThat(changes).hasSize(1);
+    final ScoreboardModel.TeamChange change = changes.get(0);
+    assertThat(change.getTeam()).isEqualTo(team3);
+    assertThat(change.getJudgements()).hasSize(2);
+    assertThat(change.getProblems()).hasSize(2);
+    assertThat(change.getOldRank()).isEqualTo(3);
+    assertThat(change.getNewRank()).isEqualTo(1);
+    assertThat(change.getNewScore().getNumSolved()).isEqualTo(2);
+    assertThat(change.getNewScore()).isEqualTo(model.getRanklistModel().getScore(team3));
+    assertThat(getRankList(model))
+        .containsExactly("Team 3", "Team 1", "Team 2")
+        .inOrder();
+  }
+
+  @Test
+  public void dispatcherLoadsRejudgings() {
+    ScoreboardModel.Observer observer = mock(ScoreboardModel.Observer.class);
+
+    ScoreboardModelImpl model = ScoreboardModelImpl.newBuilder(
+        ClicsContest.newBuilder().build(),
+        new MockScoreboardModel.Builder()
+            .setProblems(     "A")
+            .addRow("Team 1", " ")
+            .build()).build();
+    JudgementDispatcher dispatcher = new JudgementDispatcher(model);
+    dispatcher.observers.add(model);
+
+    final Team team1 = model.getTeamsModel().getTeam("Team 1");
+    final SubmitInfo first = submission(dispatcher, model, "Team 1", "A", 10).submit();
+    final SubmitInfo second = submission(dispatcher, model, "Team 1", "A", 20).submit();
+    first.judge("correct");
+    dispatcher.notifyJudgement(
+        first.judgement("incorrect").toBuilder().setId("rejudging").build());
+    second.judge("correct");
+
+    // A new dispatcher has to come to the same conclusion from the judge alone: the first
+    // submission no longer counts, so the problem was solved by the second one.
+    final JudgementDispatcher reloaded = new JudgementDispatcher(model);
+    reloaded.observers.add(observer);
+    submission(reloaded, model, "Team 1", "A", 30).submit();
+
+    verify(observer).onProblemScoreChanged(team1, ScoreboardProblem.newBuilder()
+        .setProblemId("A")
+        .setNumJudged(1)
+        .setNumPending(0)
+        .setSolved(true)
+        .setTime(20)
+        .build());
+  }
+
+  @Test
+  public void submissionsInTimeOrder() {
+    ScoreboardModelImpl model = ScoreboardModelImpl.newBuilder(
+        ClicsContest.newBuilder().build(),
+        new MockScoreboardModel.Builder()
+            .setProblems(     "A", "B")
+            .addRow("Team 1", " ", " ")
+            .addRow("Team 2", " ", " ")
+            .build()).build();
+    JudgementDispatcher dispatcher = new JudgementDispatcher(model);
+    dispatcher.observers.add(model);
+
+    final Judge judge = model.getJudgeModel();
+    final List<Submission> before = judge.getSubmissions();
+
+    final Submission late = submission(dispatcher, model, "Team 1", "A", 100).submit().s;
+    final Submission early = submission(dispatcher, model, "Team 2", "A", 50).submit().s;
+    final Submission middle = submission(dispatcher, model, "Team 1", "B", 75).submit().s;
+    final Submission tied = submission(dispatcher, model, "Team 2", "B", 50).submit().s;
+
+    // Lists handed out earlier are snapshots, and don't change as the judge moves on.
+    assertThat(before).isEmpty();
+    final List<Submission> all = judge.getSubmissions();
+    assertThat(judge.getSubmissions()).isSameAs(all);
+
+    assertThat(all)
+        .containsExactly(early, tied, middle, late)
+        .inOrder();
+    assertThat(judge.getSubmissionsBetween(minutes(50), minutes(100)))
+        .containsExactly(early, tied, middle)
+        .inOrder();
+    assertThat(judge.getSubmissionsBetween(minutes(76), null))
+        .containsExactly(late);
+    assertThat(judge.getSubmissionsBetween(null, minutes(50)))
+        .isEmpty();
+
+    submission(dispatcher, model, "Team 2", "A", 10).submit();
+    assertThat(all).hasSize(4);
+    assertThat(judge.getSubmissions()).hasSize(5);
+  }
+
+  private static Duration minutes(int minutes) {
+    return Duration.newBuilder().setSeconds(minutes * 60).build();
+  }
+
   @Test
   public void decreaseTeamRank() {
     ScoreboardModel.Observer observer = mock(ScoreboardModel.Observer.class);
@@ -139,6 +271,81 @@ public class ModelObserverTest {
         .inOrder();
   }
 
+  @Test
+  public void judgeOutOfOrder() {
+    ScoreboardModelImpl model = ScoreboardModelImpl.newBuilder(
+        ClicsContest.newBuilder().build(),
+        new MockScoreboardModel.Builder()
+            .setProblems(     "A", "B", "C")
+            .addRow("Team 1", "+", " ", " ")
+            .addRow("Team 2", " ", " ", " ")
+            .build()).build();
+    JudgementDispatcher dispatcher = new JudgementDispatcher(model);
+    dispatcher.observers.add(model);
+
+    final Team team2 = model.getTeamsModel().getTeam("Team 2");
+    final Problem problemC = model.getProblemsModel().getProblem("C");
+    final SubmitInfo s1 = submission(dispatcher, model, "Team 2", "C", 10).submit();
+    final SubmitInfo s2 = submission(dispatcher, model, "Team 2", "C", 20).submit();
+    final SubmitInfo s3 = submission(dispatcher, model, "Team 2", "C", 30).submit();
+
+    // The last submission is judged first.
+    s3.judge("correct");
+    assertThat(model.getRanklistModel().getAttempts(team2, problemC).getTime()).isEqualTo(30);
+
+    // Earlier judgements slot in before it.
+    s1.judge("incorrect");
+    s2.judge("incorrect");
+    assertThat(model.getRanklistModel().getAttempts(team2, problemC).getTime()).isEqualTo(30);
+    assertThat(model.getRanklistModel().getAttempts(team2, problemC).getNumPending())
+        .isEqualTo(0);
+
+    // Rejudging moves the solve earlier and back again.
+    s1.judge("correct");
+    assertThat(model.getRanklistModel().getAttempts(team2, problemC).getTime()).isEqualTo(10);
+    s1.judge("incorrect");
+    s3.judge("incorrect");
+    assertThat(model.getRanklistModel().getAttempts(team2, problemC)).isEqualTo(
+        ScoreboardProblem.newBuilder()
+            .setProblemId("C")
+            .setNumJudged(1)
+            .setNumPending(0)
+            .setSolved(false)
+            .build());
+    assertThat(model.getRanklistModel().getScore(team2).getNumSolved()).isEqualTo(0);
+  }
+
+  @Test
+  public void reuseUnchangedRows() {
+    ScoreboardModelImpl model = ScoreboardModelImpl.newBuilder(
+        ClicsContest.newBuilder().build(),
+        new MockScoreboardModel.Builder()
+            .setProblems(     "A", "B", "C")
+            .addRow("Team 1", "+", "+", " ")
+            .addRow("Team 2", "+", " ", " ")
+            .addRow("Team 3", " ", " ", " ")
+            .addRow("Team 4", " ", " ", " ")
+            .build()).build();
+    JudgementDispatcher dispatcher = new JudgementDispatcher(model);
+    dispatcher.observers.add(model);
+
+    final Team team1 = model.getTeamsModel().getTeam("Team 1");
+    final Team team3 = model.getTeamsModel().getTeam("Team 3");
+    final Team team4 = model.getTeamsModel().getTeam("Team 4");
+    final ScoreboardRow row1 = model.getRanklistModel().getRow(team1);
+    final ScoreboardRow row3 = model.getRanklistModel().getRow(team3);
+    final ScoreboardRow row4 = model.getRanklistModel().getRow(team4);
+    assertThat(model.getRanklistModel().getRow(team1)).isSameAs(row1);
+
+    // Team 4 overtakes Team 3 but nobody else.
+    submission(dispatcher, model, "Team 4", "C", 200).submit().judge("correct");
+    assertThat(model.getRanklistModel().getRow(team1)).isSameAs(row1);
+    assertThat(model.getRanklistModel().getRow(team3)).isNotEqualTo(row3);
+    assertThat(model.getRanklistModel().getRow(team3).getRank()).isEqualTo(4);
+    assertThat(model.getRanklistModel().getRow(team4)).isNotEqualTo(row4);
+    assertThat(model.getRanklistModel().getRank(team4)).isEqualTo(3);
+  }
+
   private static List<String> getRankList(ScoreboardModel model) {
     final List<ScoreboardRow> rows = new ArrayList<>(model.getRanklistModel().getRows());
     Collections.sort(rows, (a, b) -> Long.compare(a.getRank(), b.getRank()));
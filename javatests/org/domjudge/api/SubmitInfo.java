@@ -26,18 +26,20 @@ class SubmitInfo {
   }
 
   public SubmitInfo judge(String verdict) {
-    assertThat(d.notifyJudgement(
-        Judgement.newBuilder()
-            .setId("j" + s.getId().substring(1))
-            .setSubmissionId(s.getId())
-            .setJudgementTypeId(verdict)
-            .setStartContestTime(Duration.newBuilder().setSeconds(123456).build())
-            .setEndContestTime(Duration.newBuilder().setSeconds(123456).build())
-            .build()))
-        .isNotNull();
+    assertThat(d.notifyJudgement(judgement(verdict))).isNotNull();
     return this;
   }
 
+  public Judgement judgement(String verdict) {
+    return Judgement.newBuilder()
+        .setId("j" + s.getId().substring(1))
+        .setSubmissionId(s.getId())
+        .setJudgementTypeId(verdict)
+        .setStartContestTime(Duration.newBuilder().setSeconds(123456).build())
+        .setEndContestTime(Duration.newBuilder().setSeconds(123456).build())
+        .build();
+  }
+
   public static SubmitInfo submission(
       JudgementDispatcher disp,
       ScoreboardModel model,
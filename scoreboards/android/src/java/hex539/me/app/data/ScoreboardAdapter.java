@@ -185,6 +185,14 @@ public class ScoreboardAdapter extends RecyclerView.Adapter<ScoreboardAdapter.Vi
     });
   }
 
+  @Override
+  public void onTeamRankUnfinalised(ClicsProto.Team team, int rank) {
+    runInOrder(() -> {
+      finalisedTeams.remove(team.getId());
+      notifyTeamChanged(team);
+    });
+  }
+
   @Override
   public void onProblemScoreChanged(ClicsProto.Team team, ClicsProto.ScoreboardProblem attempt) {
     runInOrder(() -> {
@@ -217,6 +217,11 @@ public class Renderer implements ResolverController.Observer {
     focusedProblem = null;
   }
 
+  @Override
+  public void onTeamRankUnfinalised(Team team, int rank) {
+    finalisedRank = rank + 1;
+  }
+
   public void onScroll(double distance) {
     onScroll(distance, true);
   }
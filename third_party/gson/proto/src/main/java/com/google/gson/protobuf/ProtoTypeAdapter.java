@@ -28,6 +28,7 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
+import com.google.gson.TypeAdapterFactory;
 import com.google.protobuf.DescriptorProtos.EnumValueOptions;
 import com.google.protobuf.DescriptorProtos.FieldOptions;
 import com.google.protobuf.Descriptors.Descriptor;
@@ -196,7 +197,7 @@ public class ProtoTypeAdapter
   private static final ConcurrentMap<String, Map<Class<?>, Method>> mapOfMapOfMethods =
       new MapMaker().makeMap();
 
-  private final EnumSerialization enumSerialization;
+  final EnumSerialization enumSerialization;
   private final CaseFormat protoFormat;
   private final CaseFormat jsonFormat;
   private final Set<Extension<FieldOptions, String>> serializedNameExtensions;
@@ -214,6 +215,18 @@ public class ProtoTypeAdapter
     this.serializedEnumValueExtensions = serializedEnumValueExtensions;
   }
 
+  /**
+   * Returns a factory of streaming adapters, with the same settings as this one, for every message
+   * declared in {@code outerClass}. Unlike this adapter, the factory looks up the builder and the
+   * fields of each message type only once, and reads straight from the stream without building a
+   * JSON tree first.
+   *
+   * @see ProtoTypeAdapterFactory
+   */
+  public TypeAdapterFactory newFactory(Class<?> outerClass) {
+    return new ProtoTypeAdapterFactory(this, outerClass);
+  }
+
   @Override
   public JsonElement serialize(AbstractMessage src, Type typeOfSrc,
       JsonSerializationContext context) {
@@ -329,7 +342,7 @@ public class ProtoTypeAdapter
    * Retrieves the custom field name from the given options, and if not found, returns the specified
    * default name.
    */
-  private String getCustSerializedName(FieldOptions options, String defaultName) {
+  String getCustSerializedName(FieldOptions options, String defaultName) {
     for (Extension<FieldOptions, String> extension : serializedNameExtensions) {
       if (options.hasExtension(extension)) {
         return options.getExtension(extension);
@@ -342,7 +355,7 @@ public class ProtoTypeAdapter
    * Retrieves the custom enum value name from the given options, and if not found, returns the
    * specified default value.
    */
-  private String getCustSerializedEnumValue(EnumValueOptions options, String defaultValue) {
+  String getCustSerializedEnumValue(EnumValueOptions options, String defaultValue) {
     for (Extension<EnumValueOptions, String> extension : serializedEnumValueExtensions) {
       if (options.hasExtension(extension)) {
         return options.getExtension(extension);
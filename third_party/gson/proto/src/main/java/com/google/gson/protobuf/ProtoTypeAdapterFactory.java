@@ -0,0 +1,277 @@
+package com.google.gson.protobuf;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.protobuf.AbstractMessage;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors.EnumValueDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming version of {@link ProtoTypeAdapter} for the messages of one generated proto file.
+ *
+ * <p>Everything {@link ProtoTypeAdapter} works out by reflection on every call (the builder, the
+ * JSON name of each field, the Java type of each value, the adapter for that type) is worked out
+ * once per message type here and kept in a table. Reading a message is then one pass over the
+ * JSON object that looks up each name in the table, without building a JSON tree first.
+ *
+ * <p>Gson asks factories registered later first, so register this one before any adapters for
+ * the same types that are meant to take precedence over it, such as the one for
+ * {@code EventFeedItem} that delegates to it.
+ *
+ * <p>Use {@link ProtoTypeAdapter#newFactory} to create one.
+ */
+final class ProtoTypeAdapterFactory implements TypeAdapterFactory {
+  private final ProtoTypeAdapter settings;
+  private final String prefix;
+
+  ProtoTypeAdapterFactory(ProtoTypeAdapter settings, Class<?> outerClass) {
+    this.settings = settings;
+    this.prefix = outerClass.getName() + "$";
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+    final Class<? super T> rawType = type.getRawType();
+    if (!AbstractMessage.class.isAssignableFrom(rawType)
+        || !rawType.getName().startsWith(prefix)) {
+      return null;
+    }
+    final Message defaultInstance;
+    try {
+      defaultInstance = (Message) rawType.getMethod("getDefaultInstance").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalArgumentException("Not a generated message: " + rawType, e);
+    }
+    return (TypeAdapter<T>) new MessageAdapter(gson, defaultInstance);
+  }
+
+  /** One row of the field table. */
+  private static final class Field {
+    final FieldDescriptor descriptor;
+    final String jsonName;
+    final boolean isEnum;
+
+    /** Values by their serialized name, if this is an enum and enums are serialized by name. */
+    final Map<String, EnumValueDescriptor> enumValues;
+
+    /** Type of the value, or of each element if repeated. Null for enums. */
+    private final Class<?> valueClass;
+
+    /**
+     * Adapter for {@link #valueClass}. Looked up on first use rather than up front, so that
+     * fields which never turn up in the JSON don't need an adapter at all.
+     */
+    private volatile TypeAdapter<Object> adapter;
+
+    Field(
+        FieldDescriptor descriptor,
+        String jsonName,
+        Class<?> valueClass,
+        Map<String, EnumValueDescriptor> enumValues) {
+      this.descriptor = descriptor;
+      this.jsonName = jsonName;
+      this.isEnum = descriptor.getJavaType() == FieldDescriptor.JavaType.ENUM;
+      this.valueClass = valueClass;
+      this.enumValues = enumValues;
+    }
+
+    @SuppressWarnings("unchecked")
+    TypeAdapter<Object> adapter(Gson gson) {
+      // Gson caches adapters itself, so two threads racing here end up with the same one.
+      if (adapter == null) {
+        adapter = (TypeAdapter<Object>) gson.getAdapter(valueClass);
+      }
+      return adapter;
+    }
+  }
+
+  private final class MessageAdapter extends TypeAdapter<AbstractMessage> {
+    private final Gson gson;
+    private final Message defaultInstance;
+
+    /** By JSON name, and by field index for writing. */
+    private final Map<String, Field> fieldsByName = new HashMap<>();
+    private final Field[] fields;
+
+    MessageAdapter(Gson gson, Message defaultInstance) {
+      this.gson = gson;
+      this.defaultInstance = defaultInstance;
+
+      final List<FieldDescriptor> descriptors = defaultInstance.getDescriptorForType().getFields();
+      this.fields = new Field[descriptors.size()];
+      for (FieldDescriptor fd : descriptors) {
+        final String jsonName = settings.getCustSerializedName(fd.getOptions(), fd.getName());
+
+        Class<?> valueClass = null;
+        Map<String, EnumValueDescriptor> enumValues = null;
+        if (fd.getJavaType() == FieldDescriptor.JavaType.ENUM) {
+          if (settings.enumSerialization == ProtoTypeAdapter.EnumSerialization.NAME) {
+            enumValues = new HashMap<>();
+            for (EnumValueDescriptor value : fd.getEnumType().getValues()) {
+              enumValues.putIfAbsent(
+                  settings.getCustSerializedEnumValue(value.getOptions(), value.getName()),
+                  value);
+            }
+          }
+        } else {
+          valueClass = valueClass(defaultInstance, fd);
+        }
+
+        final Field field = new Field(fd, jsonName, valueClass, enumValues);
+        fields[fd.getIndex()] = field;
+        fieldsByName.putIfAbsent(jsonName, field);
+      }
+    }
+
+    @Override
+    public AbstractMessage read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      final Message.Builder builder = defaultInstance.newBuilderForType();
+      try {
+        in.beginObject();
+        while (in.hasNext()) {
+          final Field field = fieldsByName.get(in.nextName());
+          if (field == null || in.peek() == JsonToken.NULL) {
+            in.skipValue();
+            continue;
+          }
+          builder.setField(field.descriptor, readField(in, field));
+        }
+        in.endObject();
+        return (AbstractMessage) builder.build();
+      } catch (JsonParseException e) {
+        throw e;
+      } catch (RuntimeException e) {
+        throw new JsonParseException("Error while parsing proto", e);
+      }
+    }
+
+    private Object readField(JsonReader in, Field field) throws IOException {
+      if (field.isEnum) {
+        if (in.peek() != JsonToken.BEGIN_ARRAY) {
+          return readEnum(in, field);
+        }
+        final List<EnumValueDescriptor> values = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+          values.add(readEnum(in, field));
+        }
+        in.endArray();
+        return values;
+      }
+      final TypeAdapter<Object> adapter = field.adapter(gson);
+      if (!field.descriptor.isRepeated()) {
+        return adapter.read(in);
+      }
+      final List<Object> values = new ArrayList<>();
+      in.beginArray();
+      while (in.hasNext()) {
+        values.add(adapter.read(in));
+      }
+      in.endArray();
+      return values;
+    }
+
+    private EnumValueDescriptor readEnum(JsonReader in, Field field) throws IOException {
+      if (field.enumValues != null) {
+        final String name = in.nextString();
+        final EnumValueDescriptor value = field.enumValues.get(name);
+        if (value == null) {
+          throw new IllegalArgumentException(
+              String.format("Unrecognized enum name: %s", name));
+        }
+        return value;
+      } else {
+        final int number = in.nextInt();
+        final EnumValueDescriptor value =
+            field.descriptor.getEnumType().findValueByNumber(number);
+        if (value == null) {
+          throw new IllegalArgumentException(
+              String.format("Unrecognized enum value: %s", number));
+        }
+        return value;
+      }
+    }
+
+    @Override
+    public void write(JsonWriter out, AbstractMessage message) throws IOException {
+      if (message == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginObject();
+      for (Map.Entry<FieldDescriptor, Object> entry : message.getAllFields().entrySet()) {
+        final Field field = fields[entry.getKey().getIndex()];
+        out.name(field.jsonName);
+        if (entry.getValue() instanceof Collection) {
+          out.beginArray();
+          for (Object value : (Collection<?>) entry.getValue()) {
+            writeValue(out, field, value);
+          }
+          out.endArray();
+        } else {
+          writeValue(out, field, entry.getValue());
+        }
+      }
+      out.endObject();
+    }
+
+    private void writeValue(JsonWriter out, Field field, Object value) throws IOException {
+      if (!field.isEnum) {
+        field.adapter(gson).write(out, value);
+      } else if (field.enumValues != null) {
+        final EnumValueDescriptor enumValue = (EnumValueDescriptor) value;
+        out.value(settings.getCustSerializedEnumValue(
+            enumValue.getOptions(), enumValue.getName()));
+      } else {
+        out.value(((EnumValueDescriptor) value).getNumber());
+      }
+    }
+  }
+
+  /** @return the Java class of one value of {@param fd}, boxed where it is a primitive. */
+  private static Class<?> valueClass(Message defaultInstance, FieldDescriptor fd) {
+    switch (fd.getJavaType()) {
+      case INT:
+        return Integer.class;
+      case LONG:
+        return Long.class;
+      case FLOAT:
+        return Float.class;
+      case DOUBLE:
+        return Double.class;
+      case BOOLEAN:
+        return Boolean.class;
+      case STRING:
+        return String.class;
+      case BYTE_STRING:
+        return ByteString.class;
+      case MESSAGE:
+        return defaultInstance.newBuilderForType()
+            .newBuilderForField(fd)
+            .getDefaultInstanceForType()
+            .getClass();
+      default:
+        throw new IllegalArgumentException("No value class for " + fd.getFullName());
+    }
+  }
+}